@@ -0,0 +1,68 @@
+package fhirut.benchmarks;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.model.ExpectedResults;
+import fhirut.model.TestDefinition;
+import fhirut.model.TestResult;
+import fhirut.validator.FhirValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparação entre o OperationOutcome e as expectativas do teste.
+ *
+ * <p>{@code compareResults} é privado; o benchmark passa por {@link FhirValidator#validate}
+ * com um mecanismo que devolve o OperationOutcome pronto, então o tempo medido é o
+ * da comparação mais a montagem do resultado.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompareBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int issues;
+
+    @Param({"0", "10", "100"})
+    public int expectations;
+
+    private Path directory;
+    private FhirValidator validator;
+    private TestDefinition definition;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.createTempDirectory();
+        File instance = Fixtures.writeInstance(directory);
+        validator = new FhirValidator(new StubValidationEngine(Fixtures.outcome(issues), false));
+
+        List<String> errors = Fixtures.expectedErrors(expectations * 6);
+        ExpectedResults expected = new ExpectedResults();
+        expected.setStatus("error");
+        expected.setErrors(errors);
+        expected.setWarnings(List.of("bench-1:"));
+
+        definition = new TestDefinition();
+        definition.setTestId("Bench-compare");
+        definition.setInstancePath(instance);
+        definition.setExpectedResults(expected);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public TestResult compareResults() throws FhirValidationException {
+        return validator.validate(definition);
+    }
+}
@@ -0,0 +1,135 @@
+package fhirut.benchmarks;
+
+import fhirut.model.TestResult;
+import fhirut.model.ValidationDiff;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.StringType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Dados sintéticos compartilhados pelos benchmarks.
+ */
+final class Fixtures {
+    static final String PATIENT = "{\"resourceType\":\"Patient\",\"id\":\"bench\",\"active\":true,"
+            + "\"name\":[{\"family\":\"Silva\",\"given\":[\"Maria\"]}],\"gender\":\"female\",\"birthDate\":\"1980-01-01\"}";
+
+    private Fixtures() {
+    }
+
+    /**
+     * OperationOutcome com {@code issues} issues, alternando erros e avisos.
+     */
+    static OperationOutcome outcome(int issues) {
+        OperationOutcome outcome = new OperationOutcome();
+        for (int i = 0; i < issues; i++) {
+            OperationOutcome.OperationOutcomeIssueComponent issue = outcome.addIssue()
+                    .setSeverity(i % 2 == 0 ? OperationOutcome.IssueSeverity.ERROR : OperationOutcome.IssueSeverity.WARNING)
+                    .setCode(OperationOutcome.IssueType.STRUCTURE)
+                    .setDiagnostics(message(i));
+            issue.getExpression().add(new StringType("Patient.name[" + i + "].family"));
+        }
+        return outcome;
+    }
+
+    static String outcomeJson(int issues) throws IOException {
+        return new JsonParser().composeString(outcome(issues));
+    }
+
+    static String message(int i) {
+        return "Regra bench-" + i + ": o elemento Patient.name[" + i + "] não atende ao perfil (código " + (i * 31) + ")";
+    }
+
+    /**
+     * Expectativas que casam com parte das issues: uma em cada três, usando os prefixos suportados.
+     */
+    static List<String> expectedErrors(int issues) {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < issues; i += 6) {
+            switch ((i / 6) % 3) {
+                case 0 -> expected.add("bench-" + i + ":");
+                case 1 -> expected.add("regex:bench-" + i + "\\b");
+                default -> expected.add("exact:" + message(i));
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Resultados como os publicados pelo runner, com uma falha a cada dez testes.
+     */
+    static List<TestResult> results(int count) {
+        List<TestResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TestResult result = new TestResult();
+            result.setTestId("Bench-" + i);
+            result.setPassed(i % 10 != 0);
+            result.setDurationMs(i % 250);
+            List<ValidationDiff> diffs = new ArrayList<>();
+            if (!result.isPassed()) {
+                ValidationDiff diff = new ValidationDiff();
+                diff.setType("MISSING_ERROR");
+                diff.setMessage("Erro esperado não encontrado: " + message(i));
+                diff.setSeverity("ERROR");
+                diffs.add(diff);
+            }
+            result.setDifferences(diffs);
+            results.add(result);
+        }
+        return results;
+    }
+
+    static Path createTempDirectory() throws IOException {
+        return Files.createTempDirectory("fut-bench-");
+    }
+
+    static File writeInstance(Path directory) throws IOException {
+        Path instance = directory.resolve("patient.json");
+        Files.writeString(instance, PATIENT, StandardCharsets.UTF_8);
+        return instance.toFile();
+    }
+
+    /**
+     * Definição de teste em YAML no formato usado pelos projetos de teste.
+     */
+    static String definitionYaml(String testId, File instance, int expectedErrors) {
+        StringBuilder yaml = new StringBuilder()
+                .append("test_id: ").append(testId).append('\n')
+                .append("description: Benchmark\n")
+                .append("tags: [bench]\n")
+                .append("context:\n")
+                .append("  igs:\n")
+                .append("    - hl7.fhir.r4.core#4.0.1\n")
+                .append("  profiles:\n")
+                .append("    - http://hl7.org/fhir/StructureDefinition/Patient\n")
+                .append("instance_path: ").append(instance.getAbsolutePath()).append('\n')
+                .append("expected_results:\n")
+                .append("  status: ").append(expectedErrors > 0 ? "error" : "success").append('\n')
+                .append("  errors:\n");
+        for (String error : expectedErrors(expectedErrors)) {
+            yaml.append("    - \"").append(error.replace("\\", "\\\\")).append("\"\n");
+        }
+        yaml.append("  warnings: []\n");
+        return yaml.toString();
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package fhirut.benchmarks;
+
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.Resource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse do OperationOutcome em JSON devolvido pelo validador.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutcomeParseBenchmark {
+
+    @Param({"1", "50", "1000"})
+    public int issues;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Fixtures.outcomeJson(issues).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Resource parseOutcome() throws IOException {
+        return new JsonParser().parse(json);
+    }
+}
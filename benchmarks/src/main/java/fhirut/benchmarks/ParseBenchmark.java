@@ -0,0 +1,83 @@
+package fhirut.benchmarks;
+
+import fhirut.exceptions.FhirutParseException;
+import fhirut.model.TestDefinition;
+import fhirut.parser.TestDefinitionHandler;
+import fhirut.parser.YamlParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse das definições de teste: um arquivo por teste e um arquivo de suíte com muitos documentos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"0", "30"})
+    public int expectedErrors;
+
+    private Path directory;
+    private File single;
+    private File suite;
+    private YamlParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.createTempDirectory();
+        File instance = Fixtures.writeInstance(directory);
+
+        single = directory.resolve("single.yaml").toFile();
+        Files.writeString(single.toPath(), Fixtures.definitionYaml("Bench-1", instance, expectedErrors),
+                StandardCharsets.UTF_8);
+
+        StringBuilder documents = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            documents.append("---\n").append(Fixtures.definitionYaml("Bench-" + i, instance, expectedErrors));
+        }
+        suite = directory.resolve("suite.yaml").toFile();
+        Files.writeString(suite.toPath(), documents.toString(), StandardCharsets.UTF_8);
+
+        parser = new YamlParser();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public TestDefinition parseTestDefinition() throws FhirutParseException {
+        return parser.parseTestDefinition(single);
+    }
+
+    /**
+     * Suíte de 100 documentos lida em streaming.
+     */
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void parseSuite(Blackhole blackhole) throws FhirutParseException {
+        parser.parseTestDefinitions(suite, new TestDefinitionHandler() {
+            @Override
+            public void onDefinition(int position, TestDefinition definition) {
+                blackhole.consume(definition);
+            }
+
+            @Override
+            public void onInvalid(int position, FhirutParseException error) {
+                throw new IllegalStateException(error);
+            }
+        });
+    }
+}
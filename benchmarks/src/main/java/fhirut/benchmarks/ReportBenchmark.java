@@ -0,0 +1,50 @@
+package fhirut.benchmarks;
+
+import fhirut.model.TestResult;
+import fhirut.report.HtmlReportGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geração do relatório HTML de página única.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int results;
+
+    private Path directory;
+    private List<TestResult> testResults;
+    private HtmlReportGenerator generator;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.createTempDirectory();
+        output = directory.resolve("report.html").toFile();
+        testResults = Fixtures.results(results);
+        generator = new HtmlReportGenerator();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long generateReport() throws IOException {
+        generator.generateReport(testResults, output);
+        return output.length();
+    }
+}
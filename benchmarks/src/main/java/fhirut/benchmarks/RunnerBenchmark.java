@@ -0,0 +1,67 @@
+package fhirut.benchmarks;
+
+import fhirut.core.FhirutRunner;
+import fhirut.model.TestResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execução de ponta a ponta (descoberta não incluída): parse, agrupamento em lotes,
+ * validação com o mecanismo stub e comparação, sem cache de resultados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunnerBenchmark {
+
+    @Param({"1000"})
+    public int tests;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"true", "false"})
+    public boolean batch;
+
+    private Path directory;
+    private List<File> testFiles;
+    private FhirutRunner runner;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.createTempDirectory();
+        File instance = Fixtures.writeInstance(directory);
+
+        testFiles = new ArrayList<>();
+        for (int i = 0; i < tests; i++) {
+            Path file = directory.resolve("test-" + i + ".yaml");
+            Files.writeString(file, Fixtures.definitionYaml("Bench-" + i, instance, 12), StandardCharsets.UTF_8);
+            testFiles.add(file.toFile());
+        }
+
+        runner = new FhirutRunner(new StubValidationEngine(Fixtures.outcome(20), batch));
+        runner.setParallelism(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        runner.close();
+        Fixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<TestResult> runTests() {
+        return runner.runTests(testFiles);
+    }
+}
@@ -0,0 +1,45 @@
+package fhirut.benchmarks;
+
+import fhirut.model.TestDefinition;
+import fhirut.validator.ValidationEngine;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mecanismo de validação que devolve sempre o mesmo OperationOutcome, sem
+ * validador nem rede: isola o custo do próprio fut nos benchmarks.
+ */
+public class StubValidationEngine implements ValidationEngine {
+    private final OperationOutcome outcome;
+    private final boolean batch;
+
+    public StubValidationEngine(OperationOutcome outcome, boolean batch) {
+        this.outcome = outcome;
+        this.batch = batch;
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition) {
+        return outcome;
+    }
+
+    @Override
+    public Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions) {
+        Map<TestDefinition, OperationOutcome> outcomes = new LinkedHashMap<>();
+        definitions.forEach(definition -> outcomes.put(definition, outcome));
+        return outcomes;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return batch;
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+}
@@ -0,0 +1,106 @@
+package fhirut;
+
+import fhirut.core.Parallelism;
+import fhirut.packages.PackageCache;
+import fhirut.validator.EngineSettings;
+import fhirut.validator.EngineType;
+import fhirut.validator.InProcessValidationEngine;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opções que definem o mecanismo de validação, compartilhadas entre a execução
+ * direta ({@code fut}) e o servidor residente ({@code fut serve}).
+ */
+public class EngineOptions {
+
+    @Option(names = {"-e", "--engine"}, defaultValue = "auto",
+            description = "Validation engine: auto, inprocess, pool or cli (default: ${DEFAULT-VALUE})")
+    private EngineType engine;
+
+    @Option(names = {"-j", "--jobs", "--parallel"},
+            description = "Number of tests to run in parallel (default: based on cores and --memory-per-validator)")
+    private Integer jobs;
+
+    @Option(names = "--memory-per-validator", defaultValue = "1024",
+            description = "Estimated memory in MB of one validator instance, used for the default --jobs (default: ${DEFAULT-VALUE})")
+    private long memoryPerValidator;
+
+    @Option(names = "--workers",
+            description = "Number of validator worker processes for --engine pool (default: same as --jobs)")
+    private Integer workers;
+
+    @Option(names = "--worker-max-jobs", defaultValue = "500",
+            description = "Recycle a validator worker after this many validations (default: ${DEFAULT-VALUE})")
+    private int workerMaxJobs;
+
+    @Option(names = "--worker-heap",
+            description = "Maximum heap of each validator worker, e.g. 2g")
+    private String workerHeap;
+
+    @Option(names = "--package-cache",
+            description = "IG package cache used to resolve igs locally (default: ~/.fut/packages)")
+    private File packageCacheDir;
+
+    @Option(names = "--tx",
+            description = "Terminology server: a URL, 'local' for an embedded server built from the loaded IGs, "
+                    + "or 'n/a' for none (default: " + InProcessValidationEngine.DEFAULT_TX_SERVER + ")")
+    private String txServer;
+
+    public EngineType getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return servidor de terminologia pedido com {@code --tx}, ou null para o padrão
+     */
+    public String getTxServer() {
+        return txServer;
+    }
+
+    /**
+     * @return número de testes simultâneos: {@code --jobs} ou o padrão calculado pela memória disponível
+     */
+    public int parallelism() {
+        return jobs != null ? jobs : Parallelism.defaultLevel(engine, memoryPerValidator);
+    }
+
+    /**
+     * Opções do mecanismo que o servidor residente fixa ao iniciar, para o cliente conferir
+     * antes de encaminhar a execução.
+     * @param explicitOnly apenas as informadas na linha de comando; o cache de pacotes sempre entra
+     */
+    public Map<String, String> describe(boolean explicitOnly) {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("--package-cache", (packageCacheDir != null
+                ? packageCacheDir.toPath() : PackageCache.defaultCache().getRoot()).toAbsolutePath().normalize().toString());
+        if (workers != null || !explicitOnly) {
+            options.put("--workers", String.valueOf(workers != null ? workers : parallelism()));
+        }
+        if (workerHeap != null || !explicitOnly) {
+            options.put("--worker-heap", workerHeap != null ? workerHeap : "");
+        }
+        return options;
+    }
+
+    public EngineSettings toSettings() {
+        int parallelism = parallelism();
+
+        EngineSettings settings = new EngineSettings();
+        settings.setType(engine);
+        settings.setParallelism(parallelism);
+        settings.setWorkers(workers != null ? workers : parallelism);
+        settings.setWorkerMaxJobs(workerMaxJobs);
+        settings.setWorkerHeap(workerHeap);
+        if (txServer != null) {
+            settings.setTxServer(txServer);
+        }
+        settings.setPackageCache(packageCacheDir != null
+                ? new PackageCache(packageCacheDir.toPath(), null)
+                : PackageCache.defaultCache());
+        return settings;
+    }
+}
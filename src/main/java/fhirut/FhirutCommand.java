@@ -1,22 +1,59 @@
 package fhirut;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Parameters;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import fhirut.cache.ResultCache;
 import fhirut.core.FhirutRunner;
-import fhirut.model.*;
+import fhirut.core.TestDiscovery;
+import fhirut.core.TestHistory;
+import fhirut.core.TestOrder;
+import fhirut.core.TestResultListener;
+import fhirut.core.TestSelection;
+import fhirut.core.TestShard;
+import fhirut.core.TestTimeouts;
+import fhirut.core.TestWatcher;
+import fhirut.daemon.DaemonClient;
+import fhirut.daemon.DaemonInfo;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.MetricsServer;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestResult;
+import fhirut.report.ConsoleReporter;
+import fhirut.report.HtmlReportGenerator;
+import fhirut.report.HtmlReportListener;
+import fhirut.report.JUnitReportListener;
+import fhirut.report.NdjsonReportListener;
+import fhirut.report.ReportFormat;
+import fhirut.report.RunSummary;
+import fhirut.validator.EngineSettings;
+import fhirut.validator.EngineType;
+import fhirut.validator.InProcessValidationEngine;
+import fhirut.validator.ValidationEngine;
+import fhirut.validator.ValidationEngineFactory;
 
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 @Command(
         name = "fut",
         mixinStandardHelpOptions = true,
         version = "fut 1.0",
-        description = "FHIR Unit Test Tool"
+        description = "FHIR Unit Test Tool",
+        subcommands = {PackagesCommand.class, ServeCommand.class, MergeCommand.class}
 )
 public class FhirutCommand implements Callable<Integer> {
 
@@ -29,35 +66,492 @@ public class FhirutCommand implements Callable<Integer> {
     @Option(names = {"-v", "--verbose"}, description = "Verbose output")
     private boolean verbose;
 
+    @Mixin
+    private EngineOptions engineOptions;
+
+    @Option(names = "--batch-size", defaultValue = "" + FhirutRunner.DEFAULT_BATCH_SIZE,
+            description = "Maximum number of instances with the same IG/profile context validated in one call (default: ${DEFAULT-VALUE})")
+    private int batchSize;
+
+    @Option(names = "--no-cache",
+            description = "Run every test instead of reusing unchanged results from the output directory")
+    private boolean noCache;
+
+    @Option(names = "--report-page-size", defaultValue = "" + HtmlReportListener.DEFAULT_PAGE_SIZE,
+            description = "Split the HTML report into an index plus pages of this many tests when the suite is larger (default: ${DEFAULT-VALUE})")
+    private int reportPageSize;
+
+    @Option(names = {"-f", "--format"}, split = ",", defaultValue = "html",
+            description = "Report formats to write, comma separated: html, junit, ndjson (default: ${DEFAULT-VALUE})")
+    private List<ReportFormat> formats;
+
+    @Option(names = "--include",
+            description = "Glob of test files to run, relative to the searched directory (repeatable), e.g. '**/patient/*.yaml'")
+    private List<String> includes;
+
+    @Option(names = "--exclude",
+            description = "Glob of test files to skip, relative to the searched directory (repeatable)")
+    private List<String> excludes;
+
+    @Option(names = "--tag", split = ",",
+            description = "Run only tests with at least one of these tags")
+    private List<String> tags;
+
+    @Option(names = "--id", split = ",",
+            description = "Run only tests whose test_id matches one of these ids ('*' and '?' allowed)")
+    private List<String> ids;
+
+    @Option(names = "--metrics-port",
+            description = "Serve Prometheus metrics on http://127.0.0.1:<port>/metrics while tests run (0 picks a free port)")
+    private Integer metricsPort;
+
+    @Option(names = "--metrics-file",
+            description = "Write Prometheus metrics to this file when the run finishes")
+    private File metricsFile;
+
+    @Option(names = "--shard",
+            description = "Run only shard i of N (e.g. '2/4'); each shard writes its own report files, combined later with 'fut merge'")
+    private String shardSpec;
+
+    @Option(names = "--shard-history",
+            description = "NDJSON report of a previous run used to balance shards by test duration; every shard must get the same file (default: split by test_id hash)")
+    private File shardHistory;
+
+    @Option(names = "--timeout", defaultValue = "30s",
+            description = "Per-test validation timeout when the YAML sets no 'timeout' and there is no duration history, e.g. 45s or 2m (default: ${DEFAULT-VALUE})")
+    private String timeout;
+
+    @Option(names = "--timeout-factor", defaultValue = "" + TestTimeouts.DEFAULT_FACTOR,
+            description = "With a previous NDJSON report, time out each test after this multiple of its last duration (at least 10s); 0 disables (default: ${DEFAULT-VALUE})")
+    private double timeoutFactor;
+
+    @Option(names = "--global-timeout",
+            description = "Deadline for the whole run, e.g. 20m; tests not started by then fail without running")
+    private String globalTimeout;
+
+    @Option(names = "--order", defaultValue = "history",
+            description = "Test order: history (tests that failed recently start as soon as they are read; leftover batches run fastest first) or discovery (default: ${DEFAULT-VALUE})")
+    private TestOrder order;
+
+    @Option(names = "--fail-fast", arity = "0..1", fallbackValue = "1", paramLabel = "N",
+            description = "Cancel the remaining tests once N tests have failed (default N: 1)")
+    private Integer failFast;
+
+    @Option(names = "--watch",
+            description = "After the first run, keep watching test definitions and the files they use, re-running only the affected tests on change")
+    private boolean watch;
+
+    @Option(names = "--no-daemon",
+            description = "Run in this process even when a 'fut serve' daemon is running")
+    private boolean noDaemon;
+
+    @Spec
+    private CommandSpec spec;
+
+    // Preenchidos apenas quando a execução é atendida pelo servidor residente
+    private ValidationEngine sharedEngine;
+    private MetricsRegistry sharedMetrics;
+    private File workingDirectory;
+    private Consumer<File> reportOpener = this::openHtmlReport;
+    private TestShard shard;
+    private TestTimeouts timeouts;
+    private Map<String, Long> history;
+    private TestHistory testHistory;
+
+    /**
+     * Faz esta execução usar o mecanismo e as métricas do servidor residente, com os
+     * caminhos relativos resolvidos a partir do diretório de onde o cliente foi chamado.
+     */
+    void attachDaemon(ValidationEngine engine, MetricsRegistry metrics, File workingDirectory,
+                      Consumer<File> reportOpener) {
+        this.sharedEngine = engine;
+        this.sharedMetrics = metrics;
+        this.workingDirectory = workingDirectory;
+        this.reportOpener = reportOpener;
+    }
+
     @Override
     public Integer call() throws Exception {
-        FhirutRunner runner = new FhirutRunner();
-        List<TestResult> results;
+        if (shardSpec != null) {
+            try {
+                shard = TestShard.parse(shardSpec);
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(spec.commandLine(), e.getMessage());
+            }
+        }
+
+        timeouts = new TestTimeouts();
+        try {
+            timeouts.setDefaultTimeout(TestTimeouts.parse(timeout));
+            if (globalTimeout != null) {
+                timeouts.setGlobalTimeout(TestTimeouts.parse(globalTimeout));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(spec.commandLine(), e.getMessage());
+        }
+        timeouts.setFactor(timeoutFactor);
+        if (failFast != null && failFast < 1) {
+            throw new ParameterException(spec.commandLine(), "--fail-fast deve ser pelo menos 1");
+        }
+
+        // No modo --watch a observação de arquivos precisa ficar neste processo
+        if (sharedEngine == null && !noDaemon && !watch) {
+            Integer exitCode = forwardToDaemon();
+            if (exitCode != null) {
+                return exitCode;
+            }
+        }
+
+        int parallelism = engineOptions.parallelism();
+        EngineSettings settings = engineOptions.toSettings();
+
+        File reportDir = resolve(outputDir != null ? outputDir : new File("."));
+        if (!reportDir.exists()) {
+            reportDir.mkdirs();
+        }
+
+        if (sharedEngine != null) {
+            // O mecanismo pertence ao servidor e continua carregado depois desta execução
+            return execute(new FhirutRunner(sharedEngine), settings, parallelism, reportDir, 0, sharedMetrics);
+        }
+
+        long startupStart = System.nanoTime();
+        try (FhirutRunner runner = new FhirutRunner(ValidationEngineFactory.create(settings))) {
+            long startupMs = PhaseTimer.elapsedMillis(startupStart);
+            return execute(runner, settings, parallelism, reportDir, startupMs, new MetricsRegistry());
+        }
+    }
+
+    private Integer execute(FhirutRunner runner, EngineSettings settings, int parallelism, File reportDir,
+                            long startupMs, MetricsRegistry metrics) throws Exception {
+        runner.setParallelism(parallelism);
+        runner.setBatchSize(batchSize);
+        testHistory = TestHistory.load(reportDir);
+        runner.setSelection(buildSelection(reportDir));
+        if (timeoutFactor > 0) {
+            timeouts.withHistory(loadHistory(reportDir, null));
+        }
+        runner.setTimeouts(timeouts);
+        System.out.println("⏱️ Tempo limite por teste: " + timeouts.getDefaultTimeout().toMillis() + " ms"
+                + (history != null && !history.isEmpty() ? " (ou " + timeoutFactor + "x a duração anterior de "
+                + history.size() + " teste(s))" : "")
+                + (timeouts.getGlobalTimeout() != null
+                ? "; prazo da execução: " + timeouts.getGlobalTimeout().toMillis() + " ms" : ""));
+        if (order == TestOrder.HISTORY && !testHistory.isEmpty()) {
+            runner.setPriority(testHistory.priority(), testHistory::failedRecently);
+            System.out.println("📊 Ordem pelo histórico: falhas recentes primeiro, depois os mais rápidos");
+        }
+        if (failFast != null) {
+            runner.setFailFast(failFast);
+        }
+        if (workingDirectory != null) {
+            runner.setWorkingDirectory(workingDirectory);
+        }
+        if (!noCache) {
+            runner.setResultCache(new ResultCache(
+                    reportDir, runner.getValidatorFingerprint(), settings.getPackageCache()));
+        }
+        System.out.println("⚙️ Executando até " + parallelism + " teste(s) em paralelo");
+
+        runner.setMetrics(metrics);
+        try (MetricsServer server = metricsPort != null ? new MetricsServer(metrics, metricsPort) : null) {
+            if (server != null) {
+                System.out.println("📈 Métricas em http://127.0.0.1:" + server.getPort() + MetricsServer.PATH);
+            }
+            return run(runner, reportDir, startupMs);
+        } finally {
+            writeMetrics(metrics);
+        }
+    }
+
+    /**
+     * Encaminha a execução ao servidor residente, se houver um compatível rodando.
+     * @return código de saída da execução remota, ou null para executar localmente
+     */
+    private Integer forwardToDaemon() {
+        Optional<DaemonInfo> daemon = DaemonInfo.read(DaemonInfo.defaultFile());
+        if (daemon.isEmpty()) {
+            return null;
+        }
+        EngineType requested = engineOptions.getEngine();
+        if (requested != EngineType.AUTO && !requested.name().equalsIgnoreCase(daemon.get().getEngine())) {
+            System.out.println("⚠️ Servidor fut usa o mecanismo " + daemon.get().getEngine()
+                    + "; executando localmente com " + requested.name().toLowerCase());
+            return null;
+        }
+        String tx = engineOptions.getTxServer();
+        String daemonTx = txServerOf(daemon.get().getFingerprint());
+        if (tx != null && !tx.equalsIgnoreCase(daemonTx)) {
+            System.out.println("⚠️ Servidor fut usa o servidor de terminologia " + daemonTx
+                    + "; executando localmente com " + tx);
+            return null;
+        }
+        // O servidor continua com o validador carregado ao iniciar, mesmo que o jar tenha sido trocado
+        EngineSettings settings = engineOptions.toSettings();
+        String validator = settings.getValidatorFingerprint();
+        if (settings.getValidatorJar().isFile() && !validator.equals(validatorOf(daemon.get().getFingerprint()))) {
+            System.out.println("⚠️ " + settings.getValidatorJar() + " mudou desde que o servidor fut foi iniciado; "
+                    + "executando localmente (reinicie com 'fut serve --stop' e 'fut serve')");
+            return null;
+        }
+        List<String> different = new ArrayList<>();
+        Map<String, String> daemonOptions = daemon.get().getOptions() != null ? daemon.get().getOptions() : Map.of();
+        engineOptions.describe(true).forEach((option, value) -> {
+            if (!value.equals(daemonOptions.get(option))) {
+                different.add(option + " " + value + " (servidor: " + daemonOptions.getOrDefault(option, "?") + ")");
+            }
+        });
+        if (!different.isEmpty()) {
+            System.out.println("⚠️ Servidor fut iniciado com outras opções: " + String.join(", ", different)
+                    + "; executando localmente");
+            return null;
+        }
 
+        System.out.println("🔌 Usando servidor fut na porta " + daemon.get().getPort());
+        try {
+            return new DaemonClient(daemon.get()).run(
+                    spec.commandLine().getParseResult().originalArgs(), new File("."), this::openHtmlReport);
+        } catch (IOException e) {
+            System.err.println("⚠️ Servidor fut indisponível (" + e.getMessage() + "); executando localmente");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * @return hash do validator_cli.jar registrado na impressão digital do mecanismo
+     */
+    private static String validatorOf(String fingerprint) {
+        int end = fingerprint != null ? fingerprint.indexOf('|') : -1;
+        return end >= 0 ? fingerprint.substring(0, end) : fingerprint;
+    }
+
+    /**
+     * @return servidor de terminologia registrado na impressão digital do mecanismo
+     */
+    private static String txServerOf(String fingerprint) {
+        int tx = fingerprint != null ? fingerprint.lastIndexOf("|tx=") : -1;
+        return tx >= 0 ? fingerprint.substring(tx + "|tx=".length()) : InProcessValidationEngine.DEFAULT_TX_SERVER;
+    }
+
+    /**
+     * Resolve caminhos relativos a partir do diretório do cliente (no servidor residente)
+     * ou do diretório atual.
+     */
+    private File resolve(File file) {
+        if (workingDirectory == null || file.isAbsolute()) {
+            return file;
+        }
+        return new File(workingDirectory, file.getPath());
+    }
+
+    private void writeMetrics(MetricsRegistry metrics) {
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            File file = resolve(metricsFile);
+            metrics.writeTo(file);
+            System.out.println("📈 Métricas gravadas em: " + file.getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar métricas: " + e.getMessage());
+        }
+    }
+
+    private Integer run(FhirutRunner runner, File reportDir, long startupMs) throws Exception {
+        // O resumo precisa estar fechado antes de os relatórios serem gerados
+        RunSummary summary = new RunSummary(RunSummary.DEFAULT_SLOWEST, runner::getEngineTimings);
+        summary.addEngineTiming("validator_startup", startupMs);
+        if (shard != null) {
+            summary.setShard(shard.getIndex(), shard.getCount(), shard.getSplit());
+        }
+        List<TestResultListener> listeners = new ArrayList<>();
+        listeners.add(summary);
+        listeners.add(testHistory);
+
+        ConsoleReporter console = new ConsoleReporter(verbose);
+        listeners.add(console);
+        Set<ReportFormat> selected = EnumSet.copyOf(formats);
+        String qualifier = null;
+        if (shard != null) {
+            // O NDJSON de cada shard é a entrada do 'fut merge'
+            selected.add(ReportFormat.NDJSON);
+            qualifier = shard.getQualifier();
+        }
+        listeners.addAll(reportListeners(selected, reportDir, qualifier, summary, reportPageSize));
+        listeners.forEach(runner::addListener);
+
+        TestWatcher watcher = null;
+        if (watch) {
+            watcher = new TestWatcher(runner, resolve(new File(".")), verbose);
+            runner.addListener(watcher);
+        }
+
+        List<File> paths = new ArrayList<>();
+        List<File> files;
         if (testFiles == null || testFiles.isEmpty()) {
             System.out.println("🔍 Procurando testes no diretório atual...");
-            results = runner.runAllTests(new File("."));
+            paths.add(resolve(new File(".")));
+            files = runner.discoverTests(paths.get(0));
         } else {
             System.out.println("🔍 Executando testes especificados...");
-            results = runner.runTests(testFiles);
+            testFiles.forEach(file -> paths.add(resolve(file)));
+            files = new TestDiscovery(runner.getSelection()).resolve(paths);
         }
+        runner.streamTests(files);
 
-        File reportDir = outputDir != null ? outputDir : new File(".");
-        if (!reportDir.exists()) {
-            reportDir.mkdirs();
+        if (runner.getResultCache() != null) {
+            System.out.println("♻️ " + runner.getResultCache().getHits() + " resultado(s) reaproveitado(s) do cache");
         }
 
-        File reportFile = new File(reportDir, "fhir-test-report.html");
-        System.out.println("📊 Gerando relatório em: " + reportFile.getAbsolutePath());
+        // Os formatos lidos por máquina ganham também o resumo de tempos em JSON
+        if (selected.contains(ReportFormat.JUNIT) || selected.contains(ReportFormat.NDJSON)) {
+            writeSummary(summary, new File(reportDir, ReportFormat.qualify(RunSummary.FILE_NAME, qualifier)));
+        }
 
-        runner.generateReport(results, reportFile);
-        openHtmlReport(reportFile);
+        if (selected.contains(ReportFormat.HTML)) {
+            reportOpener.accept(new File(reportDir, ReportFormat.HTML.getFileName(qualifier)));
+        }
+        console.printSummary();
+        console.printTimings(summary);
 
-        long passed = results.stream().filter(TestResult::isPassed).count();
-        System.out.println("✅ " + passed + " testes aprovados");
-        System.out.println("❌ " + (results.size() - passed) + " testes falhos");
+        if (watcher != null) {
+            // Daqui em diante cada reexecução tem o seu console e o relatório é refeito com todos os testes
+            listeners.forEach(runner::removeListener);
+            watch(runner, watcher, paths, files, reportDir);
+        }
 
-        return 0;
+        return console.getExitCode();
+    }
+
+    /**
+     * Relatórios de cada formato, alimentados pelos resultados à medida que chegam.
+     * @param qualifier acrescentado ao nome dos arquivos (ex.: o shard); null para os nomes padrão
+     */
+    static List<TestResultListener> reportListeners(Set<ReportFormat> formats, File reportDir, String qualifier,
+                                                    RunSummary summary, int pageSize) {
+        List<TestResultListener> listeners = new ArrayList<>();
+        for (ReportFormat format : formats) {
+            File file = new File(reportDir, format.getFileName(qualifier));
+            switch (format) {
+                case HTML -> {
+                    HtmlReportGenerator generator = new HtmlReportGenerator();
+                    generator.setSummary(summary);
+                    listeners.add(new HtmlReportListener(generator, file, pageSize));
+                }
+                case JUNIT -> listeners.add(new JUnitReportListener(file));
+                case NDJSON -> listeners.add(new NdjsonReportListener(file));
+            }
+        }
+        return listeners;
+    }
+
+    static void writeSummary(RunSummary summary, File summaryFile) {
+        try {
+            summary.writeJson(summaryFile);
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar resumo de tempos: " + e.getMessage());
+        }
+    }
+
+    private void watch(FhirutRunner runner, TestWatcher watcher, List<File> paths, List<File> files,
+                       File reportDir) throws IOException {
+        watcher.start(paths, files);
+        // O modo --watch termina com Ctrl+C: encerra os validadores antes de a JVM sair
+        Thread stop = new Thread(() -> {
+            watcher.close();
+            runner.close();
+        }, "fut-watch-stop");
+        Runtime.getRuntime().addShutdownHook(stop);
+        try {
+            watcher.watch(results -> writeWatchReport(results, reportDir));
+        } finally {
+            watcher.close();
+            try {
+                Runtime.getRuntime().removeShutdownHook(stop);
+            } catch (IllegalStateException e) {
+                // A JVM já está encerrando
+            }
+        }
+    }
+
+    /**
+     * Refaz o relatório HTML com o último resultado de cada teste. Os formatos lidos por
+     * máquina (JUnit, NDJSON) ficam com o resultado da execução inicial.
+     */
+    private void writeWatchReport(List<TestResult> results, File reportDir) {
+        if (!formats.contains(ReportFormat.HTML)) {
+            return;
+        }
+        RunSummary summary = new RunSummary();
+        HtmlReportGenerator generator = new HtmlReportGenerator();
+        generator.setSummary(summary);
+        HtmlReportListener report = new HtmlReportListener(generator,
+                new File(reportDir, ReportFormat.HTML.getFileName(shard != null ? shard.getQualifier() : null)),
+                reportPageSize);
+
+        summary.onStart(0);
+        report.onStart(0);
+        for (TestResult result : results) {
+            summary.onResult(result);
+            report.onResult(result);
+        }
+        summary.onFinish();
+        report.onFinish();
+    }
+
+    /**
+     * Lê uma vez as durações da execução anterior, usadas pelo shard e pelos tempos limite.
+     * @param explicit histórico informado na linha de comando; null para o NDJSON do diretório
+     *                 de saída ou, na falta dele, o histórico de testes
+     */
+    private Map<String, Long> loadHistory(File reportDir, File explicit) {
+        if (history != null) {
+            return history;
+        }
+        history = Map.of();
+        File file = explicit != null ? resolve(explicit) : new File(reportDir, ReportFormat.NDJSON.getFileName());
+        if (file.isFile()) {
+            try {
+                history = TestShard.readHistory(file);
+            } catch (IOException e) {
+                System.err.println("⚠️ Não foi possível ler o histórico " + file + ": " + e.getMessage());
+            }
+        } else if (explicit != null) {
+            System.err.println("⚠️ Histórico de durações não encontrado: " + file.getAbsolutePath());
+        } else if (testHistory != null) {
+            history = testHistory.durations();
+        }
+        return history;
+    }
+
+    private TestSelection buildSelection(File reportDir) {
+        TestSelection selection = new TestSelection();
+        if (shard != null) {
+            selection.shard(shard);
+            // Só um histórico explícito é igual em todos os shards; o local muda a cada execução
+            Map<String, Long> durations = shardHistory != null ? loadHistory(reportDir, shardHistory) : Map.of();
+            shard.withHistory(durations);
+            System.out.println("🧩 Shard " + shard + ": " + (durations.isEmpty()
+                    ? "divisão pelo test_id (sem --shard-history)"
+                    : "divisão por duração de " + durations.size() + " teste(s), previsto "
+                    + shard.getLoads()[shard.getIndex() - 1] + " ms"));
+        }
+        if (includes != null) {
+            includes.forEach(selection::include);
+        }
+        if (excludes != null) {
+            excludes.forEach(selection::exclude);
+        }
+        if (tags != null) {
+            tags.forEach(selection::tag);
+        }
+        if (ids != null) {
+            ids.forEach(selection::id);
+        }
+        return selection;
     }
 
     // Método corrigido - removido 'class' e adicionado 'void'
@@ -17,7 +17,9 @@ public class Main {
      */
     public static void main(String[] args) {
         // Executa o comando usando a biblioteca picocli
-        int exitCode = new CommandLine(new FhirutCommand()).execute(args);
+        int exitCode = new CommandLine(new FhirutCommand())
+                .setCaseInsensitiveEnumValuesAllowed(true)
+                .execute(args);
 
         // Finaliza a aplicação com o código de saída apropriado
         System.exit(exitCode);
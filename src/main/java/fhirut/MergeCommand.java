@@ -0,0 +1,220 @@
+package fhirut;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fhirut.core.TestResultListener;
+import fhirut.model.TestResult;
+import fhirut.report.ConsoleReporter;
+import fhirut.report.HtmlReportListener;
+import fhirut.report.ReportFormat;
+import fhirut.report.RunSummary;
+import fhirut.report.TestResultCodec;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Subcomando {@code fut merge}: junta os relatórios NDJSON gravados por cada
+ * {@code fut --shard i/N} em um relatório único, com um único código de saída.
+ */
+@Command(
+        name = "merge",
+        mixinStandardHelpOptions = true,
+        description = "Combine the NDJSON reports written by 'fut --shard i/N' into one report and exit code"
+)
+public class MergeCommand implements Callable<Integer> {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern SHARD_FILE = Pattern.compile("\\.shard-(\\d+)-of-(\\d+)\\.ndjson$");
+
+    @Parameters(index = "0..*",
+            description = "Shard NDJSON reports, or directories containing them (default: current directory)")
+    private List<File> paths;
+
+    @Option(names = {"-o", "--output"}, description = "Output directory for the merged reports")
+    private File outputDir;
+
+    @Option(names = {"-v", "--verbose"}, description = "Verbose output")
+    private boolean verbose;
+
+    @Option(names = {"-f", "--format"}, split = ",", defaultValue = "html",
+            description = "Report formats to write, comma separated: html, junit, ndjson (default: ${DEFAULT-VALUE})")
+    private List<ReportFormat> formats;
+
+    @Option(names = "--report-page-size", defaultValue = "" + HtmlReportListener.DEFAULT_PAGE_SIZE,
+            description = "Split the HTML report into pages of this many tests when the suite is larger (default: ${DEFAULT-VALUE})")
+    private int reportPageSize;
+
+    @Override
+    public Integer call() throws Exception {
+        List<File> inputs = collectInputs(paths == null || paths.isEmpty() ? List.of(new File(".")) : paths);
+        if (inputs.isEmpty()) {
+            System.err.println("❌ Nenhum relatório de shard (*.shard-i-of-N.ndjson) encontrado");
+            return 1;
+        }
+        boolean complete = checkShards(inputs) & checkSplits(inputs);
+
+        File reportDir = outputDir != null ? outputDir : new File(".");
+        if (!reportDir.exists()) {
+            reportDir.mkdirs();
+        }
+
+        RunSummary summary = new RunSummary();
+        ConsoleReporter console = new ConsoleReporter(verbose);
+        Set<ReportFormat> selected = EnumSet.copyOf(formats);
+        List<TestResultListener> listeners = new ArrayList<>();
+        listeners.add(summary);
+        listeners.add(console);
+        listeners.addAll(FhirutCommand.reportListeners(selected, reportDir, null, summary, reportPageSize));
+
+        System.out.println("🧩 Juntando " + inputs.size() + " relatório(s) de shard");
+        listeners.forEach(listener -> listener.onStart(inputs.size()));
+        // test_id → relatório em que apareceu; ids repetidos dentro do mesmo shard são testes distintos
+        Map<String, File> seen = new HashMap<>();
+        int duplicates = 0;
+        for (File input : inputs) {
+            try (BufferedReader reader = Files.newBufferedReader(input.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    TestResult result;
+                    try {
+                        result = TestResultCodec.decode(line);
+                    } catch (IOException e) {
+                        System.err.println("⚠️ Linha " + lineNumber + " de " + input + " ignorada: " + e.getMessage());
+                        continue;
+                    }
+                    // O mesmo teste em dois shards indica históricos diferentes entre eles
+                    if (seen.putIfAbsent(result.getTestId(), input) != null && !seen.get(result.getTestId()).equals(input)) {
+                        duplicates++;
+                        continue;
+                    }
+                    listeners.forEach(listener -> listener.onResult(result));
+                }
+            }
+        }
+        listeners.forEach(TestResultListener::onFinish);
+
+        if (duplicates > 0) {
+            System.out.println("⚠️ " + duplicates + " resultado(s) repetido(s) entre shards ignorado(s); "
+                    + "use o mesmo --shard-history em todos os shards");
+        }
+        if (selected.contains(ReportFormat.JUNIT) || selected.contains(ReportFormat.NDJSON)) {
+            FhirutCommand.writeSummary(summary, new File(reportDir, RunSummary.FILE_NAME));
+        }
+        console.printSummary();
+        console.printTimings(summary);
+
+        return complete ? console.getExitCode() : 1;
+    }
+
+    private List<File> collectInputs(List<File> paths) {
+        List<File> inputs = new ArrayList<>();
+        for (File path : paths) {
+            if (path.isDirectory()) {
+                File[] files = path.listFiles((dir, name) -> SHARD_FILE.matcher(name).find());
+                if (files != null) {
+                    Arrays.sort(files);
+                    inputs.addAll(Arrays.asList(files));
+                }
+            } else if (path.isFile()) {
+                inputs.add(path);
+            } else {
+                System.err.println("⚠️ Relatório não encontrado: " + path.getAbsolutePath());
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Confere, pelo resumo gravado ao lado de cada relatório, se todos os shards dividiram
+     * a suíte da mesma forma. Com divisões diferentes, testes podem ter ficado sem shard.
+     * @return false se algum shard usou outra divisão
+     */
+    private boolean checkSplits(List<File> inputs) {
+        Map<String, List<String>> splits = new TreeMap<>();
+        for (File input : inputs) {
+            Matcher matcher = SHARD_FILE.matcher(input.getName());
+            if (!matcher.find()) {
+                continue;
+            }
+            String qualifier = "shard-" + matcher.group(1) + "-of-" + matcher.group(2);
+            File summary = new File(input.getAbsoluteFile().getParentFile(),
+                    ReportFormat.qualify(RunSummary.FILE_NAME, qualifier));
+            String split;
+            try {
+                split = summary.isFile() ? MAPPER.readTree(summary).path("shard").path("split").textValue() : null;
+            } catch (IOException e) {
+                split = null;
+            }
+            if (split == null) {
+                System.err.println("⚠️ Divisão do shard " + matcher.group(1) + "/" + matcher.group(2)
+                        + " desconhecida (resumo " + summary.getName() + " ausente)");
+                continue;
+            }
+            splits.computeIfAbsent(split, key -> new ArrayList<>()).add(matcher.group(1) + "/" + matcher.group(2));
+        }
+        if (splits.size() > 1) {
+            System.err.println("❌ Shards com divisões diferentes, alguns testes podem não ter rodado: " + splits
+                    + "; use o mesmo --shard-history em todos os shards (ou nenhum)");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Confere, pelo nome dos arquivos, se todos os shards da divisão estão presentes.
+     * @return false se faltar algum shard
+     */
+    private boolean checkShards(List<File> inputs) {
+        Set<Integer> counts = new TreeSet<>();
+        Set<Integer> present = new HashSet<>();
+        for (File input : inputs) {
+            Matcher matcher = SHARD_FILE.matcher(input.getName());
+            if (matcher.find()) {
+                present.add(Integer.parseInt(matcher.group(1)));
+                counts.add(Integer.parseInt(matcher.group(2)));
+            }
+        }
+        if (counts.isEmpty()) {
+            return true;
+        }
+        if (counts.size() > 1) {
+            System.err.println("❌ Relatórios de divisões diferentes (N = " + counts + ")");
+            return false;
+        }
+        int count = counts.iterator().next();
+        List<String> missing = new ArrayList<>();
+        for (int index = 1; index <= count; index++) {
+            if (!present.contains(index)) {
+                missing.add(index + "/" + count);
+            }
+        }
+        if (!missing.isEmpty()) {
+            System.err.println("❌ Faltam os relatórios dos shards " + String.join(", ", missing));
+            return false;
+        }
+        return true;
+    }
+}
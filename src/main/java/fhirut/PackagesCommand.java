@@ -0,0 +1,124 @@
+package fhirut;
+
+import fhirut.core.FhirutRunner;
+import fhirut.exceptions.FhirutException;
+import fhirut.exceptions.FhirutParseException;
+import fhirut.model.TestDefinition;
+import fhirut.packages.PackageCache;
+import fhirut.packages.PackageSpec;
+import fhirut.parser.TestDefinitionHandler;
+import fhirut.parser.YamlParser;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Subcomando {@code fut packages}: gerencia o cache local de pacotes de IG.
+ */
+@Command(
+        name = "packages",
+        mixinStandardHelpOptions = true,
+        description = "Manage the local IG package cache"
+)
+public class PackagesCommand implements Callable<Integer> {
+
+    @Option(names = "--package-cache", description = "Package cache directory (default: ~/.fut/packages)")
+    private File packageCacheDir;
+
+    @Option(names = "--fhir-package-dir", description = "Validator package cache to install into (default: ~/.fhir/packages)")
+    private File fhirPackageDir;
+
+    @Option(names = "--registry", split = ",",
+            description = "Package registries to download from, in order (default: "
+                    + PackageCache.DEFAULT_REGISTRY + "," + PackageCache.FALLBACK_REGISTRY + ")")
+    private List<String> registries;
+
+    @Override
+    public Integer call() {
+        CommandLine.usage(this, System.out);
+        return 0;
+    }
+
+    /**
+     * Coleta todos os IGs referenciados pelos YAMLs de teste e aquece o cache.
+     */
+    @Command(name = "prefetch", mixinStandardHelpOptions = true,
+            description = "Download every IG referenced by the test YAMLs (and their dependencies) into the cache")
+    public Integer prefetch(
+            @Parameters(index = "0..*", description = "Test files or directories (default: current directory)")
+            List<File> paths,
+            @Option(names = "--no-core", description = "Do not prefetch " + PackageCache.CORE_PACKAGE)
+            boolean noCore) throws Exception {
+
+        Set<String> igs = new LinkedHashSet<>();
+        if (!noCore) {
+            igs.add(PackageCache.CORE_PACKAGE);
+        }
+
+        YamlParser parser = new YamlParser();
+        for (File testFile : collectTestFiles(paths)) {
+            try {
+                parser.parseTestDefinitions(testFile, new TestDefinitionHandler() {
+                    @Override
+                    public void onDefinition(int position, TestDefinition definition) {
+                        if (definition.getContext() != null && definition.getContext().getIgs() != null) {
+                            igs.addAll(definition.getContext().getIgs());
+                        }
+                    }
+
+                    @Override
+                    public void onInvalid(int position, FhirutParseException error) {
+                        System.err.println("⚠️ Ignorando definição " + position + " de " + testFile + ": " + error.getMessage());
+                    }
+                });
+            } catch (FhirutParseException e) {
+                System.err.println("⚠️ Ignorando " + testFile + ": " + e.getMessage());
+            }
+        }
+
+        System.out.println("📦 " + igs.size() + " IG(s) referenciado(s)");
+        PackageCache cache = cache();
+        try {
+            Set<PackageSpec> cached = cache.prefetch(igs);
+            System.out.println("✅ " + cached.size() + " pacote(s) disponíveis em " + cache.getRoot());
+            return 0;
+        } catch (FhirutException e) {
+            System.err.println("❌ " + e.getMessage());
+            return 1;
+        }
+    }
+
+    PackageCache cache() {
+        PackageCache defaults = PackageCache.defaultCache();
+        if (packageCacheDir == null && fhirPackageDir == null && registries == null) {
+            return defaults;
+        }
+        return new PackageCache(
+                packageCacheDir != null ? packageCacheDir.toPath() : defaults.getRoot(),
+                fhirPackageDir != null ? fhirPackageDir.toPath()
+                        : new File(System.getProperty("user.home"), ".fhir/packages").toPath(),
+                registries != null ? registries : List.of(PackageCache.DEFAULT_REGISTRY, PackageCache.FALLBACK_REGISTRY));
+    }
+
+    private List<File> collectTestFiles(List<File> paths) throws IOException {
+        List<File> roots = paths == null || paths.isEmpty() ? List.of(new File(".")) : paths;
+        List<File> testFiles = new ArrayList<>();
+        for (File path : roots) {
+            if (path.isDirectory()) {
+                testFiles.addAll(FhirutRunner.findTestFiles(path));
+            } else {
+                testFiles.add(path);
+            }
+        }
+        return testFiles;
+    }
+}
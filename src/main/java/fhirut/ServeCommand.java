@@ -0,0 +1,144 @@
+package fhirut;
+
+import fhirut.daemon.DaemonClient;
+import fhirut.daemon.DaemonInfo;
+import fhirut.daemon.DaemonServer;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.MetricsServer;
+import fhirut.metrics.PhaseTimer;
+import fhirut.report.HtmlReportGenerator;
+import fhirut.validator.ValidationEngine;
+import fhirut.validator.ValidationEngineFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Subcomando {@code fut serve}: mantém o validador, os IGs já carregados e as
+ * bibliotecas inicializadas em um processo residente. Enquanto ele estiver no ar,
+ * cada {@code fut} encaminha a execução para cá em vez de começar do zero.
+ */
+@Command(
+        name = "serve",
+        mixinStandardHelpOptions = true,
+        description = "Keep the validator and IG packages loaded in a local daemon; 'fut' forwards runs to it"
+)
+public class ServeCommand implements Callable<Integer> {
+
+    @Mixin
+    private EngineOptions engineOptions;
+
+    @Option(names = "--port", defaultValue = "0",
+            description = "Local port to listen on (default: a free port, recorded in ~/.fut/daemon.json)")
+    private int port;
+
+    @Option(names = "--status", description = "Show the state of the running daemon and exit")
+    private boolean status;
+
+    @Option(names = "--stop", description = "Stop the running daemon and exit")
+    private boolean stop;
+
+    @Override
+    public Integer call() throws Exception {
+        File infoFile = DaemonInfo.defaultFile();
+        Optional<DaemonInfo> running = DaemonInfo.read(infoFile);
+
+        if (status || stop) {
+            if (running.isEmpty()) {
+                System.out.println("⚠️ Nenhum servidor fut em execução");
+                return 1;
+            }
+            DaemonClient client = new DaemonClient(running.get());
+            if (stop) {
+                client.shutdown();
+                System.out.println("✅ Servidor fut na porta " + running.get().getPort() + " encerrado");
+            } else {
+                client.status().forEach((key, value) -> System.out.println(key + ": " + value));
+            }
+            return 0;
+        }
+
+        if (running.isPresent()) {
+            System.err.println("❌ Já existe um servidor fut em execução (pid " + running.get().getPid()
+                    + ", porta " + running.get().getPort() + "); use 'fut serve --stop'");
+            return 1;
+        }
+
+        long start = System.nanoTime();
+        ValidationEngine engine = ValidationEngineFactory.create(engineOptions.toSettings());
+        // Carrega as classes do relatório agora, e não no primeiro pedido
+        new HtmlReportGenerator();
+        System.out.println("⏱️ Validador carregado em " + PhaseTimer.elapsedMillis(start) + " ms");
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        engine.registerMetrics(metrics);
+        byte[] secret = new byte[24];
+        new SecureRandom().nextBytes(secret);
+        String token = HexFormat.of().formatHex(secret);
+
+        DaemonInfo info = new DaemonInfo();
+        info.setPid(ProcessHandle.current().pid());
+        info.setToken(token);
+        info.setEngine(engine.getName());
+        info.setFingerprint(engine.getFingerprint());
+        info.setOptions(engineOptions.describe(false));
+        info.setDirectory(new File(".").getAbsoluteFile().getParent());
+        info.setStartedAt(LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+
+        Map<String, Object> serverStatus = new LinkedHashMap<>();
+        serverStatus.put("pid", info.getPid());
+        serverStatus.put("engine", info.getEngine());
+        serverStatus.put("fingerprint", info.getFingerprint());
+        serverStatus.put("startedAt", info.getStartedAt());
+
+        try (DaemonServer server = new DaemonServer(port, token,
+                (args, workingDirectory, reportOpener) -> runForClient(engine, metrics, args, workingDirectory, reportOpener),
+                metrics, serverStatus)) {
+            info.setPort(server.getPort());
+            info.write(infoFile);
+            Thread cleanup = new Thread(() -> cleanup(infoFile, info, engine), "fut-daemon-cleanup");
+            Runtime.getRuntime().addShutdownHook(cleanup);
+
+            System.out.println("🚀 Servidor fut em http://127.0.0.1:" + server.getPort()
+                    + " (métricas em " + MetricsServer.PATH + "); encerre com 'fut serve --stop'");
+            server.awaitShutdown();
+
+            Runtime.getRuntime().removeShutdownHook(cleanup);
+            cleanup(infoFile, info, engine);
+        }
+        System.out.println("👋 Servidor fut encerrado");
+        return 0;
+    }
+
+    private int runForClient(ValidationEngine engine, MetricsRegistry metrics, List<String> args,
+                             File workingDirectory, Consumer<File> reportOpener) {
+        FhirutCommand command = new FhirutCommand();
+        command.attachDaemon(engine, metrics, workingDirectory, reportOpener);
+        return new CommandLine(command)
+                .setCaseInsensitiveEnumValuesAllowed(true)
+                .execute(args.toArray(new String[0]));
+    }
+
+    /**
+     * Remove o arquivo de conexão (se ainda for deste processo) e libera o validador.
+     */
+    private static void cleanup(File infoFile, DaemonInfo info, ValidationEngine engine) {
+        DaemonInfo.read(infoFile)
+                .filter(current -> current.getPid() == info.getPid())
+                .ifPresent(current -> infoFile.delete());
+        engine.close();
+    }
+}
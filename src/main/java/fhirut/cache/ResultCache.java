@@ -0,0 +1,215 @@
+package fhirut.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fhirut.model.TestContext;
+import fhirut.model.TestDefinition;
+import fhirut.model.TestResult;
+import fhirut.packages.PackageCache;
+import fhirut.report.TestResultCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Cache de resultados para execuções incrementais, gravado no diretório de saída.
+ *
+ * <p>Cada entrada é indexada pelo SHA-256 de tudo que pode alterar o resultado
+ * de um teste: a definição (inclusive as expectativas), o conteúdo da instância
+ * e dos recursos do contexto, o conteúdo dos IGs e perfis locais, o tarball dos
+ * pacotes resolvidos e a identificação do validador. Qualquer mudança gera outra
+ * chave, então entradas antigas nunca são reaproveitadas indevidamente.</p>
+ *
+ * <p>Testes com IG que não pode ser fixado (sem versão, fora do cache de pacotes
+ * ou remoto) ficam sem chave e são sempre executados.</p>
+ */
+public class ResultCache {
+    public static final String DIRECTORY = ".fut-cache";
+
+    /** Versão do formato da chave; altere quando a comparação de resultados mudar. */
+    private static final String KEY_VERSION = "4";
+
+    private final Path directory;
+    private final String validatorFingerprint;
+    private final PackageCache packageCache;
+    private final ObjectMapper definitionMapper;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * @param outputDir diretório de saída dos relatórios; o cache fica em {@code .fut-cache/results}
+     * @param validatorFingerprint identificação do validador em uso
+     * @param packageCache cache de pacotes, usado para resolver as versões dos IGs (opcional)
+     */
+    public ResultCache(File outputDir, String validatorFingerprint, PackageCache packageCache) {
+        this.directory = outputDir.toPath().resolve(DIRECTORY).resolve("results");
+        this.validatorFingerprint = validatorFingerprint;
+        this.packageCache = packageCache;
+        this.definitionMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    }
+
+    /**
+     * Calcula a chave do teste.
+     * @return vazio se algum IG não puder ser resolvido para um conteúdo fixo
+     * @throws IOException se algum arquivo de entrada não puder ser lido
+     */
+    public Optional<String> keyFor(TestDefinition definition) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, "fut-result-cache:" + KEY_VERSION);
+        update(digest, "validator:" + validatorFingerprint);
+        update(digest, "definition:");
+        digest.update(definitionMapper.writeValueAsBytes(definition));
+
+        update(digest, "instance:");
+        hashFile(digest, definition.getInstancePath());
+
+        TestContext context = definition.getContext();
+        if (context != null) {
+            for (String ig : sorted(context.getIgs())) {
+                update(digest, "ig:" + ig);
+                if (!hashIg(digest, ig)) {
+                    return Optional.empty();
+                }
+            }
+            for (String profile : sorted(context.getProfiles())) {
+                update(digest, "profile:" + profile);
+                File local = new File(profile);
+                if (local.isFile()) {
+                    // Perfil local: vale o conteúdo, não só o nome do arquivo
+                    hashFile(digest, local);
+                }
+            }
+            if (context.getResources() != null) {
+                for (File resource : context.getResources()) {
+                    update(digest, "resource:" + resource.getPath());
+                    hashFile(digest, resource);
+                }
+            }
+        }
+        return Optional.of(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    public Optional<TestResult> get(String key) {
+        Path entry = entryPath(key);
+        if (!Files.isRegularFile(entry)) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        try {
+            TestResult result = TestResultCodec.decode(Files.readString(entry, StandardCharsets.UTF_8));
+            hits.incrementAndGet();
+            return Optional.of(result);
+        } catch (IOException e) {
+            // Entrada corrompida: trata como ausente e será regravada
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, TestResult result) {
+        Path entry = entryPath(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            Files.writeString(temp, TestResultCodec.encode(result), StandardCharsets.UTF_8);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("⚠️ Não foi possível gravar o cache de " + result.getTestId() + ": " + e.getMessage());
+        }
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Acrescenta ao digest o conteúdo do IG: arquivos de um IG local ou o tarball
+     * de um pacote já presente no cache.
+     * @return false se o conteúdo do IG não puder ser fixado
+     */
+    private boolean hashIg(MessageDigest digest, String ig) throws IOException {
+        File local = new File(ig);
+        if (local.isFile()) {
+            hashFile(digest, local);
+            return true;
+        }
+        if (local.isDirectory()) {
+            hashDirectory(digest, local.toPath());
+            return true;
+        }
+        if (packageCache == null) {
+            return false;
+        }
+        // O nome do tarball é o hash do seu conteúdo
+        Optional<Path> blob = packageCache.find(ig);
+        blob.ifPresent(path -> update(digest, "package:" + path.getFileName()));
+        return blob.isPresent();
+    }
+
+    private static void hashDirectory(MessageDigest digest, Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : files) {
+            update(digest, "file:" + root.relativize(file).toString().replace(File.separatorChar, '/'));
+            hashFile(digest, file.toFile());
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+
+    private static void hashFile(MessageDigest digest, File file) throws IOException {
+        if (file == null || !file.isFile()) {
+            update(digest, "missing");
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static TreeSet<String> sorted(List<String> values) {
+        TreeSet<String> sorted = new TreeSet<>();
+        if (values != null) {
+            sorted.addAll(values);
+        }
+        return sorted;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package fhirut.core;
+
+import fhirut.model.TestContext;
+
+import java.io.File;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Chave normalizada de um {@link TestContext}: testes com os mesmos IGs, perfis e
+ * recursos (independente da ordem em que aparecem no YAML) podem ser validados juntos.
+ */
+public final class ContextKey {
+    private final TreeSet<String> igs = new TreeSet<>();
+    private final TreeSet<String> profiles = new TreeSet<>();
+    private final TreeSet<String> resources = new TreeSet<>();
+
+    private ContextKey() {
+    }
+
+    public static ContextKey of(TestContext context) {
+        ContextKey key = new ContextKey();
+        if (context != null) {
+            addAll(key.igs, context.getIgs());
+            addAll(key.profiles, context.getProfiles());
+            if (context.getResources() != null) {
+                for (File resource : context.getResources()) {
+                    key.resources.add(resource.getAbsoluteFile().toPath().normalize().toString());
+                }
+            }
+        }
+        return key;
+    }
+
+    private static void addAll(TreeSet<String> target, List<String> values) {
+        if (values != null) {
+            values.stream().filter(Objects::nonNull).map(String::trim).forEach(target::add);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContextKey)) {
+            return false;
+        }
+        ContextKey other = (ContextKey) o;
+        return igs.equals(other.igs) && profiles.equals(other.profiles) && resources.equals(other.resources);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(igs, profiles, resources);
+    }
+
+    @Override
+    public String toString() {
+        return "igs=" + igs + " profiles=" + profiles + (resources.isEmpty() ? "" : " resources=" + resources);
+    }
+}
@@ -1,36 +1,103 @@
 package fhirut.core;
 
+import fhirut.cache.ResultCache;
 import fhirut.exceptions.*;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.PhaseTimer;
 import fhirut.model.TestDefinition;
 import fhirut.model.TestResult;
 import fhirut.model.ValidationDiff;
+import fhirut.parser.TestDefinitionHandler;
 import fhirut.parser.YamlParser;
 import fhirut.validator.FhirValidator;
+import fhirut.validator.ValidationEngine;
 import fhirut.report.HtmlReportGenerator;
 import org.hl7.fhir.r4.model.OperationOutcome;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+public class FhirutRunner implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    // Ler YAML é bem mais barato que validar: poucas threads bastam para manter os lotes cheios
+    private static final int PARSE_THREADS = 2;
 
-public class FhirutRunner {
     private final FhirValidator validator;
-    private final YamlParser yamlParser;
+    private YamlParser yamlParser;
     private final HtmlReportGenerator reportGenerator;
+    private int parallelism = 1;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ResultCache resultCache;
+    private TestSelection selection = new TestSelection();
+    private TestTimeouts timeouts;
+    private Comparator<TestDefinition> priority;
+    private Predicate<TestDefinition> urgent;
+    private int failFast;
+    private final List<TestResultListener> listeners = new CopyOnWriteArrayList<>();
+    private MetricsRegistry metrics;
+    private MetricsRegistry.Counter testsPassed;
+    private MetricsRegistry.Counter testsFailed;
+    private MetricsRegistry.Histogram testDuration;
+    private MetricsRegistry.Counter cacheHits;
+    private MetricsRegistry.Counter cacheMisses;
+    private MetricsRegistry.Counter definitionBytes;
+    private MetricsRegistry.Counter runs;
 
     public FhirutRunner() {
-        this.validator = new FhirValidator();
+        this(new FhirValidator());
+    }
+
+    public FhirutRunner(ValidationEngine engine) {
+        this(new FhirValidator(engine));
+    }
+
+    public FhirutRunner(FhirValidator validator) {
+        this.validator = validator;
         this.yamlParser = new YamlParser();
         this.reportGenerator = new HtmlReportGenerator();
+        setMetrics(new MetricsRegistry());
     }
 
     public List<TestResult> runAllTests(File directory) throws FhirutException {
+        return runTests(discoverTests(directory));
+    }
+
+    /**
+     * Executa todos os testes do diretório publicando cada resultado nos listeners,
+     * sem acumular a lista de resultados.
+     */
+    public void streamAllTests(File directory) throws FhirutException {
+        streamTests(discoverTests(directory));
+    }
+
+    /**
+     * Encontra os arquivos de teste do diretório (ou do seu {@code test-definitions}), aplicando a seleção.
+     */
+    public List<File> discoverTests(File directory) throws FhirutException {
         // Verifica se é um diretório de definições ou o diretório raiz
         File testDir = new File(directory, "test-definitions");
         if (!testDir.exists()) {
@@ -38,36 +105,498 @@ public class FhirutRunner {
         }
 
         try {
-            List<File> testFiles = findTestFiles(directory);
+            List<File> testFiles = new TestDiscovery(selection).discover(directory);
             if (testFiles.isEmpty()) {
                 throw new FhirutException("Nenhum arquivo de teste encontrado em: " + directory.getPath());
             }
-            return runTests(testFiles);
+            return testFiles;
         } catch (IOException e) {
             throw new FhirutException("Erro ao buscar arquivos de teste", e);
         }
     }
 
+    /**
+     * Executa os testes e devolve os resultados na ordem dos arquivos (e das definições
+     * dentro de cada arquivo). Os listeners registrados também recebem cada resultado
+     * assim que ele fica pronto.
+     */
     public List<TestResult> runTests(List<File> testFiles) {
-        List<TestResult> results = new ArrayList<>();
+        Map<Long, TestResult> results = new TreeMap<>();
+        execute(testFiles, results::put);
+        // Testes descartados pela seleção não têm resultado
+        return new ArrayList<>(results.values());
+    }
 
-        for (File testFile : testFiles) {
-            try {
-                TestDefinition definition = yamlParser.parseTestDefinition(testFile);
-                TestResult result = validator.validate(definition);
-                results.add(result);
+    /**
+     * Executa os testes apenas publicando os resultados nos listeners registrados.
+     * Nenhum resultado fica retido pelo runner, então a memória não cresce com a suíte.
+     */
+    public void streamTests(List<File> testFiles) {
+        execute(testFiles, null);
+    }
+
+    /**
+     * Cada arquivo é parseado em uma tarefa, e cada definição lida segue na hora para
+     * o agrupamento por contexto: um lote completo já é validado enquanto os demais
+     * arquivos ainda estão sendo lidos. Os lotes incompletos são validados no fim.
+     *
+     * <p>Em paralelo, a leitura tem um executor próprio e pequeno, para que os lotes
+     * não esperem na fila atrás das tarefas de parse. A fila dos lotes é por
+     * prioridade ({@link BatchTask}): os urgentes passam à frente dos já enfileirados.</p>
+     */
+    private void execute(List<File> testFiles, ResultSink sink) {
+        runs.inc();
+        if (timeouts != null) {
+            timeouts.start();
+        }
+        Publisher publisher = new Publisher(testFiles.size(), sink);
+        // Um único arquivo de suíte também pode ter muitos lotes para validar em paralelo
+        // Só recebe BatchTask (via execute), que sabe se ordenar na fila
+        ExecutorService executor = parallelism > 1 && !testFiles.isEmpty()
+                ? new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                        new PriorityBlockingQueue<>(), new RunnerThreadFactory("fut-test-"))
+                : null;
+        ExecutorService parser = executor != null
+                ? Executors.newFixedThreadPool(Math.min(parallelism, PARSE_THREADS), new RunnerThreadFactory("fut-parse-"))
+                : null;
+        Batcher batcher = new Batcher(executor, publisher);
+
+        try {
+            List<Runnable> parseTasks = new ArrayList<>();
+            for (int i = 0; i < testFiles.size(); i++) {
+                long fileOrder = (long) i << 32;
+                File testFile = testFiles.get(i);
+                publisher.expect(fileOrder, testFile);
+                parseTasks.add(() -> parseFile(testFile, fileOrder, publisher, batcher));
+            }
+            runAll(parser, parseTasks);
+
+            batcher.flush();
+            batcher.await();
+
+        } finally {
+            if (executor != null) {
+                parser.shutdownNow();
+                executor.shutdownNow();
+            }
+        }
+
+        // Garante um resultado para cada teste, mesmo se uma tarefa falhou inesperadamente
+        publisher.finish();
+    }
+
+    private void parseFile(File testFile, long fileOrder, Publisher publisher, Batcher batcher) {
+        definitionBytes.inc(testFile.length());
+        try {
+            yamlParser.parseTestDefinitions(testFile, new TestDefinitionHandler() {
+                // O parse é incremental: o tempo de cada definição vai do fim da anterior até ela
+                private long mark = System.nanoTime();
+
+                @Override
+                public void onDefinition(int position, TestDefinition definition) {
+                    long parseMs = PhaseTimer.elapsedMillis(mark);
+                    try {
+                        if (!selection.matches(definition)) {
+                            return;
+                        }
+                        // Ordem da definição: arquivo nos 32 bits altos, posição no arquivo nos baixos
+                        PendingTest test = new PendingTest(fileOrder + position, testFile, definition);
+                        test.parseMs = parseMs;
+                        publisher.expect(test.order, testFile);
+
+                        // Testes cujas entradas não mudaram reaproveitam o resultado anterior
+                        TestResult cached = lookupCache(test);
+                        if (cached != null) {
+                            // As fases do resultado guardado são da execução que o produziu
+                            cached.setTimings(new LinkedHashMap<>());
+                            publisher.publish(test.order, timed(test, cached));
+                        } else {
+                            batcher.add(test);
+                        }
+                    } finally {
+                        mark = System.nanoTime();
+                    }
+                }
+
+                @Override
+                public void onInvalid(int position, FhirutParseException error) {
+                    long order = fileOrder + position;
+                    String testId = testFile.getName() + "#" + position;
+                    if (!selection.reportsError(testId)) {
+                        mark = System.nanoTime();
+                        return;
+                    }
+                    TestResult result = createFailedResult(testFile, testId, error);
+                    result.addTiming("parse", PhaseTimer.elapsedMillis(mark));
+                    result.setDurationMs(result.getTimings().get("parse"));
+                    publisher.expect(order, testFile);
+                    publisher.publish(order, result);
+                    mark = System.nanoTime();
+                }
+            });
+            publisher.skip(fileOrder);
+        } catch (FhirutParseException e) {
+            if (selection.reportsError(testFile.getName())) {
+                publisher.publish(fileOrder, createFailedResult(testFile, e));
+            } else {
+                publisher.skip(fileOrder);
+            }
+        }
+    }
+
+    /**
+     * Agrupa os testes por {@link ContextKey} e despacha cada grupo assim que ele
+     * atinge {@code batchSize}, preservando a ordem de chegada dentro do grupo.
+     *
+     * <p>Com prioridade, os testes urgentes (que falharam recentemente) seguem sozinhos
+     * assim que são lidos, à frente dos lotes que ainda esperam por uma thread, e os
+     * grupos incompletos que sobram no fim são ordenados pela prioridade. Nada espera a
+     * leitura de todas as definições.</p>
+     */
+    private class Batcher {
+        private final ExecutorService executor;
+        private final Publisher publisher;
+        private final int size;
+        private final Map<ContextKey, List<PendingTest>> groups = new LinkedHashMap<>();
+        private final List<Future<?>> running = new ArrayList<>();
+        private final AtomicLong sequence = new AtomicLong();
+
+        private Batcher(ExecutorService executor, Publisher publisher) {
+            this.executor = executor;
+            this.publisher = publisher;
+            this.size = validator.getEngine().supportsBatch() ? batchSize : 1;
+        }
+
+        private void add(PendingTest test) {
+            if (urgent != null && urgent.test(test.definition)) {
+                dispatch(List.of(test), true);
+                return;
+            }
+            List<PendingTest> full = null;
+            synchronized (groups) {
+                ContextKey key = ContextKey.of(test.definition.getContext());
+                List<PendingTest> group = groups.computeIfAbsent(key, k -> new ArrayList<>());
+                group.add(test);
+                if (group.size() >= size) {
+                    full = group;
+                    groups.remove(key);
+                }
+            }
+            if (full != null) {
+                dispatch(full, false);
+            }
+        }
+
+        private void flush() {
+            List<List<PendingTest>> remaining;
+            synchronized (groups) {
+                remaining = new ArrayList<>(groups.values());
+                groups.clear();
+            }
+            if (priority != null) {
+                remaining = prioritized(remaining);
+            }
+            remaining.forEach(batch -> dispatch(batch, false));
+        }
+
+        /**
+         * Ordena cada grupo pela prioridade, divide em lotes e ordena os lotes pelo
+         * teste mais prioritário de cada um. Lotes não urgentes são atendidos na ordem em
+         * que são submetidos.
+         */
+        private List<List<PendingTest>> prioritized(List<List<PendingTest>> groups) {
+            Comparator<PendingTest> byPriority = Comparator.comparing(test -> test.definition, priority);
+            List<List<PendingTest>> batches = new ArrayList<>();
+            for (List<PendingTest> group : groups) {
+                List<PendingTest> sorted = new ArrayList<>(group);
+                sorted.sort(byPriority);
+                for (int start = 0; start < sorted.size(); start += size) {
+                    batches.add(sorted.subList(start, Math.min(sorted.size(), start + size)));
+                }
+            }
+            batches.sort(Comparator.comparing(batch -> batch.get(0), byPriority));
+            return batches;
+        }
+
+        private void dispatch(List<PendingTest> batch, boolean first) {
+            if (executor == null) {
+                runBatch(batch, publisher);
+                return;
+            }
+            BatchTask task = new BatchTask(() -> runBatch(batch, publisher), first, sequence.getAndIncrement());
+            synchronized (running) {
+                running.add(task);
+            }
+            executor.execute(task);
+        }
+
+        private void await() {
+            List<Future<?>> futures;
+            synchronized (running) {
+                futures = new ArrayList<>(running);
+            }
+            waitAll(futures);
+        }
+    }
 
-            } catch (FhirutParseException e) {
-                results.add(createFailedResult(testFile, e));
+    /**
+     * Valida um lote de testes com o mesmo contexto. Cada teste continua com o
+     * próprio resultado: uma instância inexistente não derruba o lote inteiro.
+     */
+    private void runBatch(List<PendingTest> batch, Publisher publisher) {
+        // Cancelado pelo --fail-fast: os testes ficam sem resultado e contam como cancelados
+        if (publisher.isCancelled()) {
+            return;
+        }
+        List<PendingTest> ready = new ArrayList<>();
+        List<Duration> budgets = new ArrayList<>();
+        for (PendingTest test : batch) {
+            try {
+                validator.checkInstance(test.definition);
+                if (timeouts != null) {
+                    test.timeout = timeoutOf(test.definition);
+                    budgets.add(test.timeout);
+                }
+                ready.add(test);
             } catch (FhirValidationException e) {
-                results.add(createFailedResult(testFile, e));
-            } catch (Exception e) {
-                results.add(createFailedResult(testFile,
-                        new FhirutException("Erro inesperado: " + e.getMessage(), e)));
+                publisher.publish(test.order,
+                        timed(test, createFailedResult(test.file, test.definition.getTestId(), e)));
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+        // Prazo global vencido: os testes que ainda não começaram nem são validados
+        if (timeouts != null && timeouts.expired()) {
+            FhirValidationException expired = new ValidationTimeoutException(
+                    "Prazo da execução (--global-timeout " + timeouts.getGlobalTimeout().toMillis()
+                            + " ms) esgotado antes de o teste começar", timeouts.getGlobalTimeout(), null);
+            ready.forEach(test -> publisher.publish(test.order, timed(test,
+                    createFailedResult(test.file, test.definition.getTestId(), expired))));
+            return;
+        }
+
+        if (ready.size() == 1) {
+            runSingle(ready.get(0), publisher);
+            return;
+        }
+
+        List<TestDefinition> definitions = new ArrayList<>();
+        ready.forEach(test -> definitions.add(test.definition));
+        Map<TestDefinition, TestResult> byDefinition = null;
+        FhirutException failure = null;
+        if (!publisher.validating(true)) {
+            return;
+        }
+        try {
+            byDefinition = validator.validateBatch(definitions,
+                    timeouts != null ? timeouts.limit(TestTimeouts.batchBudget(budgets)) : null);
+        } catch (FhirutException e) {
+            failure = e;
+        } catch (Exception e) {
+            failure = new FhirutException("Erro inesperado: " + e.getMessage(), e);
+        }
+        if (!publisher.validating(false)) {
+            return;
+        }
+        // Lote travado: valida um a um, para que só o teste lento falhe pelo próprio tempo limite
+        if (failure instanceof ValidationTimeoutException && timeouts != null && !timeouts.expired()) {
+            System.out.println("⏱️ Lote de " + ready.size() + " teste(s) excedeu o tempo limite; validando um a um");
+            for (PendingTest test : ready) {
+                if (publisher.isCancelled()) {
+                    return;
+                }
+                runSingle(test, publisher);
+            }
+            return;
+        }
+
+        for (PendingTest test : ready) {
+            TestResult result = byDefinition != null ? byDefinition.get(test.definition) : null;
+            if (result != null) {
+                storeCache(test, result);
+            }
+            publisher.publish(test.order, timed(test, result != null ? result : createFailedResult(test.file,
+                    test.definition.getTestId(), failure != null ? failure : new FhirValidationException(
+                            "Validador não retornou resultado para a instância: " + test.definition.getInstancePath(),
+                            null,
+                            test.definition.getTestId()))));
+        }
+    }
+
+    private void runSingle(PendingTest test, Publisher publisher) {
+        if (!publisher.validating(true)) {
+            return;
+        }
+        TestResult result = runTest(test);
+        if (publisher.validating(false)) {
+            publisher.publish(test.order, timed(test, result));
+        }
+    }
+
+    /**
+     * Valida um único teste. Qualquer falha fica isolada no próprio resultado.
+     */
+    private TestResult runTest(PendingTest test) {
+        try {
+            TestResult result = validator.validate(test.definition, test.timeout);
+            storeCache(test, result);
+            return result;
+
+        } catch (FhirValidationException e) {
+            return createFailedResult(test.file, test.definition.getTestId(), e);
+        } catch (Exception e) {
+            return createFailedResult(test.file, test.definition.getTestId(),
+                    new FhirutException("Erro inesperado: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * @throws FhirValidationException se o {@code timeout} do YAML for inválido
+     */
+    private Duration timeoutOf(TestDefinition definition) throws FhirValidationException {
+        try {
+            return timeouts.timeoutFor(definition);
+        } catch (IllegalArgumentException e) {
+            throw new FhirValidationException("Campo 'timeout' inválido: " + e.getMessage(), null,
+                    definition.getTestId());
+        }
+    }
+
+    private TestResult lookupCache(PendingTest test) {
+        if (resultCache == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            test.cacheKey = resultCache.keyFor(test.definition).orElse(null);
+            if (test.cacheKey == null) {
+                // IG sem conteúdo fixo: o resultado não pode ser reaproveitado nem guardado
+                return null;
             }
+            TestResult cached = resultCache.get(test.cacheKey).orElse(null);
+            (cached != null ? cacheHits : cacheMisses).inc();
+            return cached;
+        } catch (IOException e) {
+            // Sem chave (ex.: instância ilegível) o teste simplesmente é executado
+            return null;
+        } finally {
+            test.cacheMs += PhaseTimer.elapsedMillis(start);
+        }
+    }
+
+    private void storeCache(PendingTest test, TestResult result) {
+        if (resultCache != null && test.cacheKey != null) {
+            long start = System.nanoTime();
+            resultCache.put(test.cacheKey, result);
+            test.cacheMs += PhaseTimer.elapsedMillis(start);
+        }
+    }
+
+    /**
+     * Acrescenta as fases do próprio runner (parse e cache) às fases registradas pelo
+     * validador e fecha a duração total do teste.
+     */
+    private TestResult timed(PendingTest test, TestResult result) {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        timings.put("parse", test.parseMs);
+        if (resultCache != null) {
+            timings.put("cache", test.cacheMs);
         }
+        if (result.getTimings() != null) {
+            result.getTimings().forEach((phase, ms) -> timings.merge(phase, ms, Long::sum));
+        }
+        result.setTimings(timings);
+        result.setDurationMs(timings.values().stream().mapToLong(Long::longValue).sum());
+        return result;
+    }
+
+    /**
+     * Executa as tarefas no executor (ou na thread atual, se não houver) e espera
+     * todas terminarem. Tarefas que falham de forma inesperada não afetam as demais.
+     */
+    private void runAll(ExecutorService executor, List<Runnable> tasks) {
+        if (executor == null) {
+            tasks.forEach(Runnable::run);
+        } else {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            waitAll(futures);
+        }
+    }
+
+    private void waitAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("Erro inesperado na execução: " + e.getCause().getMessage());
+            } catch (CancellationException e) {
+                // Tarefa cancelada: seus testes ficam sem resultado
+            }
+        }
+    }
+
+    /**
+     * Registra um listener que recebe cada resultado assim que o teste termina.
+     */
+    public void addListener(TestResultListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TestResultListener listener) {
+        listeners.remove(listener);
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Passa a registrar as métricas do runner e do validador no registro informado,
+     * que pode ser exportado para o Prometheus ou gravado em arquivo.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        testsPassed = metrics.counter("fut_tests_total", "Tests that finished, by result", "result", "passed");
+        testsFailed = metrics.counter("fut_tests_total", "Tests that finished, by result", "result", "failed");
+        testDuration = metrics.histogram("fut_test_duration_seconds", "Time spent on each test, all phases included",
+                MetricsRegistry.LATENCY_BUCKETS);
+        cacheHits = metrics.counter("fut_cache_requests_total", "Result cache lookups, by outcome", "result", "hit");
+        cacheMisses = metrics.counter("fut_cache_requests_total", "Result cache lookups, by outcome", "result", "miss");
+        definitionBytes = metrics.counter("fut_parsed_bytes_total", "Bytes of input read and parsed",
+                "kind", "definition");
+        runs = metrics.counter("fut_runs_total", "Test runs started");
+        metrics.gauge("fut_parallelism", "Tests allowed to run at the same time", () -> parallelism);
+        validator.setMetrics(metrics);
+    }
+
+    YamlParser getYamlParser() {
+        return yamlParser;
+    }
+
+    /**
+     * Define o diretório base dos caminhos relativos das definições; por padrão, o diretório atual.
+     */
+    public void setWorkingDirectory(File workingDirectory) {
+        this.yamlParser = new YamlParser(workingDirectory.toPath());
+    }
 
-        return results;
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Define quantos testes podem ser executados simultaneamente.
+     * @param parallelism número de threads; 1 executa sequencialmente
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
     }
 
     /**
@@ -82,14 +611,8 @@ public class FhirutRunner {
         }
     }
 
-    private List<File> findTestFiles(File directory) throws IOException {
-        try (Stream<Path> paths = Files.walk(Paths.get(directory.getAbsolutePath()))) {
-            return paths
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".yml") || path.toString().endsWith(".yaml"))
-                    .map(Path::toFile)
-                    .collect(Collectors.toList());
-        }
+    public static List<File> findTestFiles(File directory) throws IOException {
+        return new TestDiscovery().discover(directory.getAbsoluteFile());
     }
 
     /**
@@ -99,8 +622,12 @@ public class FhirutRunner {
      * @return TestResult configurado com os detalhes do erro
      */
     private TestResult createFailedResult(File testFile, FhirutException exception) {
+        return createFailedResult(testFile, testFile.getName(), exception);
+    }
+
+    private TestResult createFailedResult(File testFile, String testId, FhirutException exception) {
         TestResult result = new TestResult();
-        result.setTestId(testFile.getName());
+        result.setTestId(testId);
         result.setPassed(false);
 
         // Cria diferença de validação para o erro
@@ -127,4 +654,305 @@ public class FhirutRunner {
 
         return result;
     }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Define o número máximo de instâncias enviadas ao validador em uma única chamada.
+     * @param batchSize tamanho do lote; 1 desativa o agrupamento
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public TestTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @param timeouts tempos limite por teste e prazo global; null para os padrões do mecanismo
+     */
+    public void setTimeouts(TestTimeouts timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * @param priority ordem dos lotes incompletos validados no fim; null para a ordem de descoberta
+     * @param urgent testes validados assim que são lidos, sem esperar o lote e à frente dos
+     *               lotes já enfileirados (null para nenhum)
+     */
+    public void setPriority(Comparator<TestDefinition> priority, Predicate<TestDefinition> urgent) {
+        this.priority = priority;
+        this.urgent = urgent;
+    }
+
+    public int getFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast número de falhas que cancela o restante da execução; 0 para nunca cancelar
+     */
+    public void setFailFast(int failFast) {
+        this.failFast = failFast;
+    }
+
+    public TestSelection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Define quais testes rodam; testes fora da seleção são descartados logo após o parse.
+     */
+    public void setSelection(TestSelection selection) {
+        this.selection = selection != null ? selection : new TestSelection();
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Ativa a reutilização de resultados de execuções anteriores.
+     * @param resultCache cache de resultados, ou null para sempre executar todos os testes
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * @return identificação do validador em uso, usada nas chaves do cache de resultados
+     */
+    public String getValidatorFingerprint() {
+        return validator.getEngine().getFingerprint();
+    }
+
+    /**
+     * @return tempo acumulado nas fases internas do mecanismo de validação
+     */
+    public Map<String, Long> getEngineTimings() {
+        return validator.getEngine().getTimings();
+    }
+
+    /**
+     * Teste já parseado, com a posição original (arquivo e definição) para manter a ordem dos resultados.
+     */
+    private static class PendingTest {
+        private final long order;
+        private final File file;
+        private final TestDefinition definition;
+        private String cacheKey;
+        private Duration timeout;
+        private long parseMs;
+        private long cacheMs;
+
+        private PendingTest(long order, File file, TestDefinition definition) {
+            this.order = order;
+            this.file = file;
+            this.definition = definition;
+        }
+    }
+
+    /**
+     * Destino interno dos resultados, além dos listeners.
+     */
+    private interface ResultSink {
+        void accept(long order, TestResult result);
+    }
+
+    /**
+     * Entrega cada resultado uma única vez, serializando as chamadas aos listeners,
+     * e garante no fim um resultado para cada teste esperado que ficou sem resposta.
+     *
+     * <p>Os listeners recebem os resultados na ordem de descoberta, não na de término:
+     * um resultado fica retido até que nenhum teste anterior possa mais aparecer (o
+     * arquivo de cada teste anterior já foi lido e o teste já tem resultado). Assim os
+     * relatórios saem iguais entre execuções com qualquer {@code --jobs}. Listeners de
+     * progresso ({@link TestResultListener#ordered()} false) recebem cada resultado na hora.</p>
+     */
+    private class Publisher {
+        // Testes esperados e, até terminarem de ser lidos, os arquivos (na posição 0 de cada um)
+        private final TreeMap<Long, File> outstanding = new TreeMap<>();
+        // Resultados prontos esperando os anteriores
+        private final TreeMap<Long, TestResult> held = new TreeMap<>();
+        private final ResultSink sink;
+        // Threads dentro do validador, interrompidas quando o --fail-fast cancela a execução
+        private final Set<Thread> validating = new HashSet<>();
+        private final Set<Thread> interrupted = new HashSet<>();
+        private int failures;
+        private volatile boolean cancelled;
+
+        private Publisher(int files, ResultSink sink) {
+            this.sink = sink;
+            listeners.forEach(listener -> listener.onStart(files));
+        }
+
+        private synchronized void expect(long order, File file) {
+            outstanding.put(order, file);
+        }
+
+        private synchronized void publish(long order, TestResult result) {
+            if (outstanding.remove(order) == null) {
+                return;
+            }
+            (result.isPassed() ? testsPassed : testsFailed).inc();
+            if (!result.isPassed() && failFast > 0 && ++failures == failFast) {
+                cancel();
+            }
+            testDuration.observeMillis(result.getDurationMs());
+            if (sink != null) {
+                sink.accept(order, result);
+            }
+            for (TestResultListener listener : listeners) {
+                if (!listener.ordered()) {
+                    deliver(listener, result);
+                }
+            }
+            held.put(order, result);
+            release();
+        }
+
+        /**
+         * Entrega os resultados retidos que já não podem ser precedidos por nenhum outro.
+         */
+        private void release() {
+            while (!held.isEmpty() && (outstanding.isEmpty() || held.firstKey() < outstanding.firstKey())) {
+                TestResult result = held.pollFirstEntry().getValue();
+                for (TestResultListener listener : listeners) {
+                    if (listener.ordered()) {
+                        deliver(listener, result);
+                    }
+                }
+            }
+        }
+
+        private void deliver(TestResultListener listener, TestResult result) {
+            try {
+                listener.onResult(result);
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao publicar resultado de " + result.getTestId() + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Interrompe as validações em andamento (o mecanismo encerra os processos) e faz
+         * os lotes ainda não iniciados terminarem sem validar.
+         */
+        private void cancel() {
+            cancelled = true;
+            System.out.println("⏹️ " + failures + " falha(s) atingiram o --fail-fast; cancelando os testes restantes");
+            synchronized (validating) {
+                Thread current = Thread.currentThread();
+                for (Thread thread : validating) {
+                    if (thread != current) {
+                        interrupted.add(thread);
+                        thread.interrupt();
+                    }
+                }
+            }
+        }
+
+        private boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Marca a entrada e a saída da thread atual do validador.
+         * @return ao entrar, false se a execução já foi cancelada e o teste não deve ser
+         *         validado; ao sair, false se a validação foi interrompida pelo cancelamento
+         *         e o resultado deve ser descartado
+         */
+        private boolean validating(boolean entering) {
+            synchronized (validating) {
+                if (entering) {
+                    // Sob o mesmo lock do cancel(): ou a thread é interrompida, ou vê o cancelamento
+                    if (cancelled) {
+                        return false;
+                    }
+                    validating.add(Thread.currentThread());
+                    return true;
+                }
+                validating.remove(Thread.currentThread());
+                if (!interrupted.remove(Thread.currentThread())) {
+                    return true;
+                }
+            }
+            // O mecanismo pode já ter consumido a interrupção; se não, ela não deve atingir o próximo lote
+            Thread.interrupted();
+            return false;
+        }
+
+        /**
+         * Dispensa o resultado esperado (arquivo lido sem erro, teste fora da seleção).
+         */
+        private synchronized void skip(long order) {
+            outstanding.remove(order);
+            release();
+        }
+
+        private synchronized void finish() {
+            if (cancelled) {
+                System.out.println("⏭️ " + outstanding.size() + " teste(s) cancelado(s) pelo --fail-fast");
+                outstanding.clear();
+            }
+            for (Map.Entry<Long, File> missing : new TreeMap<>(outstanding).entrySet()) {
+                publish(missing.getKey(), createFailedResult(missing.getValue(),
+                        new FhirutException("Teste não foi executado")));
+            }
+            release();
+            listeners.forEach(TestResultListener::onFinish);
+        }
+    }
+
+    /**
+     * Lote na fila do executor: os urgentes antes dos demais e, entre iguais, na ordem
+     * em que foram despachados.
+     */
+    private static class BatchTask extends FutureTask<Void> implements Comparable<BatchTask> {
+        private final boolean urgent;
+        private final long sequence;
+
+        private BatchTask(Runnable batch, boolean urgent, long sequence) {
+            super(batch, null);
+            this.urgent = urgent;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(BatchTask other) {
+            if (urgent != other.urgent) {
+                return urgent ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Threads daemon nomeadas, para não impedir o encerramento da JVM.
+     */
+    private static class RunnerThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private RunnerThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Libera o mecanismo de validação (processos, class loaders residentes).
+     */
+    @Override
+    public void close() {
+        validator.getEngine().close();
+    }
 }
\ No newline at end of file
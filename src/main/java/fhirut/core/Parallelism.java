@@ -0,0 +1,43 @@
+package fhirut.core;
+
+import fhirut.validator.EngineType;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Calcula o paralelismo padrão da execução a partir dos núcleos disponíveis e
+ * da memória que cada instância do validador consome.
+ */
+public final class Parallelism {
+    public static final long DEFAULT_MEMORY_PER_VALIDATOR_MB = 1024;
+
+    private static final double MEMORY_BUDGET_RATIO = 0.75;
+    private static final long MB = 1024L * 1024L;
+
+    private Parallelism() {
+    }
+
+    /**
+     * @param engineType mecanismo de validação escolhido
+     * @param memoryPerValidatorMb memória estimada de uma instância do validador
+     * @return número de testes que podem ser executados ao mesmo tempo
+     */
+    public static int defaultLevel(EngineType engineType, long memoryPerValidatorMb) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long budget = (long) (availableMemory(engineType) * MEMORY_BUDGET_RATIO);
+        long byMemory = budget / (Math.max(1, memoryPerValidatorMb) * MB);
+        return (int) Math.max(1, Math.min(cores, byMemory));
+    }
+
+    private static long availableMemory(EngineType engineType) {
+        if (engineType == EngineType.CLI || engineType == EngineType.POOL) {
+            // Os validadores rodam em processos próprios: o limite é a memória da máquina
+            java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+                return sunOs.getTotalMemorySize();
+            }
+        }
+        // Validadores residentes dividem o heap desta JVM
+        return Runtime.getRuntime().maxMemory();
+    }
+}
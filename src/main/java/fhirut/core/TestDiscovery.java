@@ -0,0 +1,105 @@
+package fhirut.core;
+
+import fhirut.cache.ResultCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Encontra os arquivos de teste de um diretório.
+ *
+ * <p>Diretórios pesados que nunca contêm testes (build, controle de versão,
+ * dependências) não são percorridos. Os arquivos candidatos passam pelos globs e
+ * pelo pré-filtro textual de {@link TestSelection} em paralelo, de modo que YAMLs
+ * que não são testes, ou testes não selecionados, nem chegam ao parser.</p>
+ */
+public class TestDiscovery {
+    public static final Set<String> PRUNED_DIRECTORIES = Set.of(
+            ".git", ".svn", ".hg", ".idea", ".gradle", "target", "node_modules", ResultCache.DIRECTORY);
+
+    private final TestSelection selection;
+
+    public TestDiscovery() {
+        this(new TestSelection());
+    }
+
+    public TestDiscovery(TestSelection selection) {
+        this.selection = selection;
+    }
+
+    public List<File> discover(File directory) throws IOException {
+        Path root = directory.toPath();
+        List<Path> candidates = new ArrayList<>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && PRUNED_DIRECTORIES.contains(String.valueOf(dir.getFileName()))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && isYaml(file) && selection.acceptsPath(root.relativize(file))) {
+                    candidates.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("⚠️ Não foi possível ler " + file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return candidates.parallelStream()
+                .filter(this::mayBeSelected)
+                .map(Path::toFile)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolve os argumentos da linha de comando: diretórios são percorridos como em
+     * {@link #discover(File)}; arquivos citados explicitamente são mantidos, exceto
+     * quando a seleção por id/tag os descarta.
+     */
+    public List<File> resolve(List<File> paths) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (File path : paths) {
+            if (path.isDirectory()) {
+                files.addAll(discover(path));
+            } else if (!selection.filtersTests() || !path.isFile() || mayBeSelected(path.toPath())) {
+                // Arquivos inexistentes seguem adiante para aparecerem como falha no relatório
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    private boolean mayBeSelected(Path file) {
+        try {
+            return selection.mayMatch(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Arquivo ilegível segue adiante para o erro aparecer no relatório
+            return true;
+        }
+    }
+
+    static boolean isYaml(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".yml") || name.endsWith(".yaml");
+    }
+}
@@ -0,0 +1,303 @@
+package fhirut.core;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fhirut.cache.ResultCache;
+import fhirut.model.TestDefinition;
+import fhirut.model.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Histórico por teste, mantido entre execuções em {@code .fut-cache/history.json} no
+ * diretório de saída: último resultado, última duração e a sequência dos resultados
+ * recentes, de onde sai a instabilidade (quantas vezes o resultado alternou).
+ *
+ * <p>Serve para ordenar a execução: os testes que falharam recentemente
+ * ({@link #failedRecently}) são validados assim que lidos, à frente dos lotes que já
+ * esperam na fila, e os lotes que sobram no fim
+ * seguem {@link #priority()}. Numa verificação antes do merge a primeira falha aparece
+ * o mais cedo possível.</p>
+ */
+public class TestHistory implements TestResultListener {
+    public static final String FILE_NAME = "history.json";
+    // Quantos resultados recentes cada teste guarda
+    static final int WINDOW = 20;
+    private static final double FLAKY_RATIO = 0.3;
+    private static final int FLAKY_MIN_RUNS = 4;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final File file;
+    private final Map<String, Entry> tests;
+    // Testes vistos nesta execução, para apontar os instáveis no fim
+    private final Set<String> seen = new LinkedHashSet<>();
+
+    private TestHistory(File file, Map<String, Entry> tests) {
+        this.file = file;
+        this.tests = tests;
+    }
+
+    /**
+     * Lê o histórico do diretório de saída; um arquivo ausente ou ilegível é um histórico vazio.
+     */
+    public static TestHistory load(File outputDir) {
+        File file = outputDir.toPath().resolve(ResultCache.DIRECTORY).resolve(FILE_NAME).toFile();
+        Map<String, Entry> tests = new HashMap<>();
+        if (file.isFile()) {
+            try {
+                Stored stored = MAPPER.readValue(file, Stored.class);
+                if (stored.getTests() != null) {
+                    tests.putAll(stored.getTests());
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ Histórico de testes ilegível, recomeçando: " + e.getMessage());
+            }
+        }
+        return new TestHistory(file, tests);
+    }
+
+    public synchronized boolean isEmpty() {
+        return tests.isEmpty();
+    }
+
+    public synchronized Entry get(String testId) {
+        return tests.get(testId);
+    }
+
+    /**
+     * @return test_id → duração em ms da última execução em que o teste foi validado
+     */
+    public synchronized Map<String, Long> durations() {
+        Map<String, Long> durations = new HashMap<>();
+        tests.forEach((id, entry) -> {
+            if (entry.getLastDurationMs() != null) {
+                durations.put(id, entry.getLastDurationMs());
+            }
+        });
+        return durations;
+    }
+
+    /**
+     * Ordem de execução: falhou na última vez, depois falhou nas recentes (mais falhas
+     * primeiro), depois o restante; em cada grupo, menor duração primeiro. Testes sem
+     * histórico entram com duração zero, para serem conhecidos logo.
+     */
+    public Comparator<TestDefinition> priority() {
+        return Comparator
+                .comparingInt((TestDefinition definition) -> tier(get(definition.getTestId())))
+                .thenComparingInt(definition -> -recentFailures(get(definition.getTestId())))
+                .thenComparingLong(definition -> {
+                    Entry entry = get(definition.getTestId());
+                    return entry != null && entry.getLastDurationMs() != null ? entry.getLastDurationMs() : 0;
+                });
+    }
+
+    /**
+     * @return true se o teste falhou em alguma das execuções recentes
+     */
+    public boolean failedRecently(TestDefinition definition) {
+        return recentFailures(get(definition.getTestId())) > 0;
+    }
+
+    private static int tier(Entry entry) {
+        if (entry == null) {
+            return 1;
+        }
+        if (Boolean.FALSE.equals(entry.getLastPassed())) {
+            return 0;
+        }
+        return recentFailures(entry) > 0 ? 1 : 2;
+    }
+
+    private static int recentFailures(Entry entry) {
+        if (entry == null || entry.getRecent() == null) {
+            return 0;
+        }
+        return (int) entry.getRecent().chars().filter(c -> c == 'F').count();
+    }
+
+    /**
+     * @return fração dos resultados recentes em que o resultado mudou em relação ao anterior
+     */
+    public static double flakiness(Entry entry) {
+        String recent = entry != null ? entry.getRecent() : null;
+        if (recent == null || recent.length() < 2) {
+            return 0;
+        }
+        int flips = 0;
+        for (int i = 1; i < recent.length(); i++) {
+            if (recent.charAt(i) != recent.charAt(i - 1)) {
+                flips++;
+            }
+        }
+        return (double) flips / (recent.length() - 1);
+    }
+
+    @Override
+    public void onStart(int totalFiles) {
+    }
+
+    @Override
+    public synchronized void onResult(TestResult result) {
+        if (result.getTestId() == null) {
+            return;
+        }
+        Entry entry = tests.computeIfAbsent(result.getTestId(), id -> new Entry());
+        if (!seen.add(result.getTestId())) {
+            // Vários arquivos com o mesmo test_id contam como um único resultado por execução
+            if (!result.isPassed() && Boolean.TRUE.equals(entry.getLastPassed())) {
+                entry.setLastPassed(false);
+                entry.setFailures(entry.getFailures() + 1);
+                String recent = entry.getRecent();
+                entry.setRecent(recent.substring(0, recent.length() - 1) + 'F');
+            }
+            return;
+        }
+        entry.setLastPassed(result.isPassed());
+        entry.setRuns(entry.getRuns() + 1);
+        if (!result.isPassed()) {
+            entry.setFailures(entry.getFailures() + 1);
+        }
+        String recent = (entry.getRecent() != null ? entry.getRecent() : "") + (result.isPassed() ? 'P' : 'F');
+        entry.setRecent(recent.length() > WINDOW ? recent.substring(recent.length() - WINDOW) : recent);
+        // Resultados reaproveitados do cache não têm a fase de validação: a duração antiga vale mais
+        if (result.getTimings() != null && result.getTimings().containsKey("validation")) {
+            entry.setLastDurationMs(result.getDurationMs());
+        }
+        entry.setLastRun(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void onFinish() {
+        List<String> flaky = new ArrayList<>();
+        for (String id : seen) {
+            Entry entry = tests.get(id);
+            if (entry.getRecent().length() >= FLAKY_MIN_RUNS && flakiness(entry) >= FLAKY_RATIO) {
+                flaky.add(id);
+            }
+        }
+        seen.clear();
+        if (!flaky.isEmpty()) {
+            System.out.println("🎲 Teste(s) instável(is) nas últimas execuções: " + String.join(", ", flaky));
+        }
+        save();
+    }
+
+    private void save() {
+        try {
+            Path target = file.toPath();
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), FILE_NAME, ".tmp");
+            Stored stored = new Stored();
+            stored.setTests(new TreeMap<>(tests));
+            MAPPER.writeValue(temp.toFile(), stored);
+            // Troca atômica: uma execução interrompida não deixa o histórico pela metade
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("⚠️ Não foi possível gravar o histórico de testes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Histórico de um teste.
+     */
+    public static class Entry {
+        private Boolean lastPassed;
+        private Long lastDurationMs;
+        private int runs;
+        private int failures;
+        // Resultados recentes, do mais antigo para o mais novo: P (passou) ou F (falhou)
+        private String recent;
+        private long lastRun;
+
+        // Getters e Setters
+
+        public Boolean getLastPassed() {
+            return lastPassed;
+        }
+
+        public void setLastPassed(Boolean lastPassed) {
+            this.lastPassed = lastPassed;
+        }
+
+        public Long getLastDurationMs() {
+            return lastDurationMs;
+        }
+
+        public void setLastDurationMs(Long lastDurationMs) {
+            this.lastDurationMs = lastDurationMs;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public void setRuns(int runs) {
+            this.runs = runs;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public void setFailures(int failures) {
+            this.failures = failures;
+        }
+
+        public String getRecent() {
+            return recent;
+        }
+
+        public void setRecent(String recent) {
+            this.recent = recent;
+        }
+
+        public long getLastRun() {
+            return lastRun;
+        }
+
+        public void setLastRun(long lastRun) {
+            this.lastRun = lastRun;
+        }
+    }
+
+    /**
+     * Formato do arquivo.
+     */
+    public static class Stored {
+        private int version = 1;
+        private Map<String, Entry> tests;
+
+        // Getters e Setters
+
+        public int getVersion() {
+            return version;
+        }
+
+        public void setVersion(int version) {
+            this.version = version;
+        }
+
+        public Map<String, Entry> getTests() {
+            return tests;
+        }
+
+        public void setTests(Map<String, Entry> tests) {
+            this.tests = tests;
+        }
+    }
+}
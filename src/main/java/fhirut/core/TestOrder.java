@@ -0,0 +1,11 @@
+package fhirut.core;
+
+/**
+ * Ordem em que os testes são validados.
+ */
+public enum TestOrder {
+    /** Falhas recentes primeiro e, entre elas, os mais rápidos, pelo histórico do diretório de saída. */
+    HISTORY,
+    /** Ordem em que os arquivos são encontrados, validando cada lote assim que fica completo. */
+    DISCOVERY
+}
@@ -0,0 +1,38 @@
+package fhirut.core;
+
+import fhirut.model.TestResult;
+
+/**
+ * Recebe os resultados à medida que cada teste termina, sem esperar a suíte inteira.
+ *
+ * <p>O {@link FhirutRunner} chama os métodos de um listener sempre de uma thread
+ * por vez, então as implementações não precisam ser thread-safe. Os resultados
+ * chegam na ordem de descoberta (arquivos, e definições dentro de cada arquivo),
+ * mesmo quando os testes rodam em paralelo; um resultado pode esperar os anteriores.</p>
+ */
+public interface TestResultListener {
+
+    /**
+     * Chamado antes do primeiro resultado.
+     * @param files número de arquivos de teste que serão lidos; um arquivo pode conter
+     *              vários testes, então o número de resultados pode ser diferente
+     */
+    default void onStart(int files) {
+    }
+
+    void onResult(TestResult result);
+
+    /**
+     * @return false para receber cada resultado assim que o teste termina, fora da ordem
+     *         de descoberta (ex.: progresso ao vivo no console)
+     */
+    default boolean ordered() {
+        return true;
+    }
+
+    /**
+     * Chamado depois do último resultado, mesmo que algum teste tenha falhado.
+     */
+    default void onFinish() {
+    }
+}
@@ -0,0 +1,214 @@
+package fhirut.core;
+
+import fhirut.model.TestDefinition;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Critérios para escolher quais testes rodam: globs de inclusão/exclusão de
+ * arquivos, tags e ids.
+ *
+ * <p>A seleção é aplicada em duas etapas. Na descoberta, {@link #mayMatch(String)}
+ * olha só o texto do YAML, sem parse, e descarta arquivos que certamente não
+ * interessam. Depois do parse, {@link #matches(TestDefinition)} confirma a escolha
+ * antes de qualquer validação.</p>
+ */
+public class TestSelection {
+    // test_id no início da linha, inclusive dentro de listas ("- test_id: ...")
+    private static final Pattern TEST_ID_LINE = Pattern.compile(
+            "^[ \\t]*(?:-[ \\t]+)?test_id[ \\t]*:[ \\t]*[\"']?([^\"'#\\r\\n]*?)[\"']?[ \\t]*(?:#.*)?$",
+            Pattern.MULTILINE);
+    // Definições parametrizadas geram test_ids derivados, que o texto não mostra
+    private static final Pattern EXPANDED = Pattern.compile(
+            "\\$\\{|^[ \\t]*(?:-[ \\t]+)?(?:parameters[ \\t]*:|instance_path[ \\t]*:[ \\t]*(?:\\[|$|.*[*?{\\[]))",
+            Pattern.MULTILINE);
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final List<String> tags = new ArrayList<>();
+    private final List<Pattern> ids = new ArrayList<>();
+    private Set<String> exactIds;
+    private TestShard shard;
+
+    public TestSelection include(String glob) {
+        includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    public TestSelection exclude(String glob) {
+        excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        return this;
+    }
+
+    public TestSelection tag(String tag) {
+        tags.add(tag);
+        return this;
+    }
+
+    /**
+     * @param id test_id exato, ou com {@code *} e {@code ?} como curingas
+     */
+    public TestSelection id(String id) {
+        ids.add(Pattern.compile(globToRegex(id)));
+        return this;
+    }
+
+    /**
+     * Restringe a execução aos testes de um shard.
+     */
+    public TestSelection shard(TestShard shard) {
+        this.shard = shard;
+        return this;
+    }
+
+    public TestShard getShard() {
+        return shard;
+    }
+
+    /**
+     * Cópia desta seleção que aceita, além dos critérios atuais, apenas os test_ids informados
+     * (comparados literalmente, sem curingas).
+     */
+    public TestSelection restrictedTo(Set<String> testIds) {
+        TestSelection restricted = new TestSelection();
+        restricted.includes.addAll(includes);
+        restricted.excludes.addAll(excludes);
+        restricted.tags.addAll(tags);
+        restricted.ids.addAll(ids);
+        restricted.shard = shard;
+        restricted.exactIds = new HashSet<>(testIds);
+        return restricted;
+    }
+
+    /**
+     * Verifica os globs contra o caminho relativo à raiz da descoberta.
+     * Sem globs de inclusão, qualquer arquivo YAML é aceito.
+     */
+    public boolean acceptsPath(Path relativePath) {
+        for (PathMatcher exclude : excludes) {
+            if (exclude.matches(relativePath)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (PathMatcher include : includes) {
+            if (include.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pré-filtro barato sobre o texto do arquivo: exige ao menos um {@code test_id}
+     * (arquivos YAML que não são testes ficam de fora) e, se houver seleção por id
+     * ou tag, que algum id case e que alguma tag apareça no texto. Arquivos com
+     * definições parametrizadas não são descartados pelo id, que só é conhecido
+     * depois da expansão. Com shard, o arquivo também precisa ter algum teste do shard.
+     */
+    public boolean mayMatch(String yaml) {
+        Matcher matcher = TEST_ID_LINE.matcher(yaml);
+        boolean hasTest = false;
+        boolean expanded = (!ids.isEmpty() || shard != null) && EXPANDED.matcher(yaml).find();
+        boolean idMatches = ids.isEmpty() || expanded;
+        boolean shardMatches = shard == null || expanded;
+        while (matcher.find()) {
+            hasTest = true;
+            String testId = matcher.group(1).trim();
+            if (!idMatches && matchesId(testId)) {
+                idMatches = true;
+            }
+            if (!shardMatches && shard.owns(testId)) {
+                shardMatches = true;
+            }
+        }
+        if (!hasTest || !idMatches || !shardMatches) {
+            return false;
+        }
+        if (tags.isEmpty()) {
+            return true;
+        }
+        for (String tag : tags) {
+            if (yaml.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Confirmação exata sobre a definição já parseada.
+     */
+    public boolean matches(TestDefinition definition) {
+        if (exactIds != null && !exactIds.contains(definition.getTestId())) {
+            return false;
+        }
+        if (!ids.isEmpty() && !matchesId(definition.getTestId())) {
+            return false;
+        }
+        if (shard != null && !shard.owns(definition.getTestId())) {
+            return false;
+        }
+        if (tags.isEmpty()) {
+            return true;
+        }
+        if (definition.getTags() == null) {
+            return false;
+        }
+        for (String tag : tags) {
+            if (definition.getTags().contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Erros de leitura não têm definição para a seleção avaliar e são sempre relatados;
+     * com shard, só pelo shard dono do id do erro, para não se repetirem na junção.
+     */
+    public boolean reportsError(String resultId) {
+        return shard == null || shard.owns(resultId);
+    }
+
+    /**
+     * @return true se a seleção filtra por id, tag ou shard (globs só afetam a descoberta)
+     */
+    public boolean filtersTests() {
+        return !ids.isEmpty() || !tags.isEmpty() || exactIds != null || shard != null;
+    }
+
+    private boolean matchesId(String testId) {
+        if (testId == null) {
+            return false;
+        }
+        for (Pattern id : ids) {
+            if (id.matcher(testId).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : glob.split("(?=[*?])|(?<=[*?])")) {
+            switch (part) {
+                case "*" -> regex.append(".*");
+                case "?" -> regex.append('.');
+                default -> regex.append(Pattern.quote(part));
+            }
+        }
+        return regex.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package fhirut.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uma fatia ({@code --shard i/N}) da suíte, para dividir a execução entre várias máquinas
+ * (ou processos) sem coordenação entre elas: cada shard decide sozinho, a partir do
+ * test_id, quais testes são seus, e todos chegam à mesma divisão.
+ *
+ * <p>Com um histórico informado explicitamente ({@code --shard-history}), os testes com
+ * duração conhecida são distribuídos do mais lento para o mais rápido, sempre para o
+ * shard com menos tempo acumulado (LPT), para os shards terminarem juntos. Os demais
+ * são distribuídos pelo hash do test_id. Todos os shards precisam usar o mesmo
+ * histórico; {@link #getSplit()} identifica a divisão, para o {@code fut merge}
+ * recusar relatórios de divisões diferentes.</p>
+ */
+public class TestShard {
+    // Divisão apenas pelo hash do test_id, sem histórico
+    public static final String SPLIT_BY_ID = "test_id";
+
+    private final int index;
+    private final int count;
+    // test_id → shard (base 0) dos testes com histórico
+    private final Map<String, Integer> assigned = new HashMap<>();
+    private long[] loads;
+    private String split = SPLIT_BY_ID;
+
+    /**
+     * @param index shard desta execução, de 1 a {@code count}
+     */
+    public TestShard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Shard inválido: " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.loads = new long[count];
+    }
+
+    /**
+     * @param spec no formato {@code i/N}, com {@code 1 <= i <= N}
+     */
+    public static TestShard parse(String spec) {
+        String[] parts = spec.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Shard deve estar no formato i/N: " + spec);
+        }
+        try {
+            return new TestShard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Shard deve estar no formato i/N: " + spec);
+        }
+    }
+
+    /**
+     * Distribui os testes do histórico pelos shards, equilibrando a duração somada.
+     * @param durations test_id → duração em ms na execução anterior
+     */
+    public TestShard withHistory(Map<String, Long> durations) {
+        List<Map.Entry<String, Long>> tests = new ArrayList<>(durations.entrySet());
+        // Desempate pelo id, para a ordem não depender do arquivo de histórico
+        tests.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        assigned.clear();
+        loads = new long[count];
+        split = tests.isEmpty() ? SPLIT_BY_ID : "duration:" + digest(tests);
+        for (Map.Entry<String, Long> test : tests) {
+            int lightest = 0;
+            for (int shard = 1; shard < count; shard++) {
+                if (loads[shard] < loads[lightest]) {
+                    lightest = shard;
+                }
+            }
+            assigned.put(test.getKey(), lightest);
+            // Testes instantâneos ainda contam, para não irem todos para o mesmo shard
+            loads[lightest] += Math.max(1, test.getValue());
+        }
+        return this;
+    }
+
+    private static String digest(List<Map.Entry<String, Long>> tests) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, Long> test : tests) {
+                digest.update((test.getKey() + "\t" + test.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true se o teste pertence a este shard
+     */
+    public boolean owns(String testId) {
+        if (testId == null) {
+            return index == 1;
+        }
+        Integer shard = assigned.get(testId);
+        if (shard == null) {
+            // String.hashCode é definido pela especificação, então é igual em qualquer JVM
+            shard = Integer.remainderUnsigned(testId.hashCode() * 0x9E3779B9, count);
+        }
+        return shard == index - 1;
+    }
+
+    /**
+     * Lê test_id e duração de cada linha de um relatório NDJSON, sem carregar o
+     * OperationOutcome. Linhas que não puderem ser lidas são ignoradas.
+     */
+    public static Map<String, Long> readHistory(File ndjson) throws IOException {
+        Map<String, Long> durations = new HashMap<>();
+        JsonFactory factory = new JsonFactory();
+        try (BufferedReader reader = Files.newBufferedReader(ndjson.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try (JsonParser parser = factory.createParser(line)) {
+                    readLine(parser, durations);
+                } catch (IOException e) {
+                    // Linha truncada (ex.: execução interrompida): fica sem histórico
+                }
+            }
+        }
+        return durations;
+    }
+
+    private static void readLine(JsonParser parser, Map<String, Long> durations) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return;
+        }
+        String testId = null;
+        long durationMs = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("testId".equals(field) && value == JsonToken.VALUE_STRING) {
+                testId = parser.getText();
+            } else if ("durationMs".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                durationMs = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (testId != null && durationMs >= 0) {
+            durations.put(testId, durationMs);
+        }
+    }
+
+    /**
+     * @return duração prevista (ms, pelo histórico) de cada shard
+     */
+    public long[] getLoads() {
+        return loads.clone();
+    }
+
+    /**
+     * @return identificação da divisão: {@link #SPLIT_BY_ID} ou o resumo do histórico usado
+     */
+    public String getSplit() {
+        return split;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return identificação usada no nome dos arquivos de saída, ex.: {@code shard-2-of-4}
+     */
+    public String getQualifier() {
+        return "shard-" + index + "-of-" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,179 @@
+package fhirut.core;
+
+import fhirut.model.TestDefinition;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tempo limite de cada teste e prazo da execução inteira.
+ *
+ * <p>O tempo de um teste vem, nesta ordem, do campo {@code timeout} do YAML, da duração
+ * do teste na execução anterior multiplicada por uma folga (com um mínimo, já que a
+ * primeira validação de um contexto inclui a carga dos IGs) ou do padrão. Assim um
+ * teste que sempre levou 200 ms falha em segundos se travar, em vez de segurar um
+ * slot de execução pelo tempo padrão inteiro.</p>
+ *
+ * <p>Um lote recebe o maior tempo entre os seus testes mais uma folga fixa por teste
+ * adicional, não a soma deles: os testes do lote compartilham a carga do validador,
+ * e um lote travado não pode segurar um slot por minutos.</p>
+ *
+ * <p>Com um prazo global, nenhum teste recebe mais tempo do que o que resta até ele,
+ * e os testes que ainda não começaram quando o prazo vence nem são executados.</p>
+ */
+public class TestTimeouts {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    public static final double DEFAULT_FACTOR = 3;
+    public static final Duration MINIMUM_ADAPTIVE = Duration.ofSeconds(10);
+    // Tempo acrescentado ao lote por teste além do mais demorado
+    public static final Duration BATCH_ALLOWANCE_PER_TEST = Duration.ofSeconds(2);
+
+    private static final Pattern SIMPLE = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(ms|s|m|h)?");
+
+    private Duration defaultTimeout = DEFAULT_TIMEOUT;
+    private double factor = DEFAULT_FACTOR;
+    private Map<String, Long> history = Map.of();
+    private Duration globalTimeout;
+    private long deadline;
+
+    /**
+     * Converte durações como {@code 90}, {@code 90s}, {@code 500ms}, {@code 2m}, {@code 1h}
+     * ou ISO-8601 ({@code PT1M30S}). Número sem unidade é em segundos.
+     * @throws IllegalArgumentException se o texto não for uma duração válida
+     */
+    public static Duration parse(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        Matcher matcher = SIMPLE.matcher(value);
+        if (matcher.matches()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            String unit = matcher.group(2) != null ? matcher.group(2) : "s";
+            long millis = switch (unit) {
+                case "ms" -> (long) amount;
+                case "m" -> (long) (amount * 60_000);
+                case "h" -> (long) (amount * 3_600_000);
+                default -> (long) (amount * 1000);
+            };
+            return positive(Duration.ofMillis(millis), text);
+        }
+        try {
+            return positive(Duration.parse(text.trim().toUpperCase(Locale.ROOT)), text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Duração inválida: " + text + " (use, por exemplo, 90s, 500ms ou 2m)");
+        }
+    }
+
+    private static Duration positive(Duration duration, String text) {
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("Duração deve ser positiva: " + text);
+        }
+        return duration;
+    }
+
+    /**
+     * @param history test_id → duração em ms na execução anterior
+     */
+    public TestTimeouts withHistory(Map<String, Long> history) {
+        this.history = history;
+        return this;
+    }
+
+    /**
+     * Começa a contar o prazo global, se houver. Chamado no início de cada execução.
+     */
+    public void start() {
+        if (globalTimeout != null) {
+            deadline = System.nanoTime() + globalTimeout.toNanos();
+        }
+    }
+
+    /**
+     * @return tempo limite da validação do teste, já limitado pelo prazo global
+     * @throws IllegalArgumentException se o {@code timeout} do YAML for inválido
+     */
+    public Duration timeoutFor(TestDefinition definition) {
+        Duration timeout;
+        Long previous = history.get(definition.getTestId());
+        if (definition.getTimeout() != null && !definition.getTimeout().isBlank()) {
+            timeout = parse(definition.getTimeout());
+        } else if (previous != null && factor > 0) {
+            timeout = Duration.ofMillis((long) (previous * factor));
+            if (timeout.compareTo(MINIMUM_ADAPTIVE) < 0) {
+                timeout = MINIMUM_ADAPTIVE;
+            }
+        } else {
+            timeout = defaultTimeout;
+        }
+        return limit(timeout);
+    }
+
+    /**
+     * @param timeouts tempos limite dos testes do lote
+     * @return o maior deles mais {@link #BATCH_ALLOWANCE_PER_TEST} para cada teste adicional,
+     *         sem passar da soma
+     */
+    public static Duration batchBudget(List<Duration> timeouts) {
+        Duration longest = Duration.ZERO;
+        Duration sum = Duration.ZERO;
+        for (Duration timeout : timeouts) {
+            longest = timeout.compareTo(longest) > 0 ? timeout : longest;
+            sum = sum.plus(timeout);
+        }
+        Duration capped = longest.plus(BATCH_ALLOWANCE_PER_TEST.multipliedBy(Math.max(0, timeouts.size() - 1)));
+        return capped.compareTo(sum) < 0 ? capped : sum;
+    }
+
+    /**
+     * @return o menor entre o tempo informado e o que resta do prazo global
+     */
+    public Duration limit(Duration timeout) {
+        if (globalTimeout == null) {
+            return timeout;
+        }
+        Duration remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    /**
+     * @return true se o prazo global da execução já venceu
+     */
+    public boolean expired() {
+        return globalTimeout != null && deadline - System.nanoTime() <= 0;
+    }
+
+    // Getters e Setters
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    /**
+     * @param factor multiplicador da duração anterior; 0 desliga o ajuste pelo histórico
+     */
+    public void setFactor(double factor) {
+        this.factor = factor;
+    }
+
+    public Duration getGlobalTimeout() {
+        return globalTimeout;
+    }
+
+    /**
+     * @param globalTimeout prazo da execução inteira; null para nenhum
+     */
+    public void setGlobalTimeout(Duration globalTimeout) {
+        this.globalTimeout = globalTimeout;
+    }
+}
@@ -0,0 +1,472 @@
+package fhirut.core;
+
+import fhirut.exceptions.FhirutParseException;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestDefinition;
+import fhirut.model.TestResult;
+import fhirut.parser.TestDefinitionHandler;
+import fhirut.parser.YamlParser;
+import fhirut.report.ConsoleReporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Modo {@code --watch}: depois da execução inicial, observa as definições de teste e
+ * os arquivos de que elas dependem (instâncias, recursos de contexto e IGs/perfis
+ * locais) e reexecuta apenas os testes afetados por cada alteração, no mesmo runner
+ * e com o validador já carregado.
+ *
+ * <ul>
+ *   <li>YAML alterado ou criado: o arquivo é relido e todos os seus testes rodam de novo;</li>
+ *   <li>YAML removido: os seus testes saem do relatório;</li>
+ *   <li>dependência alterada: só os testes que a usam rodam de novo;</li>
+ *   <li>arquivo criado ou removido ao lado de uma dependência: os arquivos que dependem
+ *       daquele diretório são relidos (ex.: um glob de {@code instance_path} que passou a
+ *       casar com mais instâncias) e só os testes novos rodam.</li>
+ * </ul>
+ *
+ * <p>O watcher também é um {@link TestResultListener}: guarda um resumo do último
+ * resultado de cada teste, usado para regenerar os relatórios depois de cada reexecução.</p>
+ */
+public class TestWatcher implements TestResultListener, AutoCloseable {
+    /** Espera por mais eventos antes de reexecutar, para agrupar salvamentos em sequência. */
+    private static final long DEBOUNCE_MS = 150;
+
+    private final FhirutRunner runner;
+    private final TestSelection selection;
+    private final YamlParser yamlParser;
+    private final Path workingDirectory;
+    private final boolean verbose;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final List<Path> roots = new ArrayList<>();
+    private final Set<Path> explicitFiles = new HashSet<>();
+    // Índice por arquivo YAML, na ordem da execução inicial
+    private final Map<Path, FileIndex> index = new LinkedHashMap<>();
+    // Último resultado de cada teste, na ordem em que apareceram
+    private final Map<String, TestResult> latest = new LinkedHashMap<>();
+    // Houve testes removidos do relatório desde a última regeneração
+    private boolean removedTests;
+
+    /**
+     * @param workingDirectory base dos caminhos relativos de IGs e perfis locais
+     */
+    public TestWatcher(FhirutRunner runner, File workingDirectory, boolean verbose) throws IOException {
+        this.runner = runner;
+        this.selection = runner.getSelection();
+        this.yamlParser = runner.getYamlParser();
+        this.workingDirectory = normalize(workingDirectory.toPath());
+        this.verbose = verbose;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    @Override
+    public void onResult(TestResult result) {
+        // Como no relatório HTML, o OperationOutcome não é necessário
+        TestResult summary = new TestResult();
+        summary.setTestId(result.getTestId());
+        summary.setPassed(result.isPassed());
+        summary.setDifferences(result.getDifferences());
+        summary.setDurationMs(result.getDurationMs());
+        summary.setTimings(result.getTimings());
+        latest.put(result.getTestId(), summary);
+    }
+
+    /**
+     * Indexa os arquivos da execução inicial e passa a observar os diretórios.
+     * @param paths argumentos da linha de comando: diretórios são observados recursivamente
+     *              (YAMLs novos neles passam a ser testados); arquivos, individualmente
+     * @param testFiles arquivos de teste da execução inicial
+     */
+    public void start(List<File> paths, List<File> testFiles) throws IOException {
+        for (File path : paths) {
+            Path normalized = normalize(path.toPath());
+            if (path.isDirectory()) {
+                roots.add(normalized);
+                registerTree(normalized);
+            } else {
+                explicitFiles.add(normalized);
+                register(normalized.getParent());
+            }
+        }
+        for (File testFile : testFiles) {
+            reindex(normalize(testFile.toPath()));
+        }
+    }
+
+    /**
+     * Bloqueia aguardando alterações até o watcher ser fechado (ou a thread interrompida).
+     * @param afterRun recebe os últimos resultados de todos os testes depois de cada reexecução
+     */
+    public void watch(Consumer<List<TestResult>> afterRun) {
+        System.out.println("👀 Observando " + watchedDirectories.size() + " diretório(s); Ctrl+C para sair");
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> addedOrRemoved = new HashSet<>();
+                boolean overflow = false;
+                // Editores costumam gravar em várias etapas; agrupa tudo que chegar em sequência
+                while (key != null) {
+                    overflow |= collect(key, changed, addedOrRemoved);
+                    key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                }
+                if (overflow) {
+                    // Eventos perdidos: todos os arquivos conhecidos são relidos
+                    changed.addAll(index.keySet());
+                }
+                rerun(changed, addedOrRemoved, afterRun);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Encerrado por close()
+        }
+    }
+
+    /**
+     * @return true se o sistema perdeu eventos e tudo precisa ser reavaliado
+     */
+    private boolean collect(WatchKey key, Set<Path> changed, Set<Path> addedOrRemoved) {
+        Path directory = watchedDirectories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            changed.add(path);
+            if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY) {
+                addedOrRemoved.add(path);
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path) && isUnderRoot(path)) {
+                try {
+                    registerTree(path);
+                    // Arquivos criados junto com o diretório não geram eventos próprios
+                    try (var files = Files.walk(path)) {
+                        files.filter(Files::isRegularFile).forEach(file -> {
+                            changed.add(file);
+                            addedOrRemoved.add(file);
+                        });
+                    }
+                } catch (IOException e) {
+                    System.err.println("⚠️ Não foi possível observar " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        return overflow;
+    }
+
+    private void rerun(Set<Path> changed, Set<Path> addedOrRemoved, Consumer<List<TestResult>> afterRun) {
+        long start = System.nanoTime();
+        Set<String> testIds = new LinkedHashSet<>();
+        Set<Path> files = new LinkedHashSet<>();
+
+        // 1. Definições alteradas: relidas e executadas por inteiro
+        for (Path path : changed) {
+            if (!TestDiscovery.isYaml(path) || !isTracked(path)) {
+                continue;
+            }
+            if (!Files.isRegularFile(path)) {
+                unindex(path);
+                continue;
+            }
+            FileIndex updated = reindex(path);
+            testIds.addAll(updated.testIds);
+            files.add(path);
+        }
+
+        // 2. Arquivos novos ou removidos ao lado de dependências: relê quem depende do diretório
+        Set<Path> touchedDirectories = new HashSet<>();
+        for (Path path : addedOrRemoved) {
+            if (!TestDiscovery.isYaml(path)) {
+                touchedDirectories.add(path.getParent());
+            }
+        }
+        for (Path file : new ArrayList<>(index.keySet())) {
+            if (files.contains(file) || !index.get(file).dependsOnAny(touchedDirectories)) {
+                continue;
+            }
+            Set<String> before = new HashSet<>(index.get(file).testIds);
+            FileIndex updated = reindex(file);
+            for (String testId : updated.testIds) {
+                if (!before.contains(testId)) {
+                    testIds.add(testId);
+                    files.add(file);
+                }
+            }
+        }
+
+        // 3. Dependências alteradas: só os testes que as usam
+        for (Map.Entry<Path, FileIndex> entry : index.entrySet()) {
+            for (Path path : changed) {
+                Set<String> dependents = entry.getValue().dependents.get(path);
+                if (dependents != null) {
+                    testIds.addAll(dependents);
+                    files.add(entry.getKey());
+                }
+            }
+        }
+
+        if (files.isEmpty()) {
+            if (removedTests) {
+                // Só houve remoções: o relatório ainda precisa refletir isso
+                report(afterRun);
+            }
+            return;
+        }
+
+        System.out.println();
+        System.out.println("🔁 Alterações detectadas; reexecutando " + testIds.size() + " teste(s) de "
+                + files.size() + " arquivo(s)");
+        ConsoleReporter console = new ConsoleReporter(verbose);
+        runner.addListener(console);
+        runner.setSelection(selection.restrictedTo(testIds));
+        try {
+            List<File> testFiles = new ArrayList<>();
+            files.forEach(file -> testFiles.add(file.toFile()));
+            runner.streamTests(testFiles);
+        } finally {
+            runner.setSelection(selection);
+            runner.removeListener(console);
+        }
+        console.printSummary();
+
+        report(afterRun);
+        System.out.println("⏱️ Reexecução em " + PhaseTimer.elapsedMillis(start) + " ms");
+        System.out.println("👀 Aguardando alterações...");
+    }
+
+    private void report(Consumer<List<TestResult>> afterRun) {
+        removedTests = false;
+        if (afterRun != null) {
+            afterRun.accept(new ArrayList<>(latest.values()));
+        }
+    }
+
+    /**
+     * Relê um arquivo de teste, atualizando os testes que ele define e as suas dependências.
+     */
+    private FileIndex reindex(Path file) {
+        FileIndex previous = index.get(file);
+        FileIndex updated = new FileIndex();
+        Path yamlDirectory = file.getParent();
+        try {
+            yamlParser.parseTestDefinitions(file.toFile(), new TestDefinitionHandler() {
+                @Override
+                public void onDefinition(int position, TestDefinition definition) {
+                    if (!selection.matches(definition)) {
+                        return;
+                    }
+                    updated.testIds.add(definition.getTestId());
+                    for (Path dependency : dependencies(definition, yamlDirectory)) {
+                        updated.dependents.computeIfAbsent(dependency, k -> new LinkedHashSet<>())
+                                .add(definition.getTestId());
+                    }
+                }
+
+                @Override
+                public void onInvalid(int position, FhirutParseException error) {
+                    // Mesmo id que o runner dá ao resultado da definição inválida
+                    updated.testIds.add(file.getFileName() + "#" + position);
+                }
+            });
+        } catch (FhirutParseException e) {
+            updated.testIds.add(file.getFileName().toString());
+        }
+
+        if (previous != null) {
+            for (String testId : previous.testIds) {
+                if (!updated.testIds.contains(testId) && latest.remove(testId) != null) {
+                    removedTests = true;
+                }
+            }
+        }
+        index.put(file, updated);
+
+        for (Path dependency : updated.dependents.keySet()) {
+            register(dependency.getParent());
+        }
+        return updated;
+    }
+
+    private void unindex(Path file) {
+        FileIndex removed = index.remove(file);
+        if (removed != null) {
+            removed.testIds.forEach(latest::remove);
+            removedTests = true;
+            System.out.println("🗑️ " + file.getFileName() + " removido; " + removed.testIds.size()
+                    + " teste(s) fora do relatório");
+        }
+    }
+
+    /**
+     * Arquivos locais de que o teste depende. IGs e perfis podem ser pacotes ou URLs
+     * canônicas; só entram os que existem como arquivo ou diretório.
+     */
+    private List<Path> dependencies(TestDefinition definition, Path yamlDirectory) {
+        List<Path> dependencies = new ArrayList<>();
+        if (definition.getInstancePath() != null) {
+            dependencies.add(normalize(definition.getInstancePath().toPath()));
+        }
+        if (definition.getContext() != null) {
+            if (definition.getContext().getResources() != null) {
+                definition.getContext().getResources().forEach(file -> dependencies.add(normalize(file.toPath())));
+            }
+            List<String> references = new ArrayList<>();
+            if (definition.getContext().getIgs() != null) {
+                references.addAll(definition.getContext().getIgs());
+            }
+            if (definition.getContext().getProfiles() != null) {
+                references.addAll(definition.getContext().getProfiles());
+            }
+            for (String reference : references) {
+                localFile(reference, yamlDirectory).ifPresent(dependencies::add);
+            }
+        }
+        return dependencies;
+    }
+
+    private Optional<Path> localFile(String reference, Path yamlDirectory) {
+        if (reference == null || reference.contains("://") || reference.contains("#")) {
+            return Optional.empty();
+        }
+        try {
+            for (Path base : List.of(workingDirectory, yamlDirectory)) {
+                Path candidate = normalize(base.resolve(reference));
+                if (Files.exists(candidate)) {
+                    return Optional.of(candidate);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Referência que não é um caminho válido (ex.: id de pacote com caracteres especiais)
+        }
+        return Optional.empty();
+    }
+
+    private boolean isTracked(Path yaml) {
+        if (index.containsKey(yaml) || explicitFiles.contains(yaml)) {
+            return true;
+        }
+        for (Path root : roots) {
+            if (yaml.startsWith(root) && !isPruned(root, yaml) && selection.acceptsPath(root.relativize(yaml))) {
+                try {
+                    return selection.mayMatch(Files.readString(yaml, StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isUnderRoot(Path path) {
+        for (Path root : roots) {
+            if (path.startsWith(root) && !isPruned(root, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPruned(Path root, Path path) {
+        for (Path part : root.relativize(path)) {
+            if (TestDiscovery.PRUNED_DIRECTORIES.contains(part.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && TestDiscovery.PRUNED_DIRECTORIES.contains(String.valueOf(dir.getFileName()))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path directory) {
+        if (directory == null || watchedDirectories.containsValue(directory) || !Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, directory);
+        } catch (IOException e) {
+            System.err.println("⚠️ Não foi possível observar " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Encerra a observação; {@link #watch(Consumer)} retorna em seguida.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao encerrar observação de arquivos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Testes definidos por um arquivo YAML e os arquivos de que cada um depende.
+     */
+    private static class FileIndex {
+        private final Set<String> testIds = new LinkedHashSet<>();
+        private final Map<Path, Set<String>> dependents = new HashMap<>();
+
+        private boolean dependsOnAny(Set<Path> directories) {
+            for (Path dependency : dependents.keySet()) {
+                if (directories.contains(dependency.getParent())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fhirut.daemon;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Cliente do servidor residente: encaminha uma execução de {@code fut} e
+ * reproduz a saída no console local à medida que ela chega.
+ */
+public class DaemonClient {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+
+    private final DaemonInfo info;
+    private final HttpClient http;
+
+    public DaemonClient(DaemonInfo info) {
+        this.info = info;
+        this.http = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+    }
+
+    /**
+     * Encaminha a execução ao servidor.
+     * @param reportOpener chamado quando o servidor pede a abertura do relatório HTML
+     * @return código de saída da execução remota
+     * @throws IOException se o servidor não puder ser contatado (o chamador executa localmente)
+     */
+    public int run(List<String> args, File workingDirectory, Consumer<File> reportOpener)
+            throws IOException, InterruptedException {
+        RunRequest request = new RunRequest();
+        request.setDirectory(workingDirectory.toPath().toAbsolutePath().normalize().toString());
+        request.setArgs(args);
+
+        HttpResponse<Stream<String>> response = http.send(
+                newRequest("/run").POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(request))).build(),
+                HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            throw new IOException("Servidor fut respondeu com HTTP " + response.statusCode());
+        }
+
+        Integer exitCode = null;
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                if (!line.startsWith(DaemonServer.CONTROL_PREFIX)) {
+                    System.out.println(line);
+                    continue;
+                }
+                String command = line.substring(DaemonServer.CONTROL_PREFIX.length());
+                if (command.startsWith(DaemonServer.EXIT_COMMAND)) {
+                    exitCode = Integer.parseInt(command.substring(DaemonServer.EXIT_COMMAND.length()).trim());
+                } else if (command.startsWith(DaemonServer.OPEN_COMMAND)) {
+                    reportOpener.accept(new File(command.substring(DaemonServer.OPEN_COMMAND.length())));
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // Conexão perdida no meio da execução: cai no tratamento abaixo
+        }
+
+        if (exitCode == null) {
+            // A saída já foi mostrada em parte; repetir localmente duplicaria o trabalho
+            System.err.println("❌ Conexão com o servidor fut encerrada antes do fim da execução");
+            return 1;
+        }
+        return exitCode;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> status() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = http.send(newRequest("/status").GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Servidor fut respondeu com HTTP " + response.statusCode());
+        }
+        return MAPPER.readValue(response.body(), Map.class);
+    }
+
+    public void shutdown() throws IOException, InterruptedException {
+        http.send(newRequest("/shutdown").POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpRequest.Builder newRequest(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + info.getPort() + path))
+                .header(DaemonServer.TOKEN_HEADER, info.getToken());
+    }
+}
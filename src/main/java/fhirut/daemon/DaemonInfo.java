@@ -0,0 +1,136 @@
+package fhirut.daemon;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Dados de conexão do servidor residente, gravados em {@code ~/.fut/daemon.json}
+ * para que as execuções de {@code fut} o encontrem. O token só é legível pelo
+ * dono do arquivo e acompanha cada pedido.
+ */
+public class DaemonInfo {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private int port;
+    private long pid;
+    private String token;
+    private String engine;
+    private String fingerprint;
+    // Opções do mecanismo com que o servidor foi iniciado (--package-cache, --workers...)
+    private Map<String, String> options;
+    private String directory;
+    private String startedAt;
+
+    public static File defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".fut", "daemon.json").toFile();
+    }
+
+    /**
+     * Lê o arquivo do servidor, descartando-o se o processo que o gravou não existe mais.
+     */
+    public static Optional<DaemonInfo> read(File file) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        try {
+            DaemonInfo info = MAPPER.readValue(file, DaemonInfo.class);
+            if (ProcessHandle.of(info.getPid()).map(ProcessHandle::isAlive).orElse(false)) {
+                return Optional.of(info);
+            }
+            file.delete();
+        } catch (IOException e) {
+            // Arquivo incompleto ou de outra versão: trata como servidor ausente
+        }
+        return Optional.empty();
+    }
+
+    public void write(File file) throws IOException {
+        Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "daemon", ".tmp");
+        try {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Sistema de arquivos sem permissões POSIX (Windows): vale a ACL do diretório do usuário
+        }
+        MAPPER.writeValue(temp.toFile(), this);
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Getters e Setters
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public long getPid() {
+        return pid;
+    }
+
+    public void setPid(long pid) {
+        this.pid = pid;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    public void setOptions(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(String startedAt) {
+        this.startedAt = startedAt;
+    }
+}
@@ -0,0 +1,210 @@
+package fhirut.daemon;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.MetricsServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Servidor HTTP local do modo residente ({@code fut serve}).
+ *
+ * <ul>
+ *   <li>{@code POST /run}: executa {@code fut} com os argumentos do pedido e devolve a saída
+ *       do console em streaming, terminando com uma linha de controle com o código de saída;</li>
+ *   <li>{@code GET /status}: situação do servidor;</li>
+ *   <li>{@code GET /metrics}: métricas no formato do Prometheus (sem token);</li>
+ *   <li>{@code POST /shutdown}: encerra o servidor.</li>
+ * </ul>
+ *
+ * <p>O console do fut é o {@code System.out}, compartilhado pelo processo inteiro;
+ * por isso as execuções são atendidas uma de cada vez, com a saída desviada para
+ * a resposta do pedido em andamento. Os demais pedidos esperam na fila.</p>
+ */
+public class DaemonServer implements AutoCloseable {
+    public static final String TOKEN_HEADER = "X-Fut-Token";
+    /** Prefixo das linhas de controle na saída de {@code /run}; nunca aparece na saída normal. */
+    public static final String CONTROL_PREFIX = "\u0001fut:";
+    public static final String EXIT_COMMAND = "exit ";
+    public static final String OPEN_COMMAND = "open ";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Executa um pedido já com o console desviado para a resposta.
+     */
+    public interface RunHandler {
+        /**
+         * @param reportOpener pede ao cliente que abra o relatório gerado
+         * @return código de saída do fut
+         */
+        int run(List<String> args, File workingDirectory, Consumer<File> reportOpener) throws Exception;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final RunHandler handler;
+    private final MetricsRegistry metrics;
+    private final String token;
+    private final Map<String, Object> status;
+    private final ReentrantLock runLock = new ReentrantLock(true);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param port porta local; 0 escolhe uma porta livre
+     * @param status informações fixas devolvidas em {@code /status}
+     */
+    public DaemonServer(int port, String token, RunHandler handler, MetricsRegistry metrics,
+                        Map<String, Object> status) throws IOException {
+        this.handler = handler;
+        this.metrics = metrics;
+        this.token = token;
+        this.status = new LinkedHashMap<>(status);
+
+        metrics.gauge("fut_daemon_requests_waiting", "Run requests waiting for the current run to finish",
+                queued::get);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/run", exchange -> handle(exchange, "POST", this::run));
+        server.createContext("/status", exchange -> handle(exchange, "GET", this::status));
+        server.createContext("/shutdown", exchange -> handle(exchange, "POST", this::shutdown));
+        server.createContext(MetricsServer.PATH, this::metrics);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fut-daemon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Bloqueia até o servidor receber {@code /shutdown}.
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler action) throws IOException {
+        try (exchange) {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!authorized(exchange)) {
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            action.handle(exchange);
+        }
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        String provided = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        return provided != null && MessageDigest.isEqual(
+                provided.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void run(HttpExchange exchange) throws IOException {
+        RunRequest request = MAPPER.readValue(exchange.getRequestBody(), RunRequest.class);
+        File workingDirectory = new File(request.getDirectory() != null ? request.getDirectory() : ".");
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        PrintStream out = new PrintStream(body, true, StandardCharsets.UTF_8);
+
+        queued.incrementAndGet();
+        runLock.lock();
+        queued.decrementAndGet();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        int exitCode;
+        try {
+            originalOut.println("📨 Executando em " + workingDirectory + ": fut " + String.join(" ", request.getArgs()));
+            System.setOut(out);
+            System.setErr(out);
+            try {
+                exitCode = handler.run(request.getArgs(), workingDirectory,
+                        report -> out.println(CONTROL_PREFIX + OPEN_COMMAND + report.getAbsolutePath()));
+            } catch (Exception e) {
+                out.println("❌ Erro no servidor fut: " + e.getMessage());
+                exitCode = 1;
+            }
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            runLock.unlock();
+        }
+        out.println(CONTROL_PREFIX + EXIT_COMMAND + exitCode);
+        out.close();
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        Map<String, Object> current = new LinkedHashMap<>(status);
+        current.put("running", runLock.isLocked());
+        current.put("waiting", queued.get());
+        sendJson(exchange, current);
+    }
+
+    private void shutdown(HttpExchange exchange) throws IOException {
+        sendJson(exchange, Map.of("stopping", true));
+        stopped.countDown();
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, Object value) throws IOException {
+        byte[] body = MAPPER.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    @Override
+    public void close() {
+        stopped.countDown();
+        // Espera a execução em andamento terminar antes de derrubar as conexões
+        runLock.lock();
+        try {
+            server.stop(0);
+        } finally {
+            runLock.unlock();
+        }
+        executor.shutdownNow();
+    }
+}
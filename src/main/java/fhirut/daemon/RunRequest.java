@@ -0,0 +1,31 @@
+package fhirut.daemon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pedido de execução enviado ao servidor: os argumentos de {@code fut} e o
+ * diretório de onde o cliente foi chamado, base de todos os caminhos relativos.
+ */
+public class RunRequest {
+    private String directory;
+    private List<String> args = new ArrayList<>();
+
+    // Getters e Setters
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public List<String> getArgs() {
+        return args;
+    }
+
+    public void setArgs(List<String> args) {
+        this.args = args;
+    }
+}
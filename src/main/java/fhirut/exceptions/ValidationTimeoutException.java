@@ -0,0 +1,29 @@
+package fhirut.exceptions;
+
+import java.time.Duration;
+
+/**
+ * Exceção lançada quando a validação de um teste (ou de um lote) excede o tempo
+ * limite e é abortada.
+ */
+public class ValidationTimeoutException extends FhirValidationException {
+    private final Duration timeout;
+
+    /**
+     * @param message a mensagem de erro
+     * @param timeout o tempo limite excedido
+     * @param testId o ID do teste (ou do lote) abortado
+     */
+    public ValidationTimeoutException(String message, Duration timeout, String testId) {
+        super(message, "Aumente o 'timeout' do teste no YAML ou a opção --timeout", testId);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Obtém o tempo limite que foi excedido.
+     * @return o tempo limite
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
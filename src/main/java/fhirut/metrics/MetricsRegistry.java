@@ -0,0 +1,238 @@
+package fhirut.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registro de métricas (contadores, histogramas e gauges) exportado no formato
+ * texto do Prometheus, para acompanhar o fut rodando como serviço ou gravar um
+ * retrato das métricas no fim de uma execução.
+ *
+ * <p>Cada métrica é identificada pelo nome e pelos rótulos, passados como pares
+ * {@code chave, valor}; pedir a mesma combinação devolve sempre a mesma instância,
+ * então quem usa pode guardar a referência. Todas as operações são seguras para
+ * uso concorrente e não bloqueiam quem registra valores.</p>
+ */
+public class MetricsRegistry {
+    /** Limites (em segundos) dos histogramas de latência: de 5 ms a 2 min. */
+    public static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").metrics
+                .computeIfAbsent(labelString(labels), k -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return (Histogram) family(name, help, "histogram").metrics
+                .computeIfAbsent(labelString(labels), k -> new Histogram(buckets));
+    }
+
+    /**
+     * Registra um valor lido no momento da exportação (ex.: workers ocupados).
+     * Registrar de novo o mesmo nome e rótulos substitui a função anterior.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").metrics.put(labelString(labels), new Gauge(value));
+    }
+
+    /**
+     * @return todas as métricas no formato texto de exposição do Prometheus (versão 0.0.4)
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Metric> metric : new TreeMap<>(family.metrics).entrySet()) {
+                metric.getValue().write(name, metric.getKey(), out);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Grava o retrato atual das métricas, substituindo o arquivo de forma atômica.
+     */
+    public void writeTo(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        Path temp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+        Files.writeString(temp, scrape(), StandardCharsets.UTF_8);
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Métrica " + name + " já registrada como " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * Monta {@code {k1="v1",k2="v2"}} a partir dos pares chave/valor, com os valores escapados.
+     */
+    private static String labelString(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Rótulos devem ser pares chave/valor: " + Arrays.toString(labels));
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Acrescenta um rótulo extra (como o {@code le} dos histogramas) a um conjunto já formatado.
+     */
+    private static String withLabel(String labels, String key, String value) {
+        String label = key + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static final class Family {
+        private final String help;
+        private final String type;
+        private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private interface Metric {
+        void write(String name, String labels, StringBuilder out);
+    }
+
+    /**
+     * Contador monotônico.
+     */
+    public static final class Counter implements Metric {
+        private final DoubleAdder value = new DoubleAdder();
+
+        public void inc() {
+            value.add(1);
+        }
+
+        public void inc(double amount) {
+            if (amount > 0) {
+                value.add(amount);
+            }
+        }
+
+        public double get() {
+            return value.sum();
+        }
+
+        @Override
+        public void write(String name, String labels, StringBuilder out) {
+            out.append(name).append(labels).append(' ').append(format(value.sum())).append('\n');
+        }
+    }
+
+    /**
+     * Histograma cumulativo com limites fixos, como o Prometheus espera.
+     */
+    public static final class Histogram implements Metric {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+
+        private Histogram(double[] bounds) {
+            this.bounds = bounds.clone();
+            Arrays.sort(this.bounds);
+            this.buckets = new LongAdder[this.bounds.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            int index = Arrays.binarySearch(bounds, value);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            // Valores acima do último limite só entram no +Inf (count)
+            if (index < buckets.length) {
+                buckets[index].increment();
+            }
+            sum.add(value);
+            count.increment();
+        }
+
+        /**
+         * Registra uma duração em milissegundos, exportada em segundos.
+         */
+        public void observeMillis(long millis) {
+            observe(millis / 1000.0);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public void write(String name, String labels, StringBuilder out) {
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name).append("_bucket").append(withLabel(labels, "le", format(bounds[i])))
+                        .append(' ').append(cumulative).append('\n');
+            }
+            out.append(name).append("_bucket").append(withLabel(labels, "le", "+Inf"))
+                    .append(' ').append(count.sum()).append('\n');
+            out.append(name).append("_sum").append(labels).append(' ').append(format(sum.sum())).append('\n');
+            out.append(name).append("_count").append(labels).append(' ').append(count.sum()).append('\n');
+        }
+    }
+
+    private static final class Gauge implements Metric {
+        private final DoubleSupplier value;
+
+        private Gauge(DoubleSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public void write(String name, String labels, StringBuilder out) {
+            out.append(name).append(labels).append(' ').append(format(value.getAsDouble())).append('\n');
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package fhirut.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acumula o tempo gasto em cada fase de um componente compartilhado entre
+ * testes (carga do validador, IGs, parse de saída), que não pertence a um
+ * teste específico. Seguro para uso concorrente.
+ */
+public class PhaseTimer {
+    private final Map<String, LongAdder> totals = new ConcurrentHashMap<>();
+
+    public void add(String phase, long millis) {
+        totals.computeIfAbsent(phase, k -> new LongAdder()).add(millis);
+    }
+
+    /**
+     * Registra o tempo decorrido desde {@code startNanos} (de {@link System#nanoTime()}).
+     * @return o tempo registrado, em ms
+     */
+    public long since(String phase, long startNanos) {
+        long millis = elapsedMillis(startNanos);
+        add(phase, millis);
+        return millis;
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        totals.forEach((phase, total) -> snapshot.put(phase, total.sum()));
+        return snapshot;
+    }
+
+    public static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
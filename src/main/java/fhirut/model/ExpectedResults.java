@@ -8,6 +8,8 @@ public class ExpectedResults {
     private List<String> warnings;
     private List<String> informations;
     private List<InvariantCheck> invariants;
+    // strict_errors: true faz qualquer erro fora da lista de errors reprovar o teste
+    private Boolean strictErrors;
 
     // Getters e Setters
 
@@ -50,4 +52,12 @@ public class ExpectedResults {
     public void setInvariants(List<InvariantCheck> invariants) {
         this.invariants = invariants;
     }
+
+    public Boolean getStrictErrors() {
+        return strictErrors;
+    }
+
+    public void setStrictErrors(Boolean strictErrors) {
+        this.strictErrors = strictErrors;
+    }
 }
@@ -0,0 +1,24 @@
+package fhirut.model;
+
+public class InvariantCheck {
+    private String expression; // Expressão FHIRPath avaliada sobre a instância
+    private boolean expected;
+
+    // Getters e Setters
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public void setExpression(String expression) {
+        this.expression = expression;
+    }
+
+    public boolean isExpected() {
+        return expected;
+    }
+
+    public void setExpected(boolean expected) {
+        this.expected = expected;
+    }
+}
@@ -1,5 +1,7 @@
 package fhirut.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.io.File;
 import java.util.List;
 
@@ -9,6 +11,10 @@ public class TestDefinition {
     private TestContext context;
     private File instancePath;
     private ExpectedResults expectedResults;
+    private List<String> tags;
+    // Só é lido do YAML: o tempo limite não muda o resultado, então fica fora da chave do cache
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String timeout;
 
     // Getters e Setters
     public String getTestId() {
@@ -50,27 +56,20 @@ public class TestDefinition {
     public void setExpectedResults(ExpectedResults expectedResults) {
         this.expectedResults = expectedResults;
     }
-}
-
-class InvariantCheck {
-    private String expression;
-    private boolean expected;
 
-    // Getters e Setters
-
-    public String getExpression() {
-        return expression;
+    public List<String> getTags() {
+        return tags;
     }
 
-    public void setExpression(String expression) {
-        this.expression = expression;
+    public void setTags(List<String> tags) {
+        this.tags = tags;
     }
 
-    public boolean isExpected() {
-        return expected;
+    public String getTimeout() {
+        return timeout;
     }
 
-    public void setExpected(boolean expected) {
-        this.expected = expected;
+    public void setTimeout(String timeout) {
+        this.timeout = timeout;
     }
-}
\ No newline at end of file
+}
@@ -2,13 +2,17 @@ package fhirut.model;
 
 import org.hl7.fhir.r4.model.OperationOutcome;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TestResult {
     private String testId;
     private boolean passed;
     private OperationOutcome outcome;
     private List<ValidationDiff> differences;
+    private long durationMs;
+    private Map<String, Long> timings = new LinkedHashMap<>(); // Fase (parse, validation, ...) → ms
 
     // Getters e Setters
 
@@ -43,5 +47,27 @@ public class TestResult {
     public void setDifferences(List<ValidationDiff> differences) {
         this.differences = differences;
     }
-}
 
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public Map<String, Long> getTimings() {
+        return timings;
+    }
+
+    public void setTimings(Map<String, Long> timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * Soma o tempo de uma fase (uma fase pode ocorrer mais de uma vez, como o cache).
+     */
+    public void addTiming(String phase, long millis) {
+        timings.merge(phase, millis, Long::sum);
+    }
+}
@@ -0,0 +1,481 @@
+package fhirut.packages;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fhirut.exceptions.FhirutException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Cache local de pacotes de IG gerenciado pelo fut.
+ *
+ * <p>Estrutura do diretório:</p>
+ * <pre>
+ * blobs/sha256/&lt;hash&gt;.tgz     tarballs endereçados pelo conteúdo
+ * extracted/&lt;hash&gt;/package/   conteúdo extraído
+ * extracted/&lt;hash&gt;/fut-index.json  índice dos recursos do pacote
+ * refs/&lt;id&gt;#&lt;versão&gt;        hash do tarball de cada versão
+ * </pre>
+ *
+ * <p>Além disso, cada pacote é instalado no cache de pacotes do validador da HL7
+ * ({@code ~/.fhir/packages}) para que ele resolva IGs e dependências sem rede.
+ * Os IGs já presentes no cache são passados ao validador como caminho local do
+ * tarball, via {@link #resolveIg(String)}.</p>
+ */
+public class PackageCache {
+    public static final String DEFAULT_REGISTRY = "https://packages.fhir.org";
+    public static final String FALLBACK_REGISTRY = "https://packages2.fhir.org/packages";
+    public static final String CORE_PACKAGE = "hl7.fhir.r4.core#4.0.1";
+
+    private static final String INDEX_FILE = "fut-index.json";
+    private static final String FHIR_CACHE_VERSION = "3";
+
+    private final Path root;
+    private final Path fhirPackageDir;
+    private final List<String> registries;
+    private final ObjectMapper mapper;
+    private HttpClient httpClient;
+
+    public PackageCache(Path root, Path fhirPackageDir) {
+        this(root, fhirPackageDir, List.of(DEFAULT_REGISTRY, FALLBACK_REGISTRY));
+    }
+
+    public PackageCache(Path root, Path fhirPackageDir, List<String> registries) {
+        this.root = root.toAbsolutePath().normalize();
+        this.fhirPackageDir = fhirPackageDir != null ? fhirPackageDir.toAbsolutePath().normalize() : null;
+        this.registries = registries;
+        this.mapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .enable(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /**
+     * Cache em {@code ~/.fut/packages}, instalando no cache padrão do validador ({@code ~/.fhir/packages}).
+     */
+    public static PackageCache defaultCache() {
+        Path home = Paths.get(System.getProperty("user.home"));
+        return new PackageCache(home.resolve(".fut").resolve("packages"), home.resolve(".fhir").resolve("packages"));
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return o tarball local do pacote, se já estiver no cache
+     */
+    public Optional<Path> find(String spec) {
+        PackageSpec parsed = PackageSpec.parse(spec);
+        if (parsed == null || !parsed.hasVersion()) {
+            return Optional.empty();
+        }
+        return readRef(parsed).map(this::blobPath).filter(Files::isRegularFile);
+    }
+
+    /**
+     * Troca a referência de um IG pelo caminho do tarball local, quando disponível,
+     * para que o validador não precise consultar o registro de pacotes.
+     */
+    public String resolveIg(String ig) {
+        return find(ig).map(Path::toString).orElse(ig);
+    }
+
+    /**
+     * Baixa (se necessário), extrai, indexa e instala o pacote e suas dependências.
+     * Uma falha em um pacote não impede os demais.
+     * @return especificações efetivamente presentes no cache, com versões resolvidas
+     * @throws FhirutException ao final, se algum pacote não pôde ser obtido
+     */
+    public Set<PackageSpec> prefetch(Collection<String> specs) throws FhirutException {
+        Set<PackageSpec> done = new LinkedHashSet<>();
+        Set<String> failures = new LinkedHashSet<>();
+        Deque<PackageSpec> queue = new ArrayDeque<>();
+        for (String spec : specs) {
+            PackageSpec parsed = PackageSpec.parse(spec);
+            if (parsed == null) {
+                System.out.println("⏭️ Ignorando IG que não é um pacote (ou tem versão inválida): " + spec);
+                continue;
+            }
+            queue.add(parsed);
+        }
+
+        while (!queue.isEmpty()) {
+            PackageSpec spec = queue.poll();
+            try {
+                if (!spec.hasVersion()) {
+                    spec = spec.withVersion(latestVersion(spec));
+                }
+                if (done.contains(spec)) {
+                    continue;
+                }
+
+                PackageIndex index = fetch(spec);
+                done.add(spec);
+                for (String dependency : index.getDependencies()) {
+                    PackageSpec parsed = PackageSpec.parse(dependency);
+                    if (parsed == null) {
+                        System.err.println("⚠️ Dependência inválida ignorada em " + spec + ": " + dependency);
+                    } else if (!done.contains(parsed)) {
+                        queue.add(parsed);
+                    }
+                }
+            } catch (FhirutException | IllegalArgumentException e) {
+                System.err.println("❌ " + e.getMessage());
+                failures.add(spec.toString());
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw new FhirutException("Pacotes não obtidos: " + String.join(", ", failures));
+        }
+        return done;
+    }
+
+    /**
+     * @return índice do pacote, lido do cache
+     */
+    public Optional<PackageIndex> getIndex(String spec) {
+        PackageSpec parsed = PackageSpec.parse(spec);
+        if (parsed == null || !parsed.hasVersion()) {
+            return Optional.empty();
+        }
+        return readRef(parsed).flatMap(hash -> {
+            try {
+                return Optional.of(readIndex(hash));
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * Mapeia em memória (somente leitura) um arquivo do pacote extraído.
+     * @param spec pacote no formato id#versão
+     * @param filename nome do arquivo dentro de {@code package/}
+     */
+    public MappedByteBuffer map(String spec, String filename) throws IOException {
+        PackageSpec parsed = PackageSpec.parse(spec);
+        Optional<String> hash = parsed != null ? readRef(parsed) : Optional.empty();
+        if (hash.isEmpty()) {
+            throw new NoSuchFileException("Pacote não está no cache: " + spec);
+        }
+        Path root = extractedPath(hash.get()).resolve("package").toAbsolutePath().normalize();
+        Path file = root.resolve(filename).normalize();
+        // O nome vem do .index.json do pacote baixado, como as entradas do tarball
+        if (!file.startsWith(root)) {
+            throw new IOException("Arquivo fora do diretório do pacote: " + filename);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private PackageIndex fetch(PackageSpec spec) throws FhirutException {
+        try {
+            Optional<String> cached = readRef(spec).filter(hash -> Files.isRegularFile(blobPath(hash)));
+            String hash = cached.isPresent() ? cached.get() : download(spec);
+            if (cached.isPresent()) {
+                System.out.println("✔️ " + spec + " já está no cache");
+            }
+
+            Path extracted = extractedPath(hash);
+            if (!Files.isRegularFile(extracted.resolve(INDEX_FILE))) {
+                extract(hash, extracted);
+                writeIndex(spec, hash, extracted);
+            }
+            writeRef(spec, hash);
+            install(spec, extracted);
+            return readIndex(hash);
+
+        } catch (IOException e) {
+            throw new FhirutException("Falha ao obter o pacote " + spec + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FhirutException("Download do pacote " + spec + " interrompido", e);
+        }
+    }
+
+    /**
+     * Baixa o tarball calculando o SHA-256 durante a transferência.
+     * @return hash do conteúdo
+     */
+    private String download(PackageSpec spec) throws IOException, InterruptedException {
+        Path blobs = root.resolve("blobs").resolve("sha256");
+        Files.createDirectories(blobs);
+
+        IOException lastError = null;
+        for (String registry : registries) {
+            String url = registry + "/" + spec.getId() + "/" + spec.getVersion();
+            System.out.println("⬇️ Baixando " + spec + " de " + url);
+
+            HttpResponse<InputStream> response = client().send(
+                    HttpRequest.newBuilder(URI.create(url)).header("Accept", "application/tar+gzip").GET().build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                lastError = new IOException("HTTP " + response.statusCode() + " em " + url);
+                continue;
+            }
+
+            Path temp = Files.createTempFile(blobs, "download-", ".tmp");
+            try {
+                MessageDigest digest = sha256();
+                try (InputStream in = new DigestInputStream(response.body(), digest)) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                String hash = HexFormat.of().formatHex(digest.digest());
+                Path blob = blobPath(hash);
+                if (!Files.exists(blob)) {
+                    Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return hash;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        throw lastError != null ? lastError : new IOException("Nenhum registro de pacotes configurado");
+    }
+
+    private String latestVersion(PackageSpec spec) throws FhirutException {
+        for (String registry : registries) {
+            try {
+                HttpResponse<String> response = client().send(
+                        HttpRequest.newBuilder(URI.create(registry + "/" + spec.getId())).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    JsonNode latest = mapper.readTree(response.body()).path("dist-tags").path("latest");
+                    if (latest.isTextual()) {
+                        return latest.asText();
+                    }
+                }
+            } catch (IOException e) {
+                // Tenta o próximo registro
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new FhirutException("Não foi possível determinar a versão mais recente de " + spec.getId());
+    }
+
+    private void extract(String hash, Path extracted) throws IOException {
+        Path temp = Files.createTempDirectory(root, "extract-");
+        try {
+            TarGzExtractor.extract(blobPath(hash), temp);
+            Files.createDirectories(extracted.getParent());
+            deleteTree(extracted);
+            Files.move(temp, extracted, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteTree(temp);
+        }
+    }
+
+    /**
+     * Gera o índice dos recursos lendo apenas os campos de identificação de cada JSON.
+     */
+    private void writeIndex(PackageSpec spec, String hash, Path extracted) throws IOException {
+        PackageIndex index = new PackageIndex();
+        index.setPackageId(spec.getId());
+        index.setVersion(spec.getVersion());
+        index.setSha256(hash);
+
+        Path packageDir = extracted.resolve("package");
+        Path manifest = packageDir.resolve("package.json");
+        if (Files.isRegularFile(manifest)) {
+            JsonNode dependencies = mapper.readTree(manifest.toFile()).path("dependencies");
+            dependencies.fields().forEachRemaining(entry ->
+                    index.getDependencies().add(entry.getKey() + "#" + entry.getValue().asText()));
+        }
+
+        if (Files.isDirectory(packageDir)) {
+            try (Stream<Path> files = Files.list(packageDir)) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".json") && !name.equals("package.json") && !name.startsWith(".")) {
+                        PackageIndex.Entry entry = readEntry(file);
+                        if (entry != null) {
+                            index.getFiles().add(entry);
+                        }
+                    }
+                }
+            }
+        }
+
+        mapper.writeValue(extracted.resolve(INDEX_FILE).toFile(), index);
+    }
+
+    private PackageIndex.Entry readEntry(Path file) {
+        PackageIndex.Entry entry = new PackageIndex.Entry();
+        entry.setFilename(file.getFileName().toString());
+        try (JsonParser parser = mapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_STRING) {
+                    switch (field) {
+                        case "resourceType":
+                            entry.setResourceType(parser.getText());
+                            break;
+                        case "id":
+                            entry.setId(parser.getText());
+                            break;
+                        case "url":
+                            entry.setUrl(parser.getText());
+                            break;
+                        case "version":
+                            entry.setVersion(parser.getText());
+                            break;
+                        default:
+                            break;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return entry.getResourceType() != null ? entry : null;
+    }
+
+    /**
+     * Instala o pacote no cache do validador da HL7, no formato {@code <id>#<versão>/package}.
+     */
+    private void install(PackageSpec spec, Path extracted) throws IOException {
+        if (fhirPackageDir == null) {
+            return;
+        }
+        Files.createDirectories(fhirPackageDir);
+        Path ini = fhirPackageDir.resolve("packages.ini");
+        if (!Files.exists(ini)) {
+            Files.writeString(ini, "[cache]\nversion=" + FHIR_CACHE_VERSION + "\n", StandardCharsets.UTF_8);
+        }
+
+        Path target = inside(fhirPackageDir, spec.getId() + "#" + spec.getVersion());
+        if (Files.isRegularFile(target.resolve("package").resolve("package.json"))) {
+            return;
+        }
+
+        Path temp = Files.createTempDirectory(fhirPackageDir, ".fut-install-");
+        try {
+            Path source = extracted.resolve("package");
+            try (Stream<Path> files = Files.walk(source)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Path destination = temp.resolve("package").resolve(source.relativize(file).toString());
+                    if (Files.isDirectory(file)) {
+                        Files.createDirectories(destination);
+                    } else {
+                        linkOrCopy(file, destination);
+                    }
+                }
+            }
+            deleteTree(target);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteTree(temp);
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path destination) throws IOException {
+        Files.createDirectories(destination.getParent());
+        try {
+            Files.createLink(destination, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Optional<String> readRef(PackageSpec spec) {
+        try {
+            Path ref = refPath(spec);
+            return Files.isRegularFile(ref) ? Optional.of(Files.readString(ref).trim()) : Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void writeRef(PackageSpec spec, String hash) throws IOException {
+        Path ref = refPath(spec);
+        Files.createDirectories(ref.getParent());
+        Files.writeString(ref, hash, StandardCharsets.UTF_8);
+    }
+
+    private PackageIndex readIndex(String hash) throws IOException {
+        return mapper.readValue(extractedPath(hash).resolve(INDEX_FILE).toFile(), PackageIndex.class);
+    }
+
+    private Path refPath(PackageSpec spec) throws IOException {
+        return inside(root.resolve("refs"), spec.getId() + "#" + spec.getVersion());
+    }
+
+    /**
+     * Resolve o nome dentro do diretório, recusando nomes que escapem dele.
+     */
+    private static Path inside(Path parent, String name) throws IOException {
+        Path directory = parent.toAbsolutePath().normalize();
+        Path path = directory.resolve(name).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new IOException("Caminho fora do diretório " + directory + ": " + name);
+        }
+        return path;
+    }
+
+    private Path blobPath(String hash) {
+        return root.resolve("blobs").resolve("sha256").resolve(hash + ".tgz");
+    }
+
+    private Path extractedPath(String hash) {
+        return root.resolve("extracted").resolve(hash);
+    }
+
+    private synchronized HttpClient client() {
+        if (httpClient == null) {
+            httpClient = HttpClient.newBuilder()
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+        }
+        return httpClient;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteTree(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package fhirut.packages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Índice dos recursos de conformidade de um pacote, gerado uma única vez na
+ * extração e gravado ao lado do conteúdo extraído.
+ */
+public class PackageIndex {
+    private String packageId;
+    private String version;
+    private String sha256;
+    private List<String> dependencies = new ArrayList<>();
+    private List<Entry> files = new ArrayList<>();
+
+    // Getters e Setters
+
+    public String getPackageId() {
+        return packageId;
+    }
+
+    public void setPackageId(String packageId) {
+        this.packageId = packageId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    public void setDependencies(List<String> dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    public List<Entry> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<Entry> files) {
+        this.files = files;
+    }
+
+    /**
+     * Um recurso do pacote: arquivo dentro de {@code package/} e seus metadados canônicos.
+     */
+    public static class Entry {
+        private String filename;
+        private String resourceType;
+        private String id;
+        private String url;
+        private String version;
+
+        // Getters e Setters
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public void setFilename(String filename) {
+            this.filename = filename;
+        }
+
+        public String getResourceType() {
+            return resourceType;
+        }
+
+        public void setResourceType(String resourceType) {
+            this.resourceType = resourceType;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+    }
+}
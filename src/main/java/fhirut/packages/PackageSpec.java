@@ -0,0 +1,87 @@
+package fhirut.packages;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Identificação de um pacote NPM FHIR no formato {@code id#versão}, como nos
+ * campos {@code igs} do YAML (por exemplo {@code br.go.ses.core#0.0.1}).
+ */
+public final class PackageSpec {
+    private static final Pattern PACKAGE_ID = Pattern.compile("^[A-Za-z][A-Za-z0-9_\\-]*(\\.[A-Za-z0-9_\\-]+)+$");
+    // A versão vira nome de diretório no cache: nada de separadores ou ".."
+    private static final Pattern VERSION = Pattern.compile("^[A-Za-z0-9][A-Za-z0-9._+\\-]*$");
+
+    private final String id;
+    private final String version;
+
+    /**
+     * @throws IllegalArgumentException se a versão tiver caracteres fora de {@code [A-Za-z0-9._+-]}
+     */
+    public PackageSpec(String id, String version) {
+        if (version != null && !VERSION.matcher(version).matches()) {
+            throw new IllegalArgumentException("Versão de pacote inválida: " + id + "#" + version);
+        }
+        this.id = Objects.requireNonNull(id);
+        this.version = version;
+    }
+
+    /**
+     * @return a especificação, ou null se o texto não for um pacote (ex.: caminho ou URL de IG)
+     *         ou se a versão for inválida
+     */
+    public static PackageSpec parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String value = text.trim();
+        int hash = value.indexOf('#');
+        String id = hash >= 0 ? value.substring(0, hash) : value;
+        String version = hash >= 0 ? value.substring(hash + 1) : null;
+        if (version != null && version.isEmpty()) {
+            version = null;
+        }
+        if (!PACKAGE_ID.matcher(id).matches() || (version != null && !VERSION.matcher(version).matches())) {
+            return null;
+        }
+        return new PackageSpec(id, version);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public boolean hasVersion() {
+        return version != null && !"current".equals(version) && !"latest".equals(version);
+    }
+
+    public PackageSpec withVersion(String newVersion) {
+        return new PackageSpec(id, newVersion);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackageSpec)) {
+            return false;
+        }
+        PackageSpec other = (PackageSpec) o;
+        return id.equals(other.id) && Objects.equals(version, other.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, version);
+    }
+
+    @Override
+    public String toString() {
+        return version != null ? id + "#" + version : id;
+    }
+}
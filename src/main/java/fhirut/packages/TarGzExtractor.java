@@ -0,0 +1,164 @@
+package fhirut.packages;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Extrator mínimo de arquivos .tgz (formato ustar, com nomes longos GNU e PAX),
+ * suficiente para pacotes NPM FHIR.
+ */
+final class TarGzExtractor {
+    private static final int BLOCK = 512;
+
+    private TarGzExtractor() {
+    }
+
+    static void extract(Path archive, Path target) throws IOException {
+        Path root = target.toAbsolutePath().normalize();
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024))) {
+            byte[] header = new byte[BLOCK];
+            String longName = null;
+
+            while (readBlock(in, header)) {
+                if (isZeroBlock(header)) {
+                    break;
+                }
+
+                String name = longName != null ? longName : entryName(header);
+                longName = null;
+                long size = parseOctal(header, 124, 12);
+                char type = (char) header[156];
+
+                if (type == 'L' || type == 'x') {
+                    // Cabeçalhos GNU (nome longo) e PAX (atributos) descrevem a próxima entrada
+                    byte[] data = readData(in, size);
+                    longName = type == 'L'
+                            ? new String(data, StandardCharsets.UTF_8).replace("\0", "")
+                            : paxPath(data);
+                    continue;
+                }
+
+                Path destination = root.resolve(name).normalize();
+                if (!destination.startsWith(root)) {
+                    throw new IOException("Entrada fora do diretório de destino: " + name);
+                }
+
+                if (type == '5') {
+                    Files.createDirectories(destination);
+                } else if (type == '0' || type == '\0' || type == '7') {
+                    Files.createDirectories(destination.getParent());
+                    try (OutputStream out = Files.newOutputStream(destination)) {
+                        copy(in, out, size);
+                    }
+                    skipPadding(in, size);
+                } else {
+                    skip(in, size);
+                    skipPadding(in, size);
+                }
+            }
+        }
+    }
+
+    private static String entryName(byte[] header) {
+        String name = cString(header, 0, 100);
+        String prefix = cString(header, 345, 155);
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String paxPath(byte[] data) {
+        // Registros no formato "<tamanho> chave=valor\n"
+        for (String record : new String(data, StandardCharsets.UTF_8).split("\n")) {
+            int space = record.indexOf(' ');
+            if (space > 0 && record.startsWith("path=", space + 1)) {
+                return record.substring(space + 1 + "path=".length());
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readData(InputStream in, long size) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+        copy(in, out, size);
+        skipPadding(in, size);
+        return out.toByteArray();
+    }
+
+    private static void copy(InputStream in, OutputStream out, long size) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        long remaining = size;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Arquivo tar truncado");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static void skipPadding(InputStream in, long size) throws IOException {
+        long padding = (BLOCK - (size % BLOCK)) % BLOCK;
+        skip(in, padding);
+    }
+
+    private static void skip(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Arquivo tar truncado");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int offset = 0;
+        while (offset < block.length) {
+            int read = in.read(block, offset, block.length - offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String cString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,21 @@
+package fhirut.parser;
+
+import fhirut.exceptions.FhirutParseException;
+import fhirut.model.TestDefinition;
+
+/**
+ * Recebe as definições de um arquivo YAML à medida que são parseadas.
+ */
+public interface TestDefinitionHandler {
+
+    /**
+     * @param position posição da definição no arquivo, a partir de 1
+     */
+    void onDefinition(int position, TestDefinition definition);
+
+    /**
+     * Chamado para um documento ou item de suíte inválido; os demais continuam sendo lidos.
+     * @param position posição da definição no arquivo, a partir de 1
+     */
+    void onInvalid(int position, FhirutParseException error);
+}
@@ -0,0 +1,262 @@
+package fhirut.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import fhirut.exceptions.FhirutParseException;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Expande uma definição parametrizada em testes concretos.
+ *
+ * <p>Uma definição é parametrizada quando tem {@code parameters} ou quando o
+ * {@code instance_path} é uma lista ou um glob:</p>
+ * <pre>
+ * test_id: Patient-${profile_name}
+ * instance_path: instances/patients/*.json
+ * parameters:                       # matriz: todas as combinações
+ *   profile_name: [individuo, paciente]
+ * context:
+ *   profiles: ["http://exemplo.org/StructureDefinition/${profile_name}"]
+ * </pre>
+ * <p>{@code parameters} também pode ser uma lista de linhas explícitas
+ * ({@code - {a: 1, b: 2}}). Cada {@code ${nome}} em valores de texto é
+ * substituído, e {@code ${instance}} vale o nome do arquivo da instância sem
+ * extensão. Se o {@code test_id} não usar nenhum parâmetro, recebe um sufixo
+ * com os valores, como {@code Patient-001[profile_name=individuo, patient_2]}.</p>
+ *
+ * <p>As combinações são geradas uma a uma; só os caminhos de instância de um
+ * glob são listados de antemão (ordenados, para a ordem ser estável).</p>
+ */
+final class TestExpander {
+    static final String PARAMETERS_FIELD = "parameters";
+    private static final String INSTANCE_FIELD = "instance_path";
+    private static final String TEST_ID_FIELD = "test_id";
+    private static final String INSTANCE_PARAMETER = "instance";
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Pattern GLOB = Pattern.compile("[*?\\[{]");
+
+    private final ObjectNode template;
+    private final Path baseDir;
+    private final List<String> names = new ArrayList<>();
+    private final List<List<String>> matrix = new ArrayList<>();
+    private final List<Map<String, String>> rows = new ArrayList<>();
+
+    TestExpander(ObjectNode template, Path baseDir) throws FhirutParseException {
+        this.template = template.deepCopy();
+        this.template.remove(PARAMETERS_FIELD);
+        this.baseDir = baseDir;
+
+        JsonNode parameters = template.get(PARAMETERS_FIELD);
+        if (parameters == null || parameters.isNull()) {
+            return;
+        }
+        if (parameters.isObject()) {
+            for (Map.Entry<String, JsonNode> parameter : parameters.properties()) {
+                List<String> values = new ArrayList<>();
+                if (parameter.getValue().isArray()) {
+                    parameter.getValue().forEach(value -> values.add(value.asText()));
+                } else {
+                    values.add(parameter.getValue().asText());
+                }
+                if (values.isEmpty()) {
+                    throw new FhirutParseException("Parâmetro '" + parameter.getKey() + "' sem valores");
+                }
+                names.add(parameter.getKey());
+                matrix.add(values);
+            }
+        } else if (parameters.isArray()) {
+            for (JsonNode row : parameters) {
+                if (!row.isObject()) {
+                    throw new FhirutParseException("Cada linha de 'parameters' deve ser um mapa nome: valor");
+                }
+                Map<String, String> values = new LinkedHashMap<>();
+                row.properties().forEach(entry -> values.put(entry.getKey(), entry.getValue().asText()));
+                rows.add(values);
+            }
+        } else {
+            throw new FhirutParseException("'parameters' deve ser um mapa (matriz) ou uma lista de linhas");
+        }
+    }
+
+    static boolean isParameterized(JsonNode node) {
+        JsonNode instance = node.get(INSTANCE_FIELD);
+        return node.has(PARAMETERS_FIELD)
+                || (instance != null && instance.isArray())
+                || (instance != null && instance.isTextual() && GLOB.matcher(instance.asText()).find());
+    }
+
+    /**
+     * Combinações de parâmetros, geradas sob demanda (uma única, vazia, se não houver parâmetros).
+     */
+    Iterable<Map<String, String>> combinations() {
+        if (!rows.isEmpty()) {
+            return rows;
+        }
+        return () -> new Iterator<>() {
+            private final int[] counters = new int[matrix.size()];
+            private boolean hasNext = matrix.stream().noneMatch(List::isEmpty);
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                Map<String, String> combination = new LinkedHashMap<>();
+                for (int i = 0; i < names.size(); i++) {
+                    combination.put(names.get(i), matrix.get(i).get(counters[i]));
+                }
+                // Contador de base mista: o último parâmetro varia mais rápido
+                int position = counters.length - 1;
+                while (position >= 0 && ++counters[position] == matrix.get(position).size()) {
+                    counters[position--] = 0;
+                }
+                hasNext = position >= 0;
+                return combination;
+            }
+        };
+    }
+
+    /**
+     * Caminhos de instância da combinação: a lista declarada, com cada glob expandido.
+     */
+    List<String> instances(Map<String, String> combination) throws FhirutParseException {
+        JsonNode declared = substitute(template.get(INSTANCE_FIELD), combination);
+        List<String> patterns = new ArrayList<>();
+        if (declared != null && declared.isArray()) {
+            declared.forEach(path -> patterns.add(path.asText()));
+        } else if (declared != null) {
+            patterns.add(declared.asText());
+        }
+
+        List<String> instances = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (GLOB.matcher(pattern).find()) {
+                List<String> matches = glob(pattern);
+                if (matches.isEmpty()) {
+                    throw new FhirutParseException("Nenhuma instância encontrada para o padrão: " + pattern);
+                }
+                instances.addAll(matches);
+            } else {
+                instances.add(pattern);
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Monta o nó de um teste concreto para a combinação e a instância.
+     */
+    ObjectNode bind(Map<String, String> combination, String instance, boolean suffixInstance) {
+        Map<String, String> values = new LinkedHashMap<>(combination);
+        values.put(INSTANCE_PARAMETER, baseName(instance));
+
+        ObjectNode bound = (ObjectNode) substitute(template, values);
+        bound.put(INSTANCE_FIELD, instance);
+
+        JsonNode idNode = template.path(TEST_ID_FIELD);
+        String rawId = idNode.isValueNode() ? idNode.asText() : null;
+        if (rawId != null && !PLACEHOLDER.matcher(rawId).find()) {
+            List<String> suffix = new ArrayList<>();
+            combination.forEach((name, value) -> suffix.add(name + "=" + value));
+            if (suffixInstance) {
+                suffix.add(baseName(instance));
+            }
+            if (!suffix.isEmpty()) {
+                bound.put(TEST_ID_FIELD, rawId + "[" + String.join(", ", suffix) + "]");
+            }
+        }
+        return bound;
+    }
+
+    private JsonNode substitute(JsonNode node, Map<String, String> values) {
+        if (node == null) {
+            return null;
+        }
+        if (node.isTextual()) {
+            String text = node.asText();
+            if (!text.contains("${")) {
+                return node;
+            }
+            Matcher matcher = PLACEHOLDER.matcher(text);
+            StringBuilder result = new StringBuilder();
+            while (matcher.find()) {
+                String value = values.get(matcher.group(1).trim());
+                matcher.appendReplacement(result, Matcher.quoteReplacement(value != null ? value : matcher.group()));
+            }
+            matcher.appendTail(result);
+            return TextNode.valueOf(result.toString());
+        }
+        if (node.isContainerNode()) {
+            JsonNode copy = node.deepCopy();
+            if (copy.isObject()) {
+                ObjectNode object = (ObjectNode) copy;
+                object.properties().forEach(entry -> entry.setValue(substitute(entry.getValue(), values)));
+            } else {
+                for (int i = 0; i < copy.size(); i++) {
+                    ((ArrayNode) copy).set(i, substitute(copy.get(i), values));
+                }
+            }
+            return copy;
+        }
+        return node;
+    }
+
+    /**
+     * Expande o glob relativo ao diretório base de instâncias, devolvendo os
+     * caminhos no mesmo formato relativo aceito por {@code instance_path}.
+     */
+    private List<String> glob(String pattern) throws FhirutParseException {
+        String relative = pattern.replace("\\", "/").replace("src/test/resources/", "");
+        // Percorre só a partir do trecho fixo do padrão
+        int firstGlob = indexOfGlob(relative);
+        int lastSlash = relative.lastIndexOf('/', firstGlob);
+        Path start = lastSlash < 0 ? baseDir : baseDir.resolve(relative.substring(0, lastSlash));
+        if (!Files.isDirectory(start)) {
+            return List.of();
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relative);
+        try (Stream<Path> files = Files.walk(start)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> baseDir.relativize(file).toString().replace("\\", "/"))
+                    .filter(path -> matcher.matches(Path.of(path)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new FhirutParseException("Erro ao expandir o padrão " + pattern + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static int indexOfGlob(String text) {
+        Matcher matcher = GLOB.matcher(text);
+        return matcher.find() ? matcher.start() : text.length();
+    }
+
+    private static String baseName(String path) {
+        String name = Path.of(path).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
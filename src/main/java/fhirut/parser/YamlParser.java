@@ -1,8 +1,12 @@
 package fhirut.parser;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import fhirut.exceptions.FhirutParseException;
 import fhirut.model.TestDefinition;
@@ -12,11 +16,28 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class YamlParser {
+    private static final String SUITE_FIELD = "suite";
+    private static final String TESTS_FIELD = "tests";
+    private static final String TAGS_FIELD = "tags";
+
     private final ObjectMapper yamlMapper;
+    private final Path workingDirectory;
 
     public YamlParser() {
+        this(Paths.get(""));
+    }
+
+    /**
+     * @param workingDirectory base dos caminhos relativos das definições (src/test/resources, target/test-classes)
+     */
+    public YamlParser(Path workingDirectory) {
+        this.workingDirectory = workingDirectory;
         this.yamlMapper = new ObjectMapper(new YAMLFactory());
 
         // Configurações para lidar com a diferença de nomenclatura
@@ -27,35 +48,181 @@ public class YamlParser {
 
     public TestDefinition parseTestDefinition(File yamlFile) throws FhirutParseException {
         try {
-            // 1. Verificação básica do arquivo
-            if (!yamlFile.exists()) {
-                throw new FhirutParseException("Arquivo YAML não encontrado: " + yamlFile.getAbsolutePath());
-            }
-
-            if (yamlFile.length() == 0) {
-                throw new FhirutParseException("Arquivo YAML está vazio");
-            }
+            checkFile(yamlFile);
 
             // 2. Parse do conteúdo
             TestDefinition definition = yamlMapper.readValue(yamlFile, TestDefinition.class);
 
-            // 3. Validação básica
-            if (definition.getTestId() == null || definition.getTestId().isEmpty()) {
-                throw new FhirutParseException("O campo 'test_id' é obrigatório no YAML");
+            // 3. Validação básica e conversão de caminhos relativos para absolutos
+            return finish(definition, yamlFile);
+
+        } catch (IOException e) {
+            throw new FhirutParseException("Falha ao analisar definição de teste YAML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lê todas as definições de um arquivo, entregando cada uma ao handler assim que
+     * é parseada. O arquivo pode ter vários documentos YAML separados por {@code ---},
+     * e cada documento pode ser uma definição ou uma suíte:
+     *
+     * <pre>
+     * suite: Pacientes SES-GO
+     * context: ...            # padrão para todos os testes
+     * expected_results: ...   # padrão para todos os testes
+     * tags: [patient]         # somadas às tags de cada teste
+     * timeout: 2m             # tempo limite de cada teste (opcional)
+     * tests:
+     *   - test_id: Patient-001
+     *     instance_path: instances/patient_1.json
+     *   - test_id: Patient-002
+     *     instance_path: instances/patient_2.json
+     *     expected_results: ...   # substitui o padrão
+     * </pre>
+     *
+     * @throws FhirutParseException se o arquivo não puder ser lido ou o YAML for inválido;
+     *         as definições anteriores ao erro já terão sido entregues
+     */
+    public void parseTestDefinitions(File yamlFile, TestDefinitionHandler handler) throws FhirutParseException {
+        checkFile(yamlFile);
+
+        int position = 0;
+        try (MappingIterator<JsonNode> documents = yamlMapper.readerFor(JsonNode.class).readValues(yamlFile)) {
+            while (documents.hasNextValue()) {
+                JsonNode document = documents.nextValue();
+                if (document == null || document.isNull() || document.isMissingNode()) {
+                    continue;
+                }
+                if (!document.isObject()) {
+                    handler.onInvalid(++position, new FhirutParseException(
+                            "Documento YAML não é uma definição de teste", yamlFile.getPath(), null));
+                    continue;
+                }
+
+                if (document.has(SUITE_FIELD) || document.has(TESTS_FIELD)) {
+                    position = parseSuite((ObjectNode) document, yamlFile, position, handler);
+                } else {
+                    position = deliver(document, yamlFile, position, handler);
+                }
             }
+        } catch (IOException | RuntimeException e) {
+            throw new FhirutParseException("Falha ao analisar definição de teste YAML: " + rootMessage(e), e);
+        }
+    }
+
+    private int parseSuite(ObjectNode suite, File yamlFile, int position, TestDefinitionHandler handler) {
+        // Tudo que não é da suíte em si vira padrão para os testes
+        ObjectNode defaults = suite.deepCopy();
+        defaults.remove(SUITE_FIELD);
+        defaults.remove(TESTS_FIELD);
+
+        JsonNode tests = suite.path(TESTS_FIELD);
+        if (!tests.isArray()) {
+            handler.onInvalid(++position, new FhirutParseException(
+                    "Suíte sem a lista 'tests'", yamlFile.getPath(), null));
+            return position;
+        }
 
-            if (definition.getInstancePath() == null) {
-                throw new FhirutParseException("O campo 'instance_path' é obrigatório no YAML");
+        for (JsonNode test : tests) {
+            if (!test.isObject()) {
+                handler.onInvalid(++position, new FhirutParseException(
+                        "Item " + position + " da suíte não é uma definição de teste", yamlFile.getPath(), null));
+                continue;
             }
+            ObjectNode merged = defaults.deepCopy();
+            merged.setAll((ObjectNode) test);
+            mergeTags(merged, defaults.get(TAGS_FIELD), test.get(TAGS_FIELD));
+            position = deliver(merged, yamlFile, position, handler);
+        }
+        return position;
+    }
+
+    private void mergeTags(ObjectNode merged, JsonNode suiteTags, JsonNode testTags) {
+        if (suiteTags == null || testTags == null || !suiteTags.isArray() || !testTags.isArray()) {
+            return;
+        }
+        ArrayNode tags = merged.putArray(TAGS_FIELD);
+        Set<String> seen = new LinkedHashSet<>();
+        suiteTags.forEach(tag -> seen.add(tag.asText()));
+        testTags.forEach(tag -> seen.add(tag.asText()));
+        seen.forEach(tags::add);
+    }
 
-            // 4. Conversão de caminhos relativos para absolutos
-            resolvePaths(definition, yamlFile);
+    /**
+     * Entrega a definição, ou os testes concretos de uma definição parametrizada.
+     * @param position última posição já usada no arquivo
+     * @return última posição usada depois desta definição
+     */
+    private int deliver(JsonNode node, File yamlFile, int position, TestDefinitionHandler handler) {
+        if (!TestExpander.isParameterized(node)) {
+            deliverOne(node, yamlFile, ++position, handler);
+            return position;
+        }
+
+        TestExpander expander;
+        try {
+            expander = new TestExpander((ObjectNode) node, getCorrectBaseDirectory(yamlFile));
+        } catch (FhirutParseException e) {
+            handler.onInvalid(++position, e);
+            return position;
+        }
 
-            return definition;
+        for (Map<String, String> combination : expander.combinations()) {
+            List<String> instances;
+            try {
+                instances = expander.instances(combination);
+            } catch (FhirutParseException e) {
+                handler.onInvalid(++position, e);
+                continue;
+            }
+            for (String instance : instances) {
+                deliverOne(expander.bind(combination, instance, instances.size() > 1), yamlFile, ++position, handler);
+            }
+        }
+        return position;
+    }
 
+    private void deliverOne(JsonNode node, File yamlFile, int position, TestDefinitionHandler handler) {
+        try {
+            handler.onDefinition(position, finish(yamlMapper.treeToValue(node, TestDefinition.class), yamlFile));
+        } catch (FhirutParseException e) {
+            handler.onInvalid(position, e);
         } catch (IOException e) {
-            throw new FhirutParseException("Falha ao analisar definição de teste YAML: " + e.getMessage(), e);
+            handler.onInvalid(position, new FhirutParseException(
+                    "Falha ao analisar definição " + position + ": " + e.getMessage(), e));
+        }
+    }
+
+    private void checkFile(File yamlFile) throws FhirutParseException {
+        // 1. Verificação básica do arquivo
+        if (!yamlFile.exists()) {
+            throw new FhirutParseException("Arquivo YAML não encontrado: " + yamlFile.getAbsolutePath());
+        }
+
+        if (yamlFile.length() == 0) {
+            throw new FhirutParseException("Arquivo YAML está vazio");
+        }
+    }
+
+    private TestDefinition finish(TestDefinition definition, File yamlFile) throws FhirutParseException {
+        if (definition.getTestId() == null || definition.getTestId().isEmpty()) {
+            throw new FhirutParseException("O campo 'test_id' é obrigatório no YAML");
+        }
+
+        if (definition.getInstancePath() == null) {
+            throw new FhirutParseException("O campo 'instance_path' é obrigatório no YAML");
+        }
+
+        resolvePaths(definition, yamlFile);
+        return definition;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
         }
+        return root.getMessage() != null ? root.getMessage() : root.toString();
     }
 
     private void resolvePaths(TestDefinition definition, File yamlFile) {
@@ -93,14 +260,14 @@ public class YamlParser {
     private Path getCorrectBaseDirectory(File yamlFile) {
         // Verifica se estamos executando do target/test-classes
         Path yamlPath = yamlFile.toPath().normalize();
-        Path targetPath = Paths.get("target/test-classes").normalize();
+        Path targetPath = workingDirectory.resolve("target/test-classes").normalize();
 
         if (yamlPath.startsWith(targetPath)) {
             // Se o YAML está no target, usamos target como base
             return targetPath;
         } else {
             // Caso contrário, usamos src/test/resources
-            return Paths.get("src/test/resources").normalize();
+            return workingDirectory.resolve("src/test/resources").normalize();
         }
     }
 
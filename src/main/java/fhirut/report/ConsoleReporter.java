@@ -0,0 +1,86 @@
+package fhirut.report;
+
+import fhirut.core.TestResultListener;
+import fhirut.model.TestResult;
+import fhirut.model.ValidationDiff;
+
+/**
+ * Mostra o andamento no console e calcula o código de saída a partir dos
+ * resultados, sem guardá-los.
+ */
+public class ConsoleReporter implements TestResultListener {
+    private final boolean verbose;
+    private int passed;
+    private int failed;
+
+    public ConsoleReporter(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * O andamento é mostrado à medida que os testes terminam.
+     */
+    @Override
+    public boolean ordered() {
+        return false;
+    }
+
+    @Override
+    public void onResult(TestResult result) {
+        if (result.isPassed()) {
+            passed++;
+        } else {
+            failed++;
+        }
+
+        if (verbose) {
+            String position = "[" + (passed + failed) + "] ";
+            System.out.println(position + (result.isPassed() ? "✅ " : "❌ ") + result.getTestId());
+            if (!result.isPassed() && result.getDifferences() != null) {
+                for (ValidationDiff diff : result.getDifferences()) {
+                    System.out.println("    - " + diff.getMessage() + " (" + diff.getSeverity() + ")");
+                }
+            }
+        }
+    }
+
+    public void printSummary() {
+        System.out.println("✅ " + passed + " testes aprovados");
+        System.out.println("❌ " + failed + " testes falhos");
+    }
+
+    /**
+     * Mostra os percentis de duração e, no modo verbose, as fases e os testes mais lentos.
+     */
+    public void printTimings(RunSummary summary) {
+        System.out.println("⏱️ " + summary.getWallMs() + " ms no total | por teste: p50 " + summary.getP50Ms()
+                + " ms, p90 " + summary.getP90Ms() + " ms, p99 " + summary.getP99Ms()
+                + " ms, máx " + summary.getMaxMs() + " ms");
+        if (!verbose) {
+            return;
+        }
+        summary.getPhaseTotals().forEach((phase, ms) -> System.out.println("    " + phase + ": " + ms + " ms"));
+        summary.getEngineTimings().forEach((phase, ms) -> System.out.println("    engine " + phase + ": " + ms + " ms"));
+        if (!summary.getSlowest().isEmpty()) {
+            System.out.println("🐢 Testes mais lentos:");
+            for (RunSummary.SlowTest test : summary.getSlowest()) {
+                System.out.println("    " + test.getDurationMs() + " ms  " + test.getTestId());
+            }
+        }
+    }
+
+    public int getPassed() {
+        return passed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return 0 se todos os testes passaram, 1 caso contrário
+     */
+    public int getExitCode() {
+        return failed == 0 ? 0 : 1;
+    }
+}
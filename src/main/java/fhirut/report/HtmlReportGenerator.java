@@ -7,35 +7,99 @@ import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 public class HtmlReportGenerator {
+    // O TemplateEngine é thread-safe e guarda os templates já parseados; um único para todo o processo
+    private static final TemplateEngine TEMPLATE_ENGINE = configureTemplateEngine();
+
+    private RunSummary summary;
+
     public void generateReport(List<TestResult> results, File outputFile) throws IOException {
-        URL templateUrl = getClass().getResource("/templates/report-template.html");
+        Context context = newContext("report-template");
+        context.setVariable("results", results);
+        render("report-template", context, outputFile);
+    }
+
+    /**
+     * Gera uma página do relatório paginado, com links para o índice e páginas vizinhas.
+     */
+    public void generatePage(List<TestResult> results, File outputFile, int page, boolean lastPage,
+                             String indexFileName) throws IOException {
+        Context context = newContext("report-template");
+        context.setVariable("results", results);
+        context.setVariable("page", page);
+        context.setVariable("indexFile", indexFileName);
+        context.setVariable("previousFile", page > 1 ? pageFileName(indexFileName, page - 1) : null);
+        context.setVariable("nextFile", lastPage ? null : pageFileName(indexFileName, page + 1));
+        render("report-template", context, outputFile);
+    }
+
+    /**
+     * Gera o índice do relatório paginado: totais, páginas e testes falhos de cada página.
+     */
+    public void generateIndex(List<ReportPage> pages, int passed, int failed, File outputFile) throws IOException {
+        Context context = newContext("report-index");
+        context.setVariable("pages", pages);
+        context.setVariable("passed", passed);
+        context.setVariable("failed", failed);
+        context.setVariable("total", passed + failed);
+        render("report-index", context, outputFile);
+    }
+
+    /**
+     * Define o resumo de tempos mostrado no relatório (página única ou índice).
+     * @param summary resumo já fechado quando o relatório for gerado, ou null para omitir
+     */
+    public void setSummary(RunSummary summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Nome do arquivo de uma página, derivado do nome do índice
+     * ({@code fhir-test-report.html} → {@code fhir-test-report-3.html}).
+     */
+    public static String pageFileName(String indexFileName, int page) {
+        int dot = indexFileName.lastIndexOf('.');
+        String base = dot > 0 ? indexFileName.substring(0, dot) : indexFileName;
+        String extension = dot > 0 ? indexFileName.substring(dot) : ".html";
+        return base + "-" + page + extension;
+    }
+
+    private Context newContext(String template) throws IOException {
+        URL templateUrl = getClass().getResource("/templates/" + template + ".html");
         if (templateUrl == null) {
             throw new IOException("Template não encontrado! Verifique se está em src/main/resources/templates/");
         }
-        TemplateEngine templateEngine = configureTemplateEngine();
         Context context = new Context();
-        context.setVariable("results", results);
+        context.setVariable("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        context.setVariable("summary", summary);
+        return context;
+    }
 
-        try (FileWriter writer = new FileWriter(outputFile)) {
-            templateEngine.process("report-template", context, writer);
+    private void render(String template, Context context, File outputFile) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8)) {
+            TEMPLATE_ENGINE.process(template, context, writer);
         }
     }
 
-    private TemplateEngine configureTemplateEngine() {
+    private static TemplateEngine configureTemplateEngine() {
         ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
         templateResolver.setPrefix("/templates/");  // Procura em src/main/resources/templates/
         templateResolver.setSuffix(".html");
         templateResolver.setTemplateMode(TemplateMode.HTML);
         templateResolver.setCharacterEncoding("UTF-8");
+        templateResolver.setCacheable(true);
 
         TemplateEngine templateEngine = new TemplateEngine();
         templateEngine.setTemplateResolver(templateResolver);
         return templateEngine;
     }
-}
\ No newline at end of file
+}
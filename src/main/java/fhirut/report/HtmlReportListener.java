@@ -0,0 +1,124 @@
+package fhirut.report;
+
+import fhirut.core.TestResultListener;
+import fhirut.model.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Alimenta o relatório HTML a partir dos resultados publicados pelo runner.
+ *
+ * <p>Suítes com até {@code pageSize} testes geram a página única de sempre. Nas
+ * maiores, cada bloco de {@code pageSize} resultados é gravado em uma página
+ * própria assim que chega o primeiro resultado do bloco seguinte (assim toda
+ * página gravada sabe que tem próxima), e o arquivo principal vira um índice com
+ * os totais e os testes falhos; só um bloco fica em memória por vez.</p>
+ *
+ * <p>O template usa apenas id, status, duração e diferenças, então o
+ * OperationOutcome de cada resultado é descartado assim que chega.</p>
+ */
+public class HtmlReportListener implements TestResultListener {
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final HtmlReportGenerator generator;
+    private final File outputFile;
+    private final int pageSize;
+    private final List<TestResult> buffer = new ArrayList<>();
+    private final List<ReportPage> pages = new ArrayList<>();
+    private int passed;
+    private int failed;
+
+    public HtmlReportListener(HtmlReportGenerator generator, File outputFile) {
+        this(generator, outputFile, DEFAULT_PAGE_SIZE);
+    }
+
+    public HtmlReportListener(HtmlReportGenerator generator, File outputFile, int pageSize) {
+        this.generator = generator;
+        this.outputFile = outputFile;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    @Override
+    public void onStart(int files) {
+        deleteStalePages();
+    }
+
+    @Override
+    public void onResult(TestResult result) {
+        if (buffer.size() >= pageSize) {
+            flushPage(false);
+        }
+
+        TestResult summary = new TestResult();
+        summary.setTestId(result.getTestId());
+        summary.setPassed(result.isPassed());
+        summary.setDifferences(result.getDifferences());
+        summary.setDurationMs(result.getDurationMs());
+        buffer.add(summary);
+
+        if (result.isPassed()) {
+            passed++;
+        } else {
+            failed++;
+        }
+    }
+
+    @Override
+    public void onFinish() {
+        System.out.println("📊 Gerando relatório em: " + outputFile.getAbsolutePath());
+        try {
+            if (pages.isEmpty()) {
+                generator.generateReport(buffer, outputFile);
+            } else {
+                flushPage(true);
+                generator.generateIndex(pages, passed, failed, outputFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao gerar relatório: " + e.getMessage());
+        }
+        buffer.clear();
+    }
+
+    private void flushPage(boolean lastPage) {
+        ReportPage page = new ReportPage();
+        page.setNumber(pages.size() + 1);
+        page.setFileName(HtmlReportGenerator.pageFileName(outputFile.getName(), page.getNumber()));
+        for (TestResult result : buffer) {
+            if (result.isPassed()) {
+                page.setPassed(page.getPassed() + 1);
+            } else {
+                page.setFailed(page.getFailed() + 1);
+                page.getFailedTests().add(result.getTestId());
+            }
+        }
+
+        try {
+            generator.generatePage(buffer, new File(outputFile.getAbsoluteFile().getParentFile(), page.getFileName()),
+                    page.getNumber(), lastPage, outputFile.getName());
+        } catch (IOException e) {
+            System.err.println("Erro ao gerar página " + page.getNumber() + " do relatório: " + e.getMessage());
+        }
+        pages.add(page);
+        buffer.clear();
+    }
+
+    /**
+     * Remove páginas de uma execução anterior maior, para o índice não conviver com páginas órfãs.
+     */
+    private void deleteStalePages() {
+        File directory = outputFile.getAbsoluteFile().getParentFile();
+        for (int page = 1; ; page++) {
+            File stale = new File(directory, HtmlReportGenerator.pageFileName(outputFile.getName(), page));
+            if (!stale.delete()) {
+                break;
+            }
+        }
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+}
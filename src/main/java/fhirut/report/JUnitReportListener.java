@@ -0,0 +1,158 @@
+package fhirut.report;
+
+import fhirut.core.TestResultListener;
+import fhirut.model.TestResult;
+import fhirut.model.ValidationDiff;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Gera o relatório no formato JUnit XML sem manter os resultados em memória.
+ *
+ * <p>Os {@code <testcase>} são gravados num arquivo temporário à medida que os
+ * resultados chegam; como o cabeçalho {@code <testsuite>} precisa dos totais, o
+ * arquivo final só é montado no fim, copiando esse corpo depois do cabeçalho.</p>
+ */
+public class JUnitReportListener implements TestResultListener {
+    private static final String SUITE_NAME = "fut";
+    private static final String EXECUTION_ERROR = "EXECUTION_ERROR";
+
+    private final File outputFile;
+    private Path bodyFile;
+    private Writer bodyWriter;
+    private XMLStreamWriter xml;
+    private int tests;
+    private int failures;
+    private int errors;
+    private long totalMs;
+
+    public JUnitReportListener(File outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public void onStart(int total) {
+        try {
+            File directory = outputFile.getAbsoluteFile().getParentFile();
+            bodyFile = Files.createTempFile(directory.toPath(), outputFile.getName(), ".part");
+            bodyWriter = Files.newBufferedWriter(bodyFile, StandardCharsets.UTF_8);
+            xml = XMLOutputFactory.newInstance().createXMLStreamWriter(bodyWriter);
+        } catch (IOException | XMLStreamException e) {
+            System.err.println("Erro ao criar relatório JUnit: " + e.getMessage());
+            discardBody();
+        }
+    }
+
+    @Override
+    public void onResult(TestResult result) {
+        if (xml == null) {
+            return;
+        }
+        tests++;
+        try {
+            xml.writeCharacters("\n    ");
+            xml.writeStartElement("testcase");
+            xml.writeAttribute("classname", SUITE_NAME);
+            xml.writeAttribute("name", String.valueOf(result.getTestId()));
+            xml.writeAttribute("time", seconds(result.getDurationMs()));
+            totalMs += result.getDurationMs();
+
+            if (!result.isPassed()) {
+                List<ValidationDiff> differences = result.getDifferences() != null ? result.getDifferences() : List.of();
+                boolean error = differences.stream().anyMatch(diff -> EXECUTION_ERROR.equals(diff.getType()));
+                if (error) {
+                    errors++;
+                } else {
+                    failures++;
+                }
+
+                xml.writeCharacters("\n      ");
+                xml.writeStartElement(error ? "error" : "failure");
+                xml.writeAttribute("type", differences.isEmpty() ? "FAILED" : String.valueOf(differences.get(0).getType()));
+                xml.writeAttribute("message", differences.isEmpty() ? "Teste falhou" : String.valueOf(differences.get(0).getMessage()));
+                StringBuilder details = new StringBuilder();
+                for (ValidationDiff diff : differences) {
+                    details.append(diff.getType()).append(": ").append(diff.getMessage())
+                            .append(" (").append(diff.getSeverity()).append(")");
+                    if (diff.getLocation() != null) {
+                        details.append(" @ ").append(diff.getLocation());
+                    }
+                    details.append('\n');
+                }
+                xml.writeCharacters(details.toString());
+                xml.writeEndElement();
+                xml.writeCharacters("\n    ");
+            }
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            System.err.println("Erro ao gravar resultado " + result.getTestId() + " no JUnit: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFinish() {
+        if (xml == null) {
+            return;
+        }
+        System.out.println("📊 Gerando relatório em: " + outputFile.getAbsolutePath());
+        try {
+            xml.flush();
+            xml.close();
+            bodyWriter.close();
+
+            try (OutputStream out = Files.newOutputStream(outputFile.toPath());
+                 InputStream body = Files.newInputStream(bodyFile)) {
+                String attributes = " tests=\"" + tests + "\" failures=\"" + failures + "\" errors=\"" + errors
+                        + "\" time=\"" + seconds(totalMs) + "\"";
+                String header = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<testsuites name=\"" + SUITE_NAME + "\"" + attributes + ">\n"
+                        + "  <testsuite name=\"" + SUITE_NAME + "\"" + attributes + " skipped=\"0\" timestamp=\""
+                        + LocalDateTime.now().withNano(0).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "\">";
+                out.write(header.getBytes(StandardCharsets.UTF_8));
+                body.transferTo(out);
+                out.write("\n  </testsuite>\n</testsuites>\n".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException | XMLStreamException e) {
+            System.err.println("Erro ao finalizar relatório JUnit: " + e.getMessage());
+        } finally {
+            discardBody();
+        }
+    }
+
+    /**
+     * O JUnit XML registra o tempo em segundos.
+     */
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    private void discardBody() {
+        xml = null;
+        if (bodyFile != null) {
+            try {
+                if (bodyWriter != null) {
+                    bodyWriter.close();
+                }
+                Files.deleteIfExists(bodyFile);
+            } catch (IOException e) {
+                // Arquivo temporário no diretório de saída; não impede o relatório
+            }
+            bodyFile = null;
+            bodyWriter = null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fhirut.report;
+
+import fhirut.core.TestResultListener;
+import fhirut.model.TestResult;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Grava cada resultado como uma linha JSON ({@link TestResultCodec}) assim que ele
+ * chega. O arquivo pode ser lido linha a linha, ou comparado entre execuções,
+ * sem carregar o relatório inteiro.
+ */
+public class NdjsonReportListener implements TestResultListener {
+    private final File outputFile;
+    private BufferedWriter writer;
+
+    public NdjsonReportListener(File outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public void onStart(int total) {
+        try {
+            writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Erro ao criar relatório NDJSON: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onResult(TestResult result) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            TestResultCodec.write(result, writer);
+            writer.newLine();
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar resultado " + result.getTestId() + " no NDJSON: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFinish() {
+        if (writer == null) {
+            return;
+        }
+        System.out.println("📊 Gerando relatório em: " + outputFile.getAbsolutePath());
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao finalizar relatório NDJSON: " + e.getMessage());
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,42 @@
+package fhirut.report;
+
+/**
+ * Formatos de relatório que o comando pode gerar, todos alimentados pelos
+ * resultados à medida que chegam.
+ */
+public enum ReportFormat {
+    /** Relatório HTML para leitura humana (fhir-test-report.html). */
+    HTML("fhir-test-report.html"),
+    /** XML no formato JUnit, lido pela maioria das ferramentas de CI (fhir-test-report.xml). */
+    JUNIT("fhir-test-report.xml"),
+    /** Um resultado completo por linha em JSON (fhir-test-report.ndjson). */
+    NDJSON("fhir-test-report.ndjson");
+
+    private final String fileName;
+
+    ReportFormat(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @param qualifier acrescentado antes da extensão (ex.: {@code shard-1-of-4}); null mantém o nome padrão
+     */
+    public String getFileName(String qualifier) {
+        return qualify(fileName, qualifier);
+    }
+
+    /**
+     * {@code fhir-test-report.xml} + {@code shard-1-of-4} → {@code fhir-test-report.shard-1-of-4.xml}
+     */
+    public static String qualify(String fileName, String qualifier) {
+        if (qualifier == null) {
+            return fileName;
+        }
+        int extension = fileName.lastIndexOf('.');
+        return fileName.substring(0, extension) + "." + qualifier + fileName.substring(extension);
+    }
+}
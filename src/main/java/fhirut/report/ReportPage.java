@@ -0,0 +1,57 @@
+package fhirut.report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumo de uma página do relatório paginado, exibido no índice.
+ */
+public class ReportPage {
+    private int number;
+    private String fileName;
+    private int passed;
+    private int failed;
+    private List<String> failedTests = new ArrayList<>();
+
+    // Getters e Setters
+
+    public int getNumber() {
+        return number;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public int getPassed() {
+        return passed;
+    }
+
+    public void setPassed(int passed) {
+        this.passed = passed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<String> getFailedTests() {
+        return failedTests;
+    }
+
+    public void setFailedTests(List<String> failedTests) {
+        this.failedTests = failedTests;
+    }
+}
@@ -0,0 +1,254 @@
+package fhirut.report;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fhirut.core.TestResultListener;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+/**
+ * Consolida os tempos da execução: duração total, percentis da duração por
+ * teste, os testes mais lentos e o tempo somado de cada fase.
+ *
+ * <p>Guarda apenas as durações (um {@code long} por teste) e os N testes mais
+ * lentos, não os resultados. Deve ser registrado antes dos relatórios, para que
+ * o resumo esteja fechado quando eles forem gerados no {@code onFinish}.</p>
+ */
+public class RunSummary implements TestResultListener {
+    public static final String FILE_NAME = "fhir-test-summary.json";
+    public static final int DEFAULT_SLOWEST = 10;
+
+    private final int slowestLimit;
+    private final Supplier<Map<String, Long>> engineTimingsSource;
+    private final PriorityQueue<SlowTest> slowest = new PriorityQueue<>(Comparator.comparingLong(SlowTest::getDurationMs));
+    private final Map<String, Long> phaseTotals = new LinkedHashMap<>();
+    private final Map<String, Long> engineTimings = new LinkedHashMap<>();
+    private long[] durations = new long[256];
+    private long[] sorted;
+    private int count;
+    private int passed;
+    private int failed;
+    private long startNanos = System.nanoTime();
+    private long wallMs;
+    private Map<String, Object> shard;
+
+    public RunSummary() {
+        this(DEFAULT_SLOWEST, Map::of);
+    }
+
+    /**
+     * @param slowestLimit quantos testes mais lentos manter
+     * @param engineTimingsSource tempos do mecanismo de validação, lidos no fim da execução
+     */
+    public RunSummary(int slowestLimit, Supplier<Map<String, Long>> engineTimingsSource) {
+        this.slowestLimit = Math.max(0, slowestLimit);
+        this.engineTimingsSource = engineTimingsSource;
+    }
+
+    @Override
+    public void onStart(int files) {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onResult(TestResult result) {
+        if (result.isPassed()) {
+            passed++;
+        } else {
+            failed++;
+        }
+
+        if (count == durations.length) {
+            durations = Arrays.copyOf(durations, count * 2);
+        }
+        durations[count++] = result.getDurationMs();
+        sorted = null;
+
+        if (result.getTimings() != null) {
+            result.getTimings().forEach((phase, ms) -> phaseTotals.merge(phase, ms, Long::sum));
+        }
+
+        if (slowestLimit > 0) {
+            if (slowest.size() < slowestLimit) {
+                slowest.add(new SlowTest(result.getTestId(), result.getDurationMs()));
+            } else if (result.getDurationMs() > slowest.peek().getDurationMs()) {
+                slowest.poll();
+                slowest.add(new SlowTest(result.getTestId(), result.getDurationMs()));
+            }
+        }
+    }
+
+    @Override
+    public void onFinish() {
+        wallMs = PhaseTimer.elapsedMillis(startNanos);
+        engineTimings.putAll(engineTimingsSource.get());
+    }
+
+    /**
+     * Registra o tempo de uma fase que acontece fora da execução dos testes (ex.: carga do validador).
+     */
+    public void addEngineTiming(String phase, long millis) {
+        engineTimings.merge(phase, millis, Long::sum);
+    }
+
+    /**
+     * @param percentile entre 0 e 100
+     * @return duração (ms) abaixo da qual estão {@code percentile}% dos testes (método nearest-rank)
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (sorted == null) {
+            sorted = Arrays.copyOf(durations, count);
+            Arrays.sort(sorted);
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.min(count, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * Identifica o shard da execução no resumo gravado, conferido pelo {@code fut merge}.
+     */
+    public void setShard(int index, int count, String split) {
+        shard = new LinkedHashMap<>();
+        shard.put("index", index);
+        shard.put("count", count);
+        shard.put("split", split);
+    }
+
+    /**
+     * Grava o resumo em JSON, para consumo por ferramentas de CI.
+     */
+    public void writeJson(File outputFile) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("total", getTotal());
+        json.put("passed", passed);
+        json.put("failed", failed);
+        json.put("wallMs", wallMs);
+        json.put("totalTestMs", getTotalTestMs());
+
+        Map<String, Long> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", getP50Ms());
+        percentiles.put("p90", getP90Ms());
+        percentiles.put("p95", getP95Ms());
+        percentiles.put("p99", getP99Ms());
+        percentiles.put("max", getMaxMs());
+        json.put("durationMs", percentiles);
+
+        json.put("phases", phaseTotals);
+        json.put("engine", engineTimings);
+
+        List<Map<String, Object>> slowestTests = new ArrayList<>();
+        for (SlowTest test : getSlowest()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("testId", test.getTestId());
+            entry.put("durationMs", test.getDurationMs());
+            slowestTests.add(entry);
+        }
+        json.put("slowest", slowestTests);
+        if (shard != null) {
+            json.put("shard", shard);
+        }
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(outputFile, json);
+    }
+
+    public int getTotal() {
+        return passed + failed;
+    }
+
+    public int getPassed() {
+        return passed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public long getWallMs() {
+        return wallMs;
+    }
+
+    /**
+     * @return soma das durações de todos os testes (maior que {@link #getWallMs()} quando há paralelismo)
+     */
+    public long getTotalTestMs() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += durations[i];
+        }
+        return total;
+    }
+
+    public long getP50Ms() {
+        return percentile(50);
+    }
+
+    public long getP90Ms() {
+        return percentile(90);
+    }
+
+    public long getP95Ms() {
+        return percentile(95);
+    }
+
+    public long getP99Ms() {
+        return percentile(99);
+    }
+
+    public long getMaxMs() {
+        return percentile(100);
+    }
+
+    /**
+     * @return os testes mais lentos, do mais lento para o mais rápido
+     */
+    public List<SlowTest> getSlowest() {
+        List<SlowTest> list = new ArrayList<>(slowest);
+        list.sort(Comparator.comparingLong(SlowTest::getDurationMs).reversed());
+        return list;
+    }
+
+    public Map<String, Long> getPhaseTotals() {
+        return phaseTotals;
+    }
+
+    public Map<String, Long> getEngineTimings() {
+        return engineTimings;
+    }
+
+    /**
+     * Teste entre os mais lentos da execução.
+     */
+    public static class SlowTest {
+        private final String testId;
+        private final long durationMs;
+
+        public SlowTest(String testId, long durationMs) {
+            this.testId = testId;
+            this.durationMs = durationMs;
+        }
+
+        // Getters
+
+        public String getTestId() {
+            return testId;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package fhirut.report;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fhirut.model.TestResult;
+import fhirut.model.ValidationDiff;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializa um {@link TestResult} completo (inclusive o OperationOutcome) como
+ * um objeto JSON de uma linha, e faz o caminho inverso.
+ */
+public final class TestResultCodec {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private TestResultCodec() {
+    }
+
+    public static String encode(TestResult result) throws IOException {
+        StringWriter writer = new StringWriter();
+        write(result, writer);
+        return writer.toString();
+    }
+
+    public static void write(TestResult result, Writer writer) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("testId", result.getTestId());
+            generator.writeBooleanField("passed", result.isPassed());
+            generator.writeNumberField("durationMs", result.getDurationMs());
+            if (result.getTimings() != null && !result.getTimings().isEmpty()) {
+                generator.writeObjectFieldStart("timings");
+                for (Map.Entry<String, Long> timing : result.getTimings().entrySet()) {
+                    generator.writeNumberField(timing.getKey(), timing.getValue());
+                }
+                generator.writeEndObject();
+            }
+
+            generator.writeArrayFieldStart("differences");
+            if (result.getDifferences() != null) {
+                for (ValidationDiff diff : result.getDifferences()) {
+                    MAPPER.writeValue(generator, diff);
+                }
+            }
+            generator.writeEndArray();
+
+            if (result.getOutcome() != null) {
+                generator.writeFieldName("outcome");
+                generator.writeRawValue(new JsonParser().composeString(result.getOutcome()));
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    public static TestResult decode(String json) throws IOException {
+        return fromNode(MAPPER.readTree(json));
+    }
+
+    public static TestResult fromNode(JsonNode node) throws IOException {
+        TestResult result = new TestResult();
+        JsonNode testId = node.path("testId");
+        result.setTestId(testId.isValueNode() ? testId.asText() : null);
+        result.setPassed(node.path("passed").asBoolean(false));
+        result.setDurationMs(node.path("durationMs").asLong(0));
+        node.path("timings").properties().forEach(timing -> result.addTiming(timing.getKey(), timing.getValue().asLong()));
+
+        List<ValidationDiff> differences = new ArrayList<>();
+        for (JsonNode diff : node.path("differences")) {
+            differences.add(MAPPER.treeToValue(diff, ValidationDiff.class));
+        }
+        result.setDifferences(differences);
+
+        JsonNode outcome = node.get("outcome");
+        if (outcome != null && !outcome.isNull()) {
+            try {
+                result.setOutcome((OperationOutcome) new JsonParser().parse(outcome.toString()));
+            } catch (Exception e) {
+                throw new IOException("OperationOutcome inválido: " + e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+}
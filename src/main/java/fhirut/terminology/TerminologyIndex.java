@@ -0,0 +1,694 @@
+package fhirut.terminology;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CanonicalType;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.ValueSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice em memória dos CodeSystems e ValueSets conhecidos localmente.
+ *
+ * <p>Os recursos ficam agrupados por origem (um pacote ou um arquivo local) e cada
+ * consulta enxerga só as origens do {@link Scope} do contexto de teste em
+ * validação, na ordem de precedência do contexto: recursos locais, IGs (com suas
+ * dependências) e o core. Como o validador não identifica o contexto nas
+ * requisições, {@link #enter(Scope)} só admite validações de um mesmo escopo por
+ * vez; contextos diferentes se revezam, por ordem de chegada.</p>
+ *
+ * <p>Cada ValueSet é expandido uma única vez por escopo, na primeira consulta, para
+ * um {@link Expansion}: um mapa por sistema de códigos → display, que responde se
+ * um código pertence ao conjunto com uma busca em tabela hash. Sistemas que não
+ * podem ser enumerados localmente (ex.: SNOMED CT incluído por inteiro, ou filtros
+ * não suportados) ficam marcados como "abertos": para eles a resposta é
+ * "desconhecido", e não "não pertence".</p>
+ *
+ * <p>Seguro para uso concorrente: leituras de expansões já prontas não bloqueiam.</p>
+ */
+public class TerminologyIndex {
+    // Origem (pacote ou caminho de arquivo) → recursos, na ordem de registro
+    private final Map<String, Library> libraries = new LinkedHashMap<>();
+    private final Map<String, Expansion> expansions = new ConcurrentHashMap<>();
+
+    // Controle de admissão por escopo: chegada → escopo de quem espera
+    private final TreeMap<Long, Scope> waiting = new TreeMap<>();
+    private Scope active;
+    private int inFlight;
+    private long nextTicket;
+    private long admittedBefore;
+
+    /**
+     * Registra (ou substitui) os recursos de uma origem. Substituir uma origem
+     * descarta as expansões já calculadas, que podem depender dela.
+     */
+    public synchronized void register(String origin, Library library) {
+        if (libraries.put(origin, library) != null) {
+            invalidateExpansions();
+        }
+    }
+
+    public synchronized boolean isRegistered(String origin) {
+        return libraries.containsKey(origin);
+    }
+
+    /**
+     * @return escopo com as origens informadas que estão registradas, na mesma ordem
+     */
+    public synchronized Scope scope(Collection<String> origins) {
+        List<String> known = new ArrayList<>();
+        for (String origin : origins) {
+            if (libraries.containsKey(origin)) {
+                known.add(origin);
+            }
+        }
+        return new Scope(known);
+    }
+
+    /**
+     * Aguarda a vez do escopo e o torna o escopo ativo. Validações do escopo ativo
+     * entram juntas enquanto nenhum outro escopo estiver esperando; cada chamada
+     * deve ser seguida de {@link #leave()}.
+     */
+    public synchronized void enter(Scope scope) throws InterruptedException {
+        long ticket = nextTicket++;
+        waiting.put(ticket, scope);
+        try {
+            while (!admits(ticket, scope)) {
+                wait();
+            }
+        } finally {
+            waiting.remove(ticket);
+            notifyAll();
+        }
+        if (inFlight == 0) {
+            // Troca de escopo: quem já esperava pelo mesmo escopo entra junto
+            active = scope;
+            admittedBefore = nextTicket;
+        }
+        inFlight++;
+    }
+
+    public synchronized void leave() {
+        if (--inFlight == 0) {
+            notifyAll();
+        }
+    }
+
+    private boolean admits(long ticket, Scope scope) {
+        if (inFlight == 0) {
+            return waiting.firstKey() == ticket;
+        }
+        if (!scope.equals(active)) {
+            return false;
+        }
+        return ticket < admittedBefore || waiting.values().stream().allMatch(scope::equals);
+    }
+
+    /**
+     * @param overlay recursos enviados na própria requisição ({@code tx-resource}),
+     *                com precedência sobre o escopo; null se não houver
+     * @return visão do escopo ativo (ou de todas as origens, fora de uma validação)
+     */
+    public synchronized View view(Library overlay) {
+        Scope scope = active != null ? active : new Scope(new ArrayList<>(libraries.keySet()));
+        return new View(scope, overlay != null && !overlay.isEmpty() ? overlay : null);
+    }
+
+    /**
+     * Esquece as expansões calculadas, para refletir CodeSystems e ValueSets substituídos depois.
+     */
+    public void invalidateExpansions() {
+        expansions.clear();
+    }
+
+    private synchronized Concepts findCodeSystem(List<Library> sources, String url, String version) {
+        if (url == null) {
+            return null;
+        }
+        if (version != null) {
+            for (Library library : sources) {
+                Concepts concepts = library.codeSystem(url + "|" + version);
+                if (concepts != null) {
+                    return concepts;
+                }
+            }
+        }
+        for (Library library : sources) {
+            Concepts concepts = library.codeSystem(url);
+            if (concepts != null) {
+                return concepts;
+            }
+        }
+        return null;
+    }
+
+    private synchronized ValueSet findValueSet(List<Library> sources, String url, String version) {
+        if (url == null) {
+            return null;
+        }
+        // Referências canônicas podem trazer a versão na própria URL
+        int bar = url.indexOf('|');
+        if (bar >= 0 && version == null) {
+            version = url.substring(bar + 1);
+            url = url.substring(0, bar);
+        }
+        if (version != null) {
+            for (Library library : sources) {
+                ValueSet valueSet = library.valueSet(url + "|" + version);
+                if (valueSet != null) {
+                    return valueSet;
+                }
+            }
+        }
+        for (Library library : sources) {
+            ValueSet valueSet = library.valueSet(url);
+            if (valueSet != null) {
+                return valueSet;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Consultas restritas a um escopo, mais os recursos enviados na requisição.
+     */
+    public final class View {
+        private final Scope scope;
+        private final Library overlay;
+        private final List<Library> sources = new ArrayList<>();
+
+        private View(Scope scope, Library overlay) {
+            this.scope = scope;
+            this.overlay = overlay;
+            if (overlay != null) {
+                sources.add(overlay);
+            }
+            for (String origin : scope.origins) {
+                Library library = libraries.get(origin);
+                if (library != null) {
+                    sources.add(library);
+                }
+            }
+        }
+
+        public Concepts getCodeSystem(String url, String version) {
+            return findCodeSystem(sources, url, version);
+        }
+
+        public ValueSet getValueSet(String url, String version) {
+            return findValueSet(sources, url, version);
+        }
+
+        /**
+         * @return URLs (sem versão) dos CodeSystems visíveis, lidos ou não
+         */
+        public Set<String> getCodeSystemUrls() {
+            Set<String> urls = new TreeSet<>();
+            synchronized (TerminologyIndex.this) {
+                for (Library library : sources) {
+                    library.codeSystemUrls(urls);
+                }
+            }
+            return urls;
+        }
+
+        /**
+         * @return expansão do ValueSet, calculada uma vez por escopo e reaproveitada
+         */
+        public Expansion expansion(ValueSet valueSet) {
+            // Recursos da requisição valem só para ela: a expansão não é guardada
+            boolean cacheable = valueSet.hasUrl() && overlay == null;
+            String key = scope.id + "\n" + valueSet.getUrl() + "|" + valueSet.getVersion();
+            Expansion expansion = cacheable ? expansions.get(key) : null;
+            if (expansion == null) {
+                synchronized (TerminologyIndex.this) {
+                    expansion = expand(valueSet, new HashSet<>());
+                }
+                if (cacheable) {
+                    expansions.put(key, expansion);
+                }
+            }
+            return expansion;
+        }
+
+        private Expansion expand(ValueSet valueSet, Set<String> inProgress) {
+            Expansion result = new Expansion();
+            String self = valueSet.getUrl() + "|" + valueSet.getVersion();
+            if (!inProgress.add(self)) {
+                result.error = "Referência circular em " + valueSet.getUrl();
+                return result;
+            }
+            try {
+                if (!valueSet.hasCompose()) {
+                    // Sem compose, só resta a expansão que veio pronta no pacote
+                    for (ValueSet.ValueSetExpansionContainsComponent contains : valueSet.getExpansion().getContains()) {
+                        addContains(result, contains);
+                    }
+                    if (!valueSet.hasExpansion()) {
+                        result.error = "ValueSet " + valueSet.getUrl() + " não tem compose nem expansão";
+                    }
+                    return result;
+                }
+                for (ValueSet.ConceptSetComponent include : valueSet.getCompose().getInclude()) {
+                    result.addAll(expandSet(include, inProgress));
+                }
+                for (ValueSet.ConceptSetComponent exclude : valueSet.getCompose().getExclude()) {
+                    result.removeAll(expandSet(exclude, inProgress));
+                }
+                return result;
+            } finally {
+                inProgress.remove(self);
+            }
+        }
+
+        private void addContains(Expansion result, ValueSet.ValueSetExpansionContainsComponent contains) {
+            if (contains.hasSystem() && contains.hasCode()) {
+                result.add(contains.getSystem(), contains.getCode(), contains.getDisplay());
+            }
+            for (ValueSet.ValueSetExpansionContainsComponent child : contains.getContains()) {
+                addContains(result, child);
+            }
+        }
+
+        private Expansion expandSet(ValueSet.ConceptSetComponent set, Set<String> inProgress) {
+            Expansion fromSystem = null;
+            if (set.hasSystem()) {
+                fromSystem = expandSystem(set);
+            }
+
+            // Vários valueSets no mesmo include formam uma interseção, também com o sistema
+            Expansion result = fromSystem;
+            for (CanonicalType reference : set.getValueSet()) {
+                ValueSet referenced = getValueSet(reference.getValue(), null);
+                Expansion imported;
+                if (referenced == null) {
+                    imported = new Expansion();
+                    imported.error = "ValueSet " + reference.getValue() + " não encontrado localmente";
+                } else {
+                    imported = expand(referenced, inProgress);
+                }
+                result = result == null ? imported : result.intersect(imported);
+            }
+            return result != null ? result : new Expansion();
+        }
+
+        private Expansion expandSystem(ValueSet.ConceptSetComponent set) {
+            Expansion result = new Expansion();
+            String system = set.getSystem();
+            Concepts concepts = getCodeSystem(system, set.getVersion());
+
+            if (set.hasConcept()) {
+                for (ValueSet.ConceptReferenceComponent concept : set.getConcept()) {
+                    String display = concept.hasDisplay() ? concept.getDisplay()
+                            : concepts != null ? concepts.display(concept.getCode()) : null;
+                    result.add(system, concept.getCode(), display);
+                }
+                return result;
+            }
+
+            if (concepts == null || !concepts.isComplete()) {
+                result.openSystems.add(system);
+                return result;
+            }
+
+            Set<String> codes = new HashSet<>(concepts.codes());
+            for (ValueSet.ConceptSetFilterComponent filter : set.getFilter()) {
+                Set<String> matched = filter(concepts, filter);
+                if (matched == null) {
+                    // Filtro que não sabemos avaliar: o sistema fica em aberto
+                    result.openSystems.add(system);
+                    return result;
+                }
+                codes.retainAll(matched);
+            }
+            for (String code : codes) {
+                result.add(system, code, concepts.display(code));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return códigos que satisfazem o filtro, ou null se o filtro não for suportado
+     */
+    private static Set<String> filter(Concepts concepts, ValueSet.ConceptSetFilterComponent filter) {
+        String property = filter.getProperty();
+        String value = filter.getValue();
+        if (!"concept".equals(property) && !"code".equals(property)) {
+            return null;
+        }
+        switch (filter.getOp()) {
+            case ISA:
+                return concepts.descendants(value, true);
+            case DESCENDENTOF:
+                return concepts.descendants(value, false);
+            case ISNOTA: {
+                Set<String> codes = new HashSet<>(concepts.codes());
+                codes.removeAll(concepts.descendants(value, true));
+                return codes;
+            }
+            case EQUAL:
+                return concepts.contains(value) ? Set.of(value) : Set.of();
+            case IN: {
+                Set<String> codes = new HashSet<>();
+                for (String code : value.split(",")) {
+                    if (concepts.contains(code.trim())) {
+                        codes.add(code.trim());
+                    }
+                }
+                return codes;
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Leitura adiada de um recurso (ex.: um arquivo dentro de um pacote do cache).
+     */
+    @FunctionalInterface
+    public interface Source {
+        Resource load() throws IOException;
+    }
+
+    /**
+     * Origens visíveis a um contexto de teste, em ordem de precedência.
+     */
+    public static final class Scope {
+        private final List<String> origins;
+        private final String id;
+
+        private Scope(List<String> origins) {
+            this.origins = List.copyOf(origins);
+            this.id = String.join("\n", origins);
+        }
+
+        public List<String> getOrigins() {
+            return origins;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Scope && id.equals(((Scope) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    /**
+     * CodeSystems e ValueSets de uma origem, indexados pela URL e pela URL com versão.
+     * Dentro da mesma origem, o primeiro recurso registrado para uma URL prevalece;
+     * suplementos e fragmentos sem conceitos são ignorados.
+     */
+    public static final class Library {
+        private final Map<String, Concepts> codeSystems = new HashMap<>();
+        private final Map<String, ValueSet> valueSets = new HashMap<>();
+        // Recursos conhecidos só pelo índice do pacote, lidos na primeira consulta
+        private final Map<String, Source> pendingCodeSystems = new HashMap<>();
+        private final Map<String, Source> pendingValueSets = new HashMap<>();
+
+        /**
+         * Registra um CodeSystem, um ValueSet ou os que estiverem em um Bundle.
+         */
+        public void add(Resource resource) {
+            if (resource instanceof CodeSystem) {
+                addCodeSystem((CodeSystem) resource);
+            } else if (resource instanceof ValueSet) {
+                addValueSet((ValueSet) resource);
+            } else if (resource instanceof Bundle) {
+                for (Bundle.BundleEntryComponent entry : ((Bundle) resource).getEntry()) {
+                    if (entry.getResource() != null) {
+                        add(entry.getResource());
+                    }
+                }
+            }
+        }
+
+        public void addCodeSystem(CodeSystem codeSystem) {
+            if (!codeSystem.hasUrl() || codeSystem.getContent() == CodeSystem.CodeSystemContentMode.SUPPLEMENT) {
+                return;
+            }
+            Concepts concepts = new Concepts(codeSystem);
+            codeSystems.putIfAbsent(codeSystem.getUrl(), concepts);
+            if (codeSystem.hasVersion()) {
+                codeSystems.putIfAbsent(codeSystem.getUrl() + "|" + codeSystem.getVersion(), concepts);
+            }
+        }
+
+        public void addValueSet(ValueSet valueSet) {
+            if (!valueSet.hasUrl()) {
+                return;
+            }
+            valueSets.putIfAbsent(valueSet.getUrl(), valueSet);
+            if (valueSet.hasVersion()) {
+                valueSets.putIfAbsent(valueSet.getUrl() + "|" + valueSet.getVersion(), valueSet);
+            }
+        }
+
+        /**
+         * Registra um CodeSystem ou ValueSet que só será lido do disco se for consultado.
+         * @param resourceType CodeSystem ou ValueSet; outros tipos são ignorados
+         */
+        public void addPending(String resourceType, String url, String version, Source source) {
+            Map<String, Source> pending = "CodeSystem".equals(resourceType) ? pendingCodeSystems
+                    : "ValueSet".equals(resourceType) ? pendingValueSets : null;
+            if (pending == null || url == null) {
+                return;
+            }
+            pending.putIfAbsent(url, source);
+            if (version != null) {
+                pending.putIfAbsent(url + "|" + version, source);
+            }
+        }
+
+        public boolean isEmpty() {
+            return codeSystems.isEmpty() && valueSets.isEmpty()
+                    && pendingCodeSystems.isEmpty() && pendingValueSets.isEmpty();
+        }
+
+        private Concepts codeSystem(String key) {
+            resolvePending(pendingCodeSystems, key);
+            return codeSystems.get(key);
+        }
+
+        private ValueSet valueSet(String key) {
+            resolvePending(pendingValueSets, key);
+            return valueSets.get(key);
+        }
+
+        private void codeSystemUrls(Set<String> urls) {
+            codeSystems.keySet().stream().filter(key -> key.indexOf('|') < 0).forEach(urls::add);
+            pendingCodeSystems.keySet().stream().filter(key -> key.indexOf('|') < 0).forEach(urls::add);
+        }
+
+        private void resolvePending(Map<String, Source> pending, String key) {
+            Source source = pending.get(key);
+            if (source == null) {
+                return;
+            }
+            pending.values().removeIf(candidate -> candidate == source);
+            try {
+                add(source.load());
+            } catch (IOException e) {
+                System.err.println("⚠️ Não foi possível ler " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Conceitos de um CodeSystem, com a hierarquia (aninhamento e propriedade {@code parent}).
+     */
+    public static class Concepts {
+        private final String url;
+        private final String version;
+        private final boolean complete;
+        private final Map<String, String> displays = new LinkedHashMap<>();
+        private final Map<String, List<String>> children = new HashMap<>();
+
+        private Concepts(CodeSystem codeSystem) {
+            this.url = codeSystem.getUrl();
+            this.version = codeSystem.getVersion();
+            this.complete = codeSystem.getContent() == CodeSystem.CodeSystemContentMode.COMPLETE;
+            for (CodeSystem.ConceptDefinitionComponent concept : codeSystem.getConcept()) {
+                add(concept, null);
+            }
+        }
+
+        private void add(CodeSystem.ConceptDefinitionComponent concept, String parent) {
+            displays.put(concept.getCode(), concept.getDisplay());
+            if (parent != null) {
+                children.computeIfAbsent(parent, k -> new ArrayList<>()).add(concept.getCode());
+            }
+            for (CodeSystem.ConceptPropertyComponent property : concept.getProperty()) {
+                if ("parent".equals(property.getCode()) && property.hasValueCodeType()) {
+                    children.computeIfAbsent(property.getValueCodeType().getValue(), k -> new ArrayList<>())
+                            .add(concept.getCode());
+                }
+            }
+            for (CodeSystem.ConceptDefinitionComponent child : concept.getConcept()) {
+                add(child, concept.getCode());
+            }
+        }
+
+        public boolean contains(String code) {
+            return displays.containsKey(code);
+        }
+
+        public String display(String code) {
+            return displays.get(code);
+        }
+
+        public Set<String> codes() {
+            return Collections.unmodifiableSet(displays.keySet());
+        }
+
+        /**
+         * @param includeSelf true para {@code is-a}, false para {@code descendent-of}
+         */
+        public Set<String> descendants(String code, boolean includeSelf) {
+            Set<String> result = new HashSet<>();
+            List<String> pending = new ArrayList<>(children.getOrDefault(code, List.of()));
+            if (includeSelf && contains(code)) {
+                result.add(code);
+            }
+            while (!pending.isEmpty()) {
+                String next = pending.remove(pending.size() - 1);
+                if (result.add(next)) {
+                    pending.addAll(children.getOrDefault(next, List.of()));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return false para CodeSystems de conteúdo parcial (fragment, example, not-present)
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Resultado da expansão de um ValueSet: os códigos por sistema e os sistemas em aberto.
+     */
+    public static class Expansion {
+        private final Map<String, Map<String, String>> members = new HashMap<>();
+        private final Set<String> openSystems = new HashSet<>();
+        private String error;
+
+        private void add(String system, String code, String display) {
+            members.computeIfAbsent(system, k -> new HashMap<>()).put(code, display);
+        }
+
+        private void addAll(Expansion other) {
+            other.members.forEach((system, codes) -> members.computeIfAbsent(system, k -> new HashMap<>()).putAll(codes));
+            openSystems.addAll(other.openSystems);
+            if (error == null) {
+                error = other.error;
+            }
+        }
+
+        private void removeAll(Expansion other) {
+            other.members.forEach((system, codes) -> {
+                Map<String, String> current = members.get(system);
+                if (current != null) {
+                    current.keySet().removeAll(codes.keySet());
+                }
+            });
+            // Exclusão que não pode ser enumerada: o que restou do sistema fica desconhecido
+            for (String system : other.openSystems) {
+                if (members.remove(system) != null || openSystems.contains(system)) {
+                    openSystems.add(system);
+                }
+            }
+            if (error == null && other.error != null) {
+                error = other.error;
+            }
+        }
+
+        private Expansion intersect(Expansion other) {
+            Expansion result = new Expansion();
+            members.forEach((system, codes) -> {
+                Map<String, String> otherCodes = other.members.get(system);
+                for (Map.Entry<String, String> code : codes.entrySet()) {
+                    if ((otherCodes != null && otherCodes.containsKey(code.getKey())) || other.openSystems.contains(system)) {
+                        result.add(system, code.getKey(), code.getValue());
+                    }
+                }
+            });
+            // Sistema em aberto dos dois lados continua em aberto
+            for (String system : openSystems) {
+                if (other.openSystems.contains(system)) {
+                    result.openSystems.add(system);
+                } else if (other.members.containsKey(system)) {
+                    other.members.get(system).forEach((code, display) -> result.add(system, code, display));
+                }
+            }
+            result.error = error != null ? error : other.error;
+            return result;
+        }
+
+        /**
+         * @return TRUE/FALSE, ou null quando o sistema não pode ser avaliado localmente
+         */
+        public Boolean contains(String system, String code) {
+            Map<String, String> codes = members.get(system);
+            if (codes != null && codes.containsKey(code)) {
+                return Boolean.TRUE;
+            }
+            if (openSystems.contains(system) || error != null) {
+                return null;
+            }
+            return Boolean.FALSE;
+        }
+
+        public String display(String system, String code) {
+            Map<String, String> codes = members.get(system);
+            return codes != null ? codes.get(code) : null;
+        }
+
+        /**
+         * @return todos os códigos, por sistema (vazio para sistemas em aberto)
+         */
+        public Map<String, Map<String, String>> getMembers() {
+            return members;
+        }
+
+        public Set<String> getOpenSystems() {
+            return openSystems;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public int size() {
+            return members.values().stream().mapToInt(Map::size).sum();
+        }
+    }
+}
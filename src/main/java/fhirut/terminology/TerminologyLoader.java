@@ -0,0 +1,181 @@
+package fhirut.terminology;
+
+import fhirut.model.TestContext;
+import fhirut.packages.PackageCache;
+import fhirut.packages.PackageIndex;
+import fhirut.packages.PackageSpec;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.formats.XmlParser;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Alimenta o {@link TerminologyIndex} com os CodeSystems e ValueSets dos IGs e dos
+ * recursos locais de cada contexto de teste, e monta o escopo do contexto.
+ *
+ * <p>Pacotes são lidos do {@link PackageCache}: o índice do pacote já traz tipo e URL
+ * de cada arquivo, então só o registro é feito aqui; o arquivo é mapeado e
+ * convertido apenas quando o recurso é consultado. Cada pacote (com suas
+ * dependências) é registrado uma única vez; um arquivo local é registrado de novo
+ * quando muda no disco, substituindo o conteúdo anterior.</p>
+ */
+public class TerminologyLoader {
+    private final TerminologyIndex index;
+    private final PackageCache packageCache;
+    // Pacote → ele e suas dependências já registradas, em ordem de precedência
+    private final Map<String, List<String>> packages = new HashMap<>();
+    // Caminho do arquivo local → data:tamanho da versão registrada
+    private final Map<String, String> loadedFiles = new HashMap<>();
+    private final Set<String> missing = new HashSet<>();
+    private boolean coreLoaded;
+
+    /**
+     * @param packageCache cache de pacotes de onde vêm os IGs (opcional)
+     */
+    public TerminologyLoader(TerminologyIndex index, PackageCache packageCache) {
+        this.index = index;
+        this.packageCache = packageCache;
+    }
+
+    /**
+     * Registra o pacote core do FHIR R4, se estiver no cache; ele entra no escopo de
+     * todos os contextos, com a menor precedência.
+     */
+    public synchronized void loadCore() {
+        if (packageCache != null && packageCache.getIndex(PackageCache.CORE_PACKAGE).isPresent()) {
+            coreLoaded = !loadPackage(PackageCache.CORE_PACKAGE).isEmpty();
+        } else if (missing.add(PackageCache.CORE_PACKAGE)) {
+            System.out.println("⚠️ " + PackageCache.CORE_PACKAGE + " não está no cache de pacotes; "
+                    + "terminologias do core ficam sem validação local (use 'fut packages prefetch')");
+        }
+    }
+
+    /**
+     * Registra os IGs e os recursos locais do contexto que ainda não estão no índice.
+     * @return escopo do contexto: recursos locais, IGs na ordem declarada e o core
+     */
+    public synchronized TerminologyIndex.Scope load(TestContext context) {
+        Set<String> origins = new LinkedHashSet<>();
+        if (context != null) {
+            if (context.getResources() != null) {
+                for (File file : context.getResources()) {
+                    loadFile(file, origins);
+                }
+            }
+            if (context.getIgs() != null) {
+                for (String ig : context.getIgs()) {
+                    File local = new File(ig);
+                    if (local.isDirectory()) {
+                        loadFile(local, origins);
+                    } else {
+                        origins.addAll(loadPackage(ig));
+                    }
+                }
+            }
+        }
+        if (coreLoaded) {
+            origins.addAll(loadPackage(PackageCache.CORE_PACKAGE));
+        }
+        return index.scope(origins);
+    }
+
+    private List<String> loadPackage(String spec) {
+        PackageSpec root = PackageSpec.parse(spec);
+        if (packageCache == null || root == null) {
+            return List.of();
+        }
+        List<String> known = packages.get(root.toString());
+        if (known != null) {
+            return known;
+        }
+        List<String> loaded = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(List.of(root.toString()));
+        while (!queue.isEmpty()) {
+            PackageSpec parsed = PackageSpec.parse(queue.poll());
+            if (parsed == null || !visited.add(parsed.toString())) {
+                continue;
+            }
+            String origin = parsed.toString();
+            PackageIndex packageIndex = packageCache.getIndex(origin).orElse(null);
+            if (packageIndex == null) {
+                if (missing.add(origin)) {
+                    System.out.println("⚠️ " + parsed + " não está no cache de pacotes; "
+                            + "suas terminologias ficam sem validação local");
+                }
+                continue;
+            }
+            if (!index.isRegistered(origin)) {
+                TerminologyIndex.Library library = new TerminologyIndex.Library();
+                for (PackageIndex.Entry entry : packageIndex.getFiles()) {
+                    String filename = entry.getFilename();
+                    library.addPending(entry.getResourceType(), entry.getUrl(), entry.getVersion(),
+                            () -> parse(packageCache.map(origin, filename), filename));
+                }
+                index.register(origin, library);
+            }
+            loaded.add(origin);
+            if (packageIndex.getDependencies() != null) {
+                queue.addAll(packageIndex.getDependencies());
+            }
+        }
+        packages.put(root.toString(), loaded);
+        return loaded;
+    }
+
+    private void loadFile(File file, Set<String> origins) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles((dir, name) -> name.endsWith(".json") || name.endsWith(".xml"));
+            if (children != null) {
+                // Ordem estável: a precedência entre arquivos não depende do sistema de arquivos
+                Arrays.sort(children);
+                for (File child : children) {
+                    loadFile(child, origins);
+                }
+            }
+            return;
+        }
+        if (!file.isFile()) {
+            return;
+        }
+        String origin = file.getAbsoluteFile().toPath().normalize().toString();
+        String stamp = file.lastModified() + ":" + file.length();
+        if (!stamp.equals(loadedFiles.get(origin))) {
+            TerminologyIndex.Library library = new TerminologyIndex.Library();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                library.add(file.getName().endsWith(".xml") ? new XmlParser().parse(in) : new JsonParser().parse(in));
+            } catch (Exception e) {
+                // Arquivos que não são recursos FHIR (ex.: package.json) não interessam aqui
+            }
+            index.register(origin, library);
+            loadedFiles.put(origin, stamp);
+        }
+        origins.add(origin);
+    }
+
+    private static Resource parse(MappedByteBuffer buffer, String filename) throws IOException {
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        try {
+            return filename.endsWith(".xml") ? new XmlParser().parse(content) : new JsonParser().parse(content);
+        } catch (Exception e) {
+            throw new IOException("Recurso inválido " + filename + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package fhirut.terminology;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.formats.XmlParser;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.PrimitiveType;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r4.model.TerminologyCapabilities;
+import org.hl7.fhir.r4.model.Type;
+import org.hl7.fhir.r4.model.UriType;
+import org.hl7.fhir.r4.model.ValueSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor de terminologia FHIR (R4) local, respondendo a partir de um
+ * {@link TerminologyIndex}, para o validador não depender de um servidor remoto
+ * (tx.fhir.org) para os códigos definidos nos IGs carregados.
+ *
+ * <p>Implementa o subconjunto usado pelo validador: {@code /metadata},
+ * {@code ValueSet/$validate-code}, {@code CodeSystem/$validate-code},
+ * {@code CodeSystem/$lookup}, {@code ValueSet/$expand} e lotes (Bundle batch).
+ * Códigos de sistemas que não podem ser avaliados localmente são respondidos como
+ * sistema desconhecido ({@code x-caused-by-unknown-system}), o que o validador trata
+ * como aviso, e não como erro. Escuta apenas na interface local.</p>
+ */
+public class TerminologyServer implements AutoCloseable {
+    private static final String FHIR_VERSION = "4.0.1";
+    private static final String CONTENT_TYPE = "application/fhir+json; charset=utf-8";
+
+    private final TerminologyIndex index;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong unknown = new AtomicLong();
+
+    /**
+     * @param port porta local; 0 escolhe uma porta livre
+     */
+    public TerminologyServer(TerminologyIndex index, int port) throws IOException {
+        this.index = index;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        // Validadores em paralelo consultam ao mesmo tempo; threads daemon não seguram a JVM
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fut-terminology");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return URL base a ser passada ao validador como servidor de terminologia
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return requisições atendidas e, delas, as respondidas como sistema desconhecido
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getUnknownCount() {
+        return unknown.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                String method = exchange.getRequestMethod();
+                Resource body = "POST".equals(method) ? parseBody(exchange) : null;
+                response = route(method, exchange.getRequestURI().getRawPath(),
+                        parseQuery(exchange.getRequestURI().getRawQuery()), body);
+            } catch (Exception e) {
+                response = error(400, OperationOutcome.IssueType.INVALID, e.getMessage());
+            }
+            byte[] content = new JsonParser().composeString(response.resource).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(response.status, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        }
+    }
+
+    private Response route(String method, String path, Map<String, String> query, Resource body) {
+        requests.incrementAndGet();
+        String operation = path.replaceAll("^/+|/+$", "");
+        // Alguns clientes acrescentam a versão do FHIR à URL base
+        if (operation.startsWith("r4/") || operation.equals("r4")) {
+            operation = operation.substring(2).replaceAll("^/+", "");
+        }
+
+        if (operation.equals("metadata")) {
+            return new Response(200, "terminology".equals(query.get("mode")) ? terminologyCapabilities() : capabilities());
+        }
+        if (operation.isEmpty() && body instanceof Bundle) {
+            return new Response(200, batch((Bundle) body));
+        }
+
+        Parameters parameters = body instanceof Parameters ? (Parameters) body : new Parameters();
+        query.forEach((name, value) -> parameters.addParameter().setName(name).setValue(new StringType(value)));
+        switch (operation) {
+            case "ValueSet/$validate-code":
+                return validateCode(parameters, true);
+            case "CodeSystem/$validate-code":
+                return validateCode(parameters, false);
+            case "CodeSystem/$lookup":
+                return lookup(parameters);
+            case "ValueSet/$expand":
+                return expand(parameters);
+            default:
+                return error(404, OperationOutcome.IssueType.NOTSUPPORTED,
+                        method + " " + path + " is not supported by the local terminology server");
+        }
+    }
+
+    private Bundle batch(Bundle request) {
+        Bundle response = new Bundle();
+        response.setType(Bundle.BundleType.BATCHRESPONSE);
+        for (Bundle.BundleEntryComponent entry : request.getEntry()) {
+            String url = entry.getRequest().getUrl() != null ? entry.getRequest().getUrl() : "";
+            int question = url.indexOf('?');
+            Response result = route(
+                    entry.getRequest().hasMethod() ? entry.getRequest().getMethod().toCode() : "POST",
+                    question >= 0 ? url.substring(0, question) : url,
+                    parseQuery(question >= 0 ? url.substring(question + 1) : null),
+                    entry.getResource());
+            response.addEntry()
+                    .setResource(result.resource)
+                    .getResponse().setStatus(result.status + (result.status == 200 ? " OK" : ""));
+        }
+        return response;
+    }
+
+    private Response validateCode(Parameters parameters, boolean valueSetScope) {
+        TerminologyIndex.View view = index.view(txResources(parameters));
+
+        ValueSet valueSet = null;
+        if (valueSetScope) {
+            valueSet = resource(parameters, "valueSet", ValueSet.class);
+            if (valueSet == null) {
+                String url = value(parameters, "url");
+                valueSet = view.getValueSet(url, value(parameters, "valueSetVersion"));
+                if (valueSet == null) {
+                    return error(404, OperationOutcome.IssueType.NOTFOUND,
+                            "ValueSet " + url + " is not known to the local terminology server");
+                }
+            }
+        }
+
+        List<Coding> codings = codings(parameters, valueSetScope ? null : value(parameters, "url"));
+        if (codings.isEmpty()) {
+            return error(400, OperationOutcome.IssueType.REQUIRED, "No code, coding or codeableConcept provided");
+        }
+
+        TerminologyIndex.Expansion expansion = valueSet != null ? view.expansion(valueSet) : null;
+        Parameters result = new Parameters();
+        List<String> messages = new ArrayList<>();
+        List<String> unknownSystems = new ArrayList<>();
+        boolean valid = false;
+        for (Coding coding : codings) {
+            String system = coding.getSystem();
+            if (system == null && expansion != null) {
+                system = inferSystem(expansion, coding.getCode());
+            }
+            TerminologyIndex.Concepts concepts = view.getCodeSystem(system, coding.getVersion());
+            Boolean member;
+            String display;
+            if (expansion != null) {
+                member = expansion.contains(system, coding.getCode());
+                display = expansion.display(system, coding.getCode());
+            } else {
+                member = concepts != null && concepts.isComplete() ? concepts.contains(coding.getCode()) : null;
+                display = concepts != null ? concepts.display(coding.getCode()) : null;
+            }
+            if (display == null && concepts != null) {
+                display = concepts.display(coding.getCode());
+            }
+
+            if (member == null) {
+                unknownSystems.add(system);
+                messages.add("A definition for CodeSystem '" + system + "' could not be found locally, "
+                        + "so the code cannot be validated");
+                continue;
+            }
+            if (!member) {
+                messages.add(valueSet != null
+                        ? "The provided code '" + system + "#" + coding.getCode() + "' was not found in the value set '"
+                                + valueSet.getUrl() + "'"
+                        : "Unknown code '" + coding.getCode() + "' in the CodeSystem '" + system + "'");
+                continue;
+            }
+            if (!valid) {
+                valid = true;
+                result.addParameter("code", new CodeType(coding.getCode()));
+                result.addParameter("system", new UriType(system));
+                if (display != null) {
+                    result.addParameter("display", new StringType(display));
+                }
+            }
+            if (coding.hasDisplay() && display != null && !display.equalsIgnoreCase(coding.getDisplay())) {
+                messages.add("Wrong Display Name '" + coding.getDisplay() + "' for " + system + "#" + coding.getCode()
+                        + ". Valid display is '" + display + "'");
+            }
+        }
+
+        result.getParameter().add(0, new Parameters.ParametersParameterComponent()
+                .setName("result").setValue(new BooleanType(valid)));
+        if (!messages.isEmpty()) {
+            result.addParameter("message", new StringType(String.join("; ", messages)));
+        }
+        if (!valid && !unknownSystems.isEmpty()) {
+            unknown.incrementAndGet();
+            unknownSystems.forEach(system -> result.addParameter("x-caused-by-unknown-system", new UriType(system)));
+        }
+        return new Response(200, result);
+    }
+
+    /**
+     * Códigos enviados sem sistema: o sistema é deduzido se o código existir em um só.
+     */
+    private static String inferSystem(TerminologyIndex.Expansion expansion, String code) {
+        String found = null;
+        for (Map.Entry<String, Map<String, String>> system : expansion.getMembers().entrySet()) {
+            if (system.getValue().containsKey(code)) {
+                if (found != null) {
+                    return null;
+                }
+                found = system.getKey();
+            }
+        }
+        return found;
+    }
+
+    private Response lookup(Parameters parameters) {
+        List<Coding> codings = codings(parameters, null);
+        Coding coding = codings.isEmpty() ? null : codings.get(0);
+        TerminologyIndex.Concepts concepts = coding != null
+                ? index.view(txResources(parameters)).getCodeSystem(coding.getSystem(), coding.getVersion()) : null;
+        if (concepts == null || !concepts.contains(coding.getCode())) {
+            return error(404, OperationOutcome.IssueType.NOTFOUND, coding == null
+                    ? "No code or coding provided"
+                    : "Code '" + coding.getCode() + "' not found in CodeSystem '" + coding.getSystem() + "'");
+        }
+        Parameters result = new Parameters();
+        result.addParameter("name", new StringType(concepts.getUrl()));
+        if (concepts.getVersion() != null) {
+            result.addParameter("version", new StringType(concepts.getVersion()));
+        }
+        if (concepts.display(coding.getCode()) != null) {
+            result.addParameter("display", new StringType(concepts.display(coding.getCode())));
+        }
+        return new Response(200, result);
+    }
+
+    private Response expand(Parameters parameters) {
+        TerminologyIndex.View view = index.view(txResources(parameters));
+        ValueSet valueSet = resource(parameters, "valueSet", ValueSet.class);
+        if (valueSet == null) {
+            valueSet = view.getValueSet(value(parameters, "url"), value(parameters, "valueSetVersion"));
+        }
+        if (valueSet == null) {
+            return error(404, OperationOutcome.IssueType.NOTFOUND,
+                    "ValueSet " + value(parameters, "url") + " is not known to the local terminology server");
+        }
+        TerminologyIndex.Expansion expansion = view.expansion(valueSet);
+        if (expansion.getError() != null || !expansion.getOpenSystems().isEmpty()) {
+            return error(422, OperationOutcome.IssueType.TOOCOSTLY, "ValueSet " + valueSet.getUrl()
+                    + " cannot be expanded locally" + (expansion.getOpenSystems().isEmpty()
+                    ? ": " + expansion.getError() : " (includes " + expansion.getOpenSystems() + ")"));
+        }
+
+        int offset = intValue(parameters, "offset", 0);
+        int count = intValue(parameters, "count", Integer.MAX_VALUE);
+        ValueSet expanded = new ValueSet();
+        expanded.setUrl(valueSet.getUrl());
+        expanded.setVersion(valueSet.getVersion());
+        expanded.setName(valueSet.getName());
+        expanded.setStatus(valueSet.getStatus());
+        ValueSet.ValueSetExpansionComponent component = expanded.getExpansion();
+        component.setTimestamp(new Date());
+        component.setTotal(expansion.size());
+        component.setOffset(offset);
+        int position = 0;
+        // Ordem estável entre chamadas, para a paginação fazer sentido
+        for (Map.Entry<String, Map<String, String>> system : new TreeMap<>(expansion.getMembers()).entrySet()) {
+            for (Map.Entry<String, String> code : new TreeMap<>(system.getValue()).entrySet()) {
+                if (position++ < offset || component.getContains().size() >= count) {
+                    continue;
+                }
+                component.addContains()
+                        .setSystem(system.getKey())
+                        .setCode(code.getKey())
+                        .setDisplay(code.getValue());
+            }
+        }
+        return new Response(200, expanded);
+    }
+
+    /**
+     * CodeSystems e ValueSets enviados junto da requisição ({@code tx-resource}); valem
+     * só para ela e não alteram o índice.
+     */
+    private static TerminologyIndex.Library txResources(Parameters parameters) {
+        TerminologyIndex.Library library = new TerminologyIndex.Library();
+        for (Parameters.ParametersParameterComponent parameter : parameters.getParameter()) {
+            if ("tx-resource".equals(parameter.getName())
+                    && (parameter.getResource() instanceof CodeSystem || parameter.getResource() instanceof ValueSet)) {
+                library.add(parameter.getResource());
+            }
+        }
+        return library;
+    }
+
+    private static List<Coding> codings(Parameters parameters, String defaultSystem) {
+        List<Coding> codings = new ArrayList<>();
+        for (Parameters.ParametersParameterComponent parameter : parameters.getParameter()) {
+            if ("coding".equals(parameter.getName()) && parameter.getValue() instanceof Coding) {
+                codings.add((Coding) parameter.getValue());
+            } else if ("codeableConcept".equals(parameter.getName()) && parameter.getValue() instanceof CodeableConcept) {
+                codings.addAll(((CodeableConcept) parameter.getValue()).getCoding());
+            }
+        }
+        String code = value(parameters, "code");
+        if (code != null) {
+            String system = value(parameters, "system");
+            codings.add(new Coding(system != null ? system : defaultSystem, code, value(parameters, "display"))
+                    .setVersion(value(parameters, "systemVersion") != null
+                            ? value(parameters, "systemVersion") : value(parameters, "version")));
+        }
+        return codings;
+    }
+
+    private static String value(Parameters parameters, String name) {
+        for (Parameters.ParametersParameterComponent parameter : parameters.getParameter()) {
+            Type value = parameter.getValue();
+            if (name.equals(parameter.getName()) && value instanceof PrimitiveType) {
+                return ((PrimitiveType<?>) value).getValueAsString();
+            }
+        }
+        return null;
+    }
+
+    private static int intValue(Parameters parameters, String name, int defaultValue) {
+        String value = value(parameters, name);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static <T extends Resource> T resource(Parameters parameters, String name, Class<T> type) {
+        for (Parameters.ParametersParameterComponent parameter : parameters.getParameter()) {
+            if (name.equals(parameter.getName()) && type.isInstance(parameter.getResource())) {
+                return type.cast(parameter.getResource());
+            }
+        }
+        return null;
+    }
+
+    private static CapabilityStatement capabilities() {
+        CapabilityStatement statement = new CapabilityStatement();
+        statement.setStatus(Enumerations.PublicationStatus.ACTIVE);
+        statement.setDate(new Date());
+        statement.setKind(CapabilityStatement.CapabilityStatementKind.INSTANCE);
+        statement.setFhirVersion(Enumerations.FHIRVersion.fromCode(FHIR_VERSION));
+        statement.addFormat("json");
+        statement.getSoftware().setName("fut local terminology");
+        statement.addRest().setMode(CapabilityStatement.RestfulCapabilityMode.SERVER);
+        return statement;
+    }
+
+    private TerminologyCapabilities terminologyCapabilities() {
+        TerminologyCapabilities capabilities = new TerminologyCapabilities();
+        capabilities.setStatus(Enumerations.PublicationStatus.ACTIVE);
+        capabilities.setDate(new Date());
+        capabilities.setKind(TerminologyCapabilities.CapabilityStatementKind.INSTANCE);
+        for (String url : index.view(null).getCodeSystemUrls()) {
+            capabilities.addCodeSystem().setUri(url);
+        }
+        return capabilities;
+    }
+
+    private static Response error(int status, OperationOutcome.IssueType type, String message) {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+                .setSeverity(OperationOutcome.IssueSeverity.ERROR)
+                .setCode(type)
+                .setDiagnostics(message);
+        return new Response(status, outcome);
+    }
+
+    private static Resource parseBody(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] content = in.readAllBytes();
+            if (content.length == 0) {
+                return null;
+            }
+            return contentType != null && contentType.contains("xml")
+                    ? new XmlParser().parse(content)
+                    : new JsonParser().parse(content);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> values = new TreeMap<>();
+        if (query == null || query.isEmpty()) {
+            return values;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                values.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        // Parâmetros de formato não são parâmetros da operação
+        values.remove("_format");
+        return values;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static final class Response {
+        private final int status;
+        private final Resource resource;
+
+        private Response(int status, Resource resource) {
+            this.status = status;
+            this.resource = resource;
+        }
+    }
+}
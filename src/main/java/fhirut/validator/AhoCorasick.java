@@ -0,0 +1,93 @@
+package fhirut.validator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.IntConsumer;
+
+/**
+ * Autômato de Aho-Corasick: encontra todas as ocorrências de vários padrões em
+ * uma única leitura do texto, em vez de um {@code contains} por padrão.
+ */
+final class AhoCorasick {
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failure = new ArrayList<>();
+    // Padrões que terminam no nó; o sufixo de saída encadeia os nós com padrões mais curtos
+    private final List<List<Integer>> outputs = new ArrayList<>();
+    private final List<Integer> outputLink = new ArrayList<>();
+
+    AhoCorasick(List<String> patterns) {
+        newNode();
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            if (pattern.isEmpty()) {
+                // O padrão vazio está contido em qualquer texto
+                outputs.get(0).add(i);
+                continue;
+            }
+            int node = 0;
+            for (int c = 0; c < pattern.length(); c++) {
+                char ch = pattern.charAt(c);
+                Integer next = transitions.get(node).get(ch);
+                if (next == null) {
+                    next = newNode();
+                    transitions.get(node).put(ch, next);
+                }
+                node = next;
+            }
+            outputs.get(node).add(i);
+        }
+        buildLinks();
+    }
+
+    /**
+     * Percorre o texto uma vez, chamando {@code onMatch} com o índice de cada padrão
+     * encontrado (possivelmente mais de uma vez por padrão).
+     */
+    void search(String text, IntConsumer onMatch) {
+        outputs.get(0).forEach(onMatch::accept);
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            Integer next;
+            while ((next = transitions.get(node).get(ch)) == null && node != 0) {
+                node = failure.get(node);
+            }
+            node = next != null ? next : 0;
+
+            for (int out = node; out > 0; out = outputLink.get(out)) {
+                outputs.get(out).forEach(onMatch::accept);
+            }
+        }
+    }
+
+    private int newNode() {
+        transitions.add(new HashMap<>());
+        failure.add(0);
+        outputs.add(new ArrayList<>());
+        outputLink.add(0);
+        return transitions.size() - 1;
+    }
+
+    private void buildLinks() {
+        Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(node).entrySet()) {
+                int child = edge.getValue();
+                int fallback = failure.get(node);
+                Integer target;
+                while ((target = transitions.get(fallback).get(edge.getKey())) == null && fallback != 0) {
+                    fallback = failure.get(fallback);
+                }
+                int link = target != null && target != child ? target : 0;
+                failure.set(child, link);
+                outputLink.set(child, outputs.get(link).isEmpty() ? outputLink.get(link) : link);
+                queue.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.exceptions.ValidationTimeoutException;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestContext;
+import fhirut.model.TestDefinition;
+import fhirut.packages.PackageCache;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.io.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executa o validator_cli.jar em um processo separado para cada teste.
+ * É o caminho original do fut e continua disponível como alternativa
+ * quando o validador residente não pode ser carregado.
+ */
+public class CliValidationEngine implements ValidationEngine {
+    private static final String FHIR_VERSION = "4.0.1";
+    // Usado quando quem chama não informa um tempo limite
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    // Espera pelo fim do log depois que o processo terminou
+    private static final long LOG_GRACE_MILLIS = 1000;
+    private static final String OUTCOME_FILE_EXTENSION =
+            "http://hl7.org/fhir/StructureDefinition/operationoutcome-file";
+
+    private final File validatorJar;
+    private final PackageCache packageCache;
+    private final String txServer;
+    private final PhaseTimer timer = new PhaseTimer();
+    private final ConformanceResourceRegistry conformanceResources = new ConformanceResourceRegistry(timer);
+
+    public CliValidationEngine(File validatorJar) {
+        this(validatorJar, null);
+    }
+
+    /**
+     * @param validatorJar caminho do validator_cli.jar
+     * @param packageCache cache de pacotes usado para passar IGs como tarballs locais (opcional)
+     */
+    public CliValidationEngine(File validatorJar, PackageCache packageCache) {
+        this(validatorJar, packageCache, InProcessValidationEngine.DEFAULT_TX_SERVER);
+    }
+
+    /**
+     * @param txServer servidor de terminologia, ou "n/a" para validar sem servidor
+     */
+    public CliValidationEngine(File validatorJar, PackageCache packageCache, String txServer) {
+        this.validatorJar = validatorJar;
+        this.packageCache = packageCache;
+        this.txServer = txServer;
+    }
+
+    @Override
+    public String getName() {
+        return "cli";
+    }
+
+    @Override
+    public String getFingerprint() {
+        // O servidor padrão fica de fora, para não invalidar resultados já em cache
+        return isDefaultTxServer() ? ValidatorFingerprint.of(validatorJar)
+                : ValidatorFingerprint.of(validatorJar) + "|tx=" + txServer;
+    }
+
+    private boolean isDefaultTxServer() {
+        return txServer == null || InProcessValidationEngine.DEFAULT_TX_SERVER.equals(txServer);
+    }
+
+    @Override
+    public boolean supportsTimeout() {
+        return true;
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition testDefinition) throws FhirValidationException {
+        return validate(testDefinition, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition testDefinition, Duration timeout) throws FhirValidationException {
+        // Verifica se o validador existe
+        if (!validatorJar.exists()) {
+            throw new FhirValidationException(
+                    "Validator_cli.jar não encontrado em: " + validatorJar.getAbsolutePath(),
+                    "Por favor, baixe o validator_cli.jar da página oficial da HL7 e coloque na pasta lib/",
+                    testDefinition.getTestId()
+            );
+        }
+
+        List<String> command = buildCommand(testDefinition.getContext(), List.of(testDefinition.getInstancePath()));
+        System.out.println("Executando comando: " + String.join(" ", command));
+        Resource output = runValidator(command, timeout, testDefinition.getTestId());
+
+        OperationOutcome outcome = splitOutcomes(List.of(testDefinition), output).get(testDefinition);
+        if (outcome == null) {
+            throw new FhirValidationException(
+                    "Validador não retornou OperationOutcome para a instância: " + testDefinition.getInstancePath(),
+                    null,
+                    testDefinition.getTestId()
+            );
+        }
+        return outcome;
+    }
+
+    /**
+     * Valida todas as instâncias do lote em uma única execução do validator_cli.jar,
+     * que carrega os IGs uma vez só. O resultado é gravado com {@code -output} em um
+     * Bundle com um OperationOutcome por arquivo, identificado pela extensão
+     * operationoutcome-file.
+     */
+    @Override
+    public Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions)
+            throws FhirValidationException {
+        return validateBatch(definitions, DEFAULT_TIMEOUT.multipliedBy(definitions.size()));
+    }
+
+    @Override
+    public Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions, Duration timeout)
+            throws FhirValidationException {
+        if (definitions.size() == 1) {
+            return Map.of(definitions.get(0), validate(definitions.get(0), timeout));
+        }
+
+        String batchId = definitions.get(0).getTestId() + " (+" + (definitions.size() - 1) + ")";
+        if (!validatorJar.exists()) {
+            throw new FhirValidationException(
+                    "Validator_cli.jar não encontrado em: " + validatorJar.getAbsolutePath(),
+                    "Por favor, baixe o validator_cli.jar da página oficial da HL7 e coloque na pasta lib/",
+                    batchId
+            );
+        }
+
+        // Testes diferentes podem apontar para a mesma instância: cada arquivo é validado uma vez
+        Map<String, File> instances = new LinkedHashMap<>();
+        definitions.forEach(definition -> instances.putIfAbsent(
+                normalize(definition.getInstancePath().getAbsolutePath()), definition.getInstancePath()));
+        List<String> command = buildCommand(definitions.get(0).getContext(), new ArrayList<>(instances.values()));
+
+        System.out.println("Executando lote de " + instances.size() + " instâncias: " + String.join(" ", command));
+        return splitOutcomes(definitions, runValidator(command, timeout, batchId));
+    }
+
+    /**
+     * Executa o validador pedindo que o resultado seja gravado com {@code -output} em
+     * um arquivo próprio, lido direto pelo parser. Stdout e stderr ficam só como log:
+     * apenas as últimas linhas são guardadas, para compor a mensagem de erro.
+     */
+    private Resource runValidator(List<String> command, Duration timeout, String testId)
+            throws FhirValidationException {
+        File outputFile = null;
+        try {
+            outputFile = File.createTempFile("fut-outcome-", ".json");
+
+            Map<String, String> env = new HashMap<>(System.getenv());
+            env.put("JAVA_TOOL_OPTIONS", "-Dfile.encoding=UTF-8");
+
+            List<String> fullCommand = new ArrayList<>(command);
+            fullCommand.add("-output");
+            fullCommand.add(outputFile.getAbsolutePath());
+            long start = System.nanoTime();
+            ProcessResult result = executeCommand(fullCommand, env, timeout);
+            timer.since("process", start);
+
+            // O validador retorna código de erro quando encontra erros de validação;
+            // o que importa é ter produzido o arquivo de saída
+            if (outputFile.length() == 0) {
+                throw new FhirValidationException(
+                        "Validador não produziu resultado (código " + result.getExitCode() + ")",
+                        result.getOutput(),
+                        testId
+                );
+            }
+            start = System.nanoTime();
+            Resource output = parseOutput(outputFile, testId);
+            timer.since("outcome_parse", start);
+            return output;
+
+        } catch (TimeoutException e) {
+            throw new ValidationTimeoutException(e.getMessage(), timeout, testId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FhirValidationException("Validação interrompida", null, testId);
+        } catch (IOException e) {
+            throw new FhirValidationException(
+                    "Erro ao executar validador: " + e.getMessage(),
+                    "Verifique se o Java está instalado e acessível no PATH",
+                    testId
+            );
+        } finally {
+            if (outputFile != null) {
+                outputFile.delete();
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Long> getTimings() {
+        return timer.snapshot();
+    }
+
+    @Override
+    public void close() {
+        conformanceResources.close();
+    }
+
+    private Resource parseOutput(File outputFile, String batchId) throws FhirValidationException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(outputFile))) {
+            return new JsonParser().parse(in);
+        } catch (Exception e) {
+            throw new FhirValidationException(
+                    "Erro ao processar saída do validador: " + e.getMessage(),
+                    null,
+                    batchId
+            );
+        }
+    }
+
+    /**
+     * Associa cada OperationOutcome do Bundle à definição cuja instância o gerou.
+     */
+    private Map<TestDefinition, OperationOutcome> splitOutcomes(List<TestDefinition> definitions, Resource output) {
+        Map<String, List<TestDefinition>> byPath = new LinkedHashMap<>();
+        definitions.forEach(definition -> byPath
+                .computeIfAbsent(normalize(definition.getInstancePath().getAbsolutePath()), k -> new ArrayList<>())
+                .add(definition));
+        List<List<TestDefinition>> inOrder = new ArrayList<>(byPath.values());
+
+        Map<TestDefinition, OperationOutcome> outcomes = new LinkedHashMap<>();
+        if (output instanceof OperationOutcome) {
+            if (inOrder.size() == 1) {
+                inOrder.get(0).forEach(definition -> outcomes.put(definition, (OperationOutcome) output));
+            }
+            return outcomes;
+        }
+        if (!(output instanceof Bundle)) {
+            return outcomes;
+        }
+
+        List<Bundle.BundleEntryComponent> entries = ((Bundle) output).getEntry();
+        for (int i = 0; i < entries.size(); i++) {
+            if (!(entries.get(i).getResource() instanceof OperationOutcome)) {
+                continue;
+            }
+            OperationOutcome outcome = (OperationOutcome) entries.get(i).getResource();
+            Extension file = outcome.getExtensionByUrl(OUTCOME_FILE_EXTENSION);
+            List<TestDefinition> matched = file != null && file.getValue() != null
+                    ? byPath.get(normalize(file.getValue().primitiveValue()))
+                    : null;
+            // Sem a extensão, o validador mantém a ordem dos arquivos da linha de comando
+            if (matched == null && file == null && entries.size() == inOrder.size()) {
+                matched = inOrder.get(i);
+            }
+            if (matched != null) {
+                matched.forEach(definition -> outcomes.put(definition, outcome));
+            }
+        }
+        return outcomes;
+    }
+
+    private static String normalize(String path) {
+        return new File(path).getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private List<String> buildCommand(TestContext context, List<File> instances) throws FhirValidationException {
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.add("-Dfile.encoding=UTF-8");
+        command.add("-jar");
+        command.add(validatorJar.getPath());
+        command.add("-version");
+        command.add(FHIR_VERSION);
+        if (!isDefaultTxServer()) {
+            command.add("-tx");
+            command.add(txServer);
+        }
+
+        // Adiciona parâmetros de contexto; os recursos locais entram como um IG em diretório
+        if (context != null) {
+            for (String ig : conformanceResources.igsFor(context)) {
+                command.add("-ig");
+                command.add(packageCache != null ? packageCache.resolveIg(ig) : ig);
+            }
+
+            if (context.getProfiles() != null) {
+                for (String profile : context.getProfiles()) {
+                    command.add("-profile");
+                    command.add(profile);
+                }
+            }
+        }
+
+        // Adiciona os arquivos de instância
+        for (File instance : instances) {
+            command.add(instance.getAbsolutePath());
+        }
+
+        return command;
+    }
+
+    /**
+     * Executa o processo com o log consumido em paralelo, de modo que o tempo limite vale
+     * mesmo se o processo (ou um filho dele) travar com o log aberto. No tempo limite, ou
+     * se a thread for interrompida, o processo e todos os seus descendentes são encerrados.
+     */
+    private ProcessResult executeCommand(List<String> command, Map<String, String> env, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().putAll(env);
+        builder.redirectErrorStream(true); // Stdout e stderr formam um único log
+
+        Process process = builder.start();
+
+        // Consome o log enquanto o processo executa, para ele não bloquear com o pipe cheio
+        LogTail log = new LogTail();
+        Thread logReader = log.drainAsync(process.getInputStream());
+
+        try {
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                ProcessTree.destroy(process);
+                throw new TimeoutException("Validador excedeu o tempo limite de " + timeout.toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            ProcessTree.destroy(process);
+            throw e;
+        }
+
+        // Um neto que herdou o pipe pode mantê-lo aberto: o log é o que foi lido até aqui
+        logReader.join(LOG_GRACE_MILLIS);
+        if (logReader.isAlive()) {
+            process.getInputStream().close();
+        }
+        return new ProcessResult(log.toString(), process.exitValue());
+    }
+}
@@ -0,0 +1,244 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestContext;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.formats.XmlParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.MetadataResource;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Recursos de conformidade locais ({@code context.resources}: StructureDefinitions,
+ * ValueSets, CodeSystems...) indexados uma única vez e compartilhados entre os testes.
+ *
+ * <p>Cada arquivo é lido uma vez (e de novo só se mudar); Bundles são desmembrados.
+ * Para cada conjunto distinto de arquivos é montado, também uma única vez, um
+ * diretório temporário com os recursos sem repetição de URL canônica e versão, que
+ * o validador carrega como mais um IG. Testes com os mesmos recursos recebem o mesmo
+ * diretório e, portanto, o mesmo contexto já carregado no validador.</p>
+ *
+ * <p>Quando um arquivo do conjunto muda, o diretório montado para a versão anterior é
+ * apagado e informado a quem o carregou (ex.: o validador residente descarta o
+ * contexto), para que o servidor residente e o modo {@code --watch} não acumulem um
+ * diretório e um contexto por edição.</p>
+ */
+public class ConformanceResourceRegistry implements AutoCloseable {
+    private final PhaseTimer timer;
+    // Caminho normalizado → recursos lidos do arquivo, com a versão do arquivo que os gerou
+    private final Map<String, IndexedFile> files = new HashMap<>();
+    // Conjunto de arquivos → diretório montado para a versão atual dos arquivos
+    private final Map<String, Built> directories = new HashMap<>();
+    private final Consumer<File> onSuperseded;
+
+    public ConformanceResourceRegistry(PhaseTimer timer) {
+        this(timer, directory -> { });
+    }
+
+    /**
+     * @param onSuperseded chamado com o diretório substituído depois que um arquivo do conjunto mudou
+     */
+    public ConformanceResourceRegistry(PhaseTimer timer, Consumer<File> onSuperseded) {
+        this.timer = timer;
+        this.onSuperseded = onSuperseded;
+    }
+
+    /**
+     * IGs do contexto acrescidos, se houver recursos locais, do diretório que os contém.
+     */
+    public List<String> igsFor(TestContext context) throws FhirValidationException {
+        List<String> igs = new ArrayList<>();
+        if (context == null) {
+            return igs;
+        }
+        if (context.getIgs() != null) {
+            igs.addAll(context.getIgs());
+        }
+        if (context.getResources() != null && !context.getResources().isEmpty()) {
+            igs.add(directoryFor(context.getResources()).getAbsolutePath());
+        }
+        return igs;
+    }
+
+    /**
+     * @return diretório com os recursos dos arquivos, deduplicados por URL canônica e versão
+     */
+    public synchronized File directoryFor(List<File> resourceFiles) throws FhirValidationException {
+        TreeSet<String> paths = new TreeSet<>();
+        resourceFiles.forEach(file -> paths.add(normalize(file)));
+
+        String key = String.join("\n", paths);
+        StringBuilder version = new StringBuilder();
+        for (String path : paths) {
+            File file = new File(path);
+            version.append(file.lastModified()).append(':').append(file.length()).append('\n');
+        }
+        Built built = directories.get(key);
+        if (built != null && built.version.equals(version.toString())) {
+            return built.directory;
+        }
+
+        long start = System.nanoTime();
+        Map<String, Entry> unique = new LinkedHashMap<>();
+        for (String path : paths) {
+            for (Entry entry : indexed(new File(path)).entries) {
+                Entry previous = unique.putIfAbsent(entry.key, entry);
+                if (previous != null && !previous.json.equals(entry.json)) {
+                    System.out.println("⚠️ Recurso " + entry.key + " definido em " + previous.source + " e "
+                            + entry.source + "; usando o primeiro");
+                }
+            }
+        }
+        File directory = write(unique.values());
+        directories.put(key, new Built(version.toString(), directory));
+        if (built != null) {
+            delete(built.directory);
+            onSuperseded.accept(built.directory);
+        }
+        timer.since("resource_index", start);
+        System.out.println("📦 " + unique.size() + " recurso(s) de conformidade local(is) indexado(s) de "
+                + paths.size() + " arquivo(s)");
+        return directory;
+    }
+
+    private IndexedFile indexed(File file) throws FhirValidationException {
+        String path = normalize(file);
+        IndexedFile indexed = files.get(path);
+        if (indexed != null && indexed.lastModified == file.lastModified() && indexed.length == file.length()) {
+            return indexed;
+        }
+
+        indexed = new IndexedFile(file.lastModified(), file.length());
+        Resource resource = parse(file);
+        List<Resource> resources = new ArrayList<>();
+        if (resource instanceof Bundle) {
+            for (Bundle.BundleEntryComponent component : ((Bundle) resource).getEntry()) {
+                if (component.getResource() != null) {
+                    resources.add(component.getResource());
+                }
+            }
+        } else {
+            resources.add(resource);
+        }
+
+        JsonParser composer = new JsonParser();
+        for (Resource item : resources) {
+            try {
+                indexed.entries.add(new Entry(keyOf(item), composer.composeString(item), file.getPath()));
+            } catch (IOException e) {
+                throw new FhirValidationException("Não foi possível serializar recurso de " + file + ": " + e.getMessage(), e);
+            }
+        }
+        files.put(path, indexed);
+        return indexed;
+    }
+
+    private static Resource parse(File file) throws FhirValidationException {
+        if (!file.isFile()) {
+            throw new FhirValidationException("Recurso de contexto não encontrado: " + file.getAbsolutePath());
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            return file.getName().endsWith(".xml") ? new XmlParser().parse(in) : new JsonParser().parse(in);
+        } catch (Exception e) {
+            throw new FhirValidationException("Recurso de contexto inválido " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * URL canônica e versão dos recursos de conformidade; tipo e id dos demais.
+     */
+    private static String keyOf(Resource resource) {
+        if (resource instanceof MetadataResource && ((MetadataResource) resource).hasUrl()) {
+            MetadataResource metadata = (MetadataResource) resource;
+            return metadata.getUrl() + "|" + (metadata.hasVersion() ? metadata.getVersion() : "");
+        }
+        return resource.fhirType() + "/" + (resource.hasId() ? resource.getIdElement().getIdPart() : "");
+    }
+
+    private static File write(Iterable<Entry> entries) throws FhirValidationException {
+        try {
+            Path directory = Files.createTempDirectory("fut-resources-");
+            int index = 0;
+            for (Entry entry : entries) {
+                Files.writeString(directory.resolve(String.format("resource-%04d.json", ++index)),
+                        entry.json, StandardCharsets.UTF_8);
+            }
+            return directory.toFile();
+        } catch (IOException e) {
+            throw new FhirValidationException("Não foi possível preparar os recursos de contexto: " + e.getMessage(), e);
+        }
+    }
+
+    private static String normalize(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    /**
+     * Remove os diretórios temporários montados.
+     */
+    @Override
+    public synchronized void close() {
+        directories.values().forEach(built -> delete(built.directory));
+        directories.clear();
+        files.clear();
+    }
+
+    private static void delete(File directory) {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // Diretório temporário: o sistema limpa depois
+        }
+    }
+
+    private static final class Built {
+        private final String version;
+        private final File directory;
+
+        private Built(String version, File directory) {
+            this.version = version;
+            this.directory = directory;
+        }
+    }
+
+    private static final class IndexedFile {
+        private final long lastModified;
+        private final long length;
+        private final List<Entry> entries = new ArrayList<>();
+
+        private IndexedFile(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String json;
+        private final String source;
+
+        private Entry(String key, String json, String source) {
+            this.key = key;
+            this.json = json;
+            this.source = source;
+        }
+    }
+}
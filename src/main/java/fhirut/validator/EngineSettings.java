@@ -0,0 +1,118 @@
+package fhirut.validator;
+
+import fhirut.packages.PackageCache;
+
+import java.io.File;
+
+/**
+ * Parâmetros usados por {@link ValidationEngineFactory} para montar o mecanismo de validação.
+ */
+public class EngineSettings {
+    private EngineType type = EngineType.AUTO;
+    private File validatorJar = new File(ValidationEngineFactory.DEFAULT_VALIDATOR_JAR);
+    private String txServer = InProcessValidationEngine.DEFAULT_TX_SERVER;
+    private int parallelism = 1;
+    private int workers = 1;
+    private int workerMaxJobs = 500;
+    private double workerMaxHeapRatio = 0.85;
+    private String workerHeap;
+    private PackageCache packageCache;
+
+    /**
+     * @return cópia independente, para variar um parâmetro sem alterar o original
+     */
+    public EngineSettings copy() {
+        EngineSettings copy = new EngineSettings();
+        copy.type = type;
+        copy.validatorJar = validatorJar;
+        copy.txServer = txServer;
+        copy.parallelism = parallelism;
+        copy.workers = workers;
+        copy.workerMaxJobs = workerMaxJobs;
+        copy.workerMaxHeapRatio = workerMaxHeapRatio;
+        copy.workerHeap = workerHeap;
+        copy.packageCache = packageCache;
+        return copy;
+    }
+
+    // Getters e Setters
+
+    public EngineType getType() {
+        return type;
+    }
+
+    public void setType(EngineType type) {
+        this.type = type;
+    }
+
+    public File getValidatorJar() {
+        return validatorJar;
+    }
+
+    public void setValidatorJar(File validatorJar) {
+        this.validatorJar = validatorJar;
+    }
+
+    /**
+     * @return SHA-256 do validator_cli.jar, ou um marcador se ele não existir
+     */
+    public String getValidatorFingerprint() {
+        return ValidatorFingerprint.of(validatorJar);
+    }
+
+    public String getTxServer() {
+        return txServer;
+    }
+
+    public void setTxServer(String txServer) {
+        this.txServer = txServer;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getWorkerMaxJobs() {
+        return workerMaxJobs;
+    }
+
+    public void setWorkerMaxJobs(int workerMaxJobs) {
+        this.workerMaxJobs = workerMaxJobs;
+    }
+
+    public double getWorkerMaxHeapRatio() {
+        return workerMaxHeapRatio;
+    }
+
+    public void setWorkerMaxHeapRatio(double workerMaxHeapRatio) {
+        this.workerMaxHeapRatio = workerMaxHeapRatio;
+    }
+
+    public String getWorkerHeap() {
+        return workerHeap;
+    }
+
+    public void setWorkerHeap(String workerHeap) {
+        this.workerHeap = workerHeap;
+    }
+
+    public PackageCache getPackageCache() {
+        return packageCache;
+    }
+
+    public void setPackageCache(PackageCache packageCache) {
+        this.packageCache = packageCache;
+    }
+}
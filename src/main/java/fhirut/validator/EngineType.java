@@ -0,0 +1,15 @@
+package fhirut.validator;
+
+/**
+ * Modos de validação disponíveis na linha de comando.
+ */
+public enum EngineType {
+    /** Tenta o validador residente e recorre ao CLI se não for possível carregá-lo. */
+    AUTO,
+    /** Validador HL7 carregado uma única vez dentro da JVM do fut. */
+    INPROCESS,
+    /** Pool de processos validadores de longa duração, alimentados via stdin/stdout. */
+    POOL,
+    /** Um processo "java -jar validator_cli.jar" por teste. */
+    CLI
+}
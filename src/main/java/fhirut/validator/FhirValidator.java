@@ -1,155 +1,212 @@
 package fhirut.validator;
 
 import fhirut.exceptions.FhirValidationException;
+import fhirut.exceptions.ValidationTimeoutException;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.PhaseTimer;
 import fhirut.model.*;
 import org.hl7.fhir.r4.model.*;
-import org.hl7.fhir.r4.formats.JsonParser;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FhirValidator {
-    private static final String VALIDATOR_JAR = "lib/validator_cli.jar";
-    private static final String FHIR_VERSION = "4.0.1";
-    private static final int TIMEOUT_SECONDS = 30;
+    private final ValidationEngine engine;
+    private final InvariantEvaluator invariantEvaluator = new InvariantEvaluator();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private MetricsRegistry.Histogram validationLatency;
+    private MetricsRegistry.Counter instanceBytes;
+    private MetricsRegistry.Counter timeouts;
+    // Executa as validações com tempo limite dos mecanismos que não sabem interrompê-las
+    private ExecutorService guard;
+
+    public FhirValidator() {
+        this(new CliValidationEngine(new File(ValidationEngineFactory.DEFAULT_VALIDATOR_JAR)));
+    }
+
+    public FhirValidator(ValidationEngine engine) {
+        this.engine = Objects.requireNonNull(engine, "ValidationEngine não pode ser nulo");
+        setMetrics(new MetricsRegistry());
+    }
+
+    /**
+     * Passa a registrar latência, volume de instâncias e ocupação do validador no registro informado.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        validationLatency = metrics.histogram("fut_validation_seconds",
+                "Time spent in the validation engine per call (a batch counts once)",
+                MetricsRegistry.LATENCY_BUCKETS, "engine", engine.getName());
+        instanceBytes = metrics.counter("fut_parsed_bytes_total", "Bytes of input read and parsed",
+                "kind", "instance");
+        timeouts = metrics.counter("fut_validation_timeouts_total", "Validation engine calls aborted by a timeout",
+                "engine", engine.getName());
+        metrics.gauge("fut_validations_in_flight", "Validation engine calls currently running", inFlight::get);
+        engine.registerMetrics(metrics);
+    }
+
+    public ValidationEngine getEngine() {
+        return engine;
+    }
 
     public TestResult validate(TestDefinition testDefinition) throws FhirValidationException {
+        return validate(testDefinition, null);
+    }
+
+    /**
+     * @param timeout tempo limite da validação; null para o padrão do mecanismo
+     * @throws FhirValidationException também quando o tempo limite é excedido
+     */
+    public TestResult validate(TestDefinition testDefinition, Duration timeout) throws FhirValidationException {
         Objects.requireNonNull(testDefinition, "TestDefinition não pode ser nulo");
 
-        // Verifica se o validador existe
-        File validatorFile = new File(VALIDATOR_JAR);
-        if (!validatorFile.exists()) {
-            throw new FhirValidationException(
-                    "Validator_cli.jar não encontrado em: " + validatorFile.getAbsolutePath(),
-                    "Por favor, baixe o validator_cli.jar da página oficial da HL7 e coloque na pasta lib/",
-                    testDefinition.getTestId()
-            );
-        }
+        // Verifica o arquivo de instância antes de acionar o validador
+        checkInstance(testDefinition);
 
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        OperationOutcome outcome;
         try {
-            // Configura o ambiente
-            Map<String, String> env = new HashMap<>(System.getenv());
-            env.put("JAVA_TOOL_OPTIONS", "-Dfile.encoding=UTF-8");
-
-            // Prepara o comando
-            List<String> command = buildCommand(testDefinition);
+            outcome = timeout == null ? engine.validate(testDefinition)
+                    : engine.supportsTimeout() ? engine.validate(testDefinition, timeout)
+                    : guarded(() -> engine.validate(testDefinition), timeout, testDefinition.getTestId());
+        } catch (ValidationTimeoutException e) {
+            timeouts.inc();
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        long validationMs = PhaseTimer.elapsedMillis(start);
+        validationLatency.observeMillis(validationMs);
 
-            // Executa o validador com logging detalhado
-            System.out.println("Executando comando: " + String.join(" ", command));
-            ProcessResult result = executeCommand(command, env);
-            System.out.println("Saída do validador:\n" + result.getOutput());
+        return processResult(testDefinition, outcome, validationMs);
+    }
 
-            // Processa o resultado
-            return processResult(testDefinition, result);
+    /**
+     * Valida um lote de definições com o mesmo contexto em uma única chamada ao mecanismo.
+     * As instâncias devem ter sido verificadas com {@link #checkInstance(TestDefinition)}.
+     * @return resultado de cada definição para a qual o validador produziu um OperationOutcome
+     */
+    public Map<TestDefinition, TestResult> validateBatch(List<TestDefinition> definitions)
+            throws FhirValidationException {
+        return validateBatch(definitions, null);
+    }
 
-        } catch (IOException | InterruptedException e) {
-            throw new FhirValidationException(
-                    "Erro ao executar validador: " + e.getMessage(),
-                    "Verifique se o Java está instalado e acessível no PATH",
-                    testDefinition.getTestId()
-            );
+    /**
+     * @param timeout tempo limite do lote inteiro; null para o padrão do mecanismo
+     */
+    public Map<TestDefinition, TestResult> validateBatch(List<TestDefinition> definitions, Duration timeout)
+            throws FhirValidationException {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        Map<TestDefinition, OperationOutcome> outcomes;
+        try {
+            outcomes = timeout == null ? engine.validateBatch(definitions)
+                    : engine.supportsTimeout() ? engine.validateBatch(definitions, timeout)
+                    : guarded(() -> engine.validateBatch(definitions), timeout, definitions.get(0).getTestId());
+        } catch (ValidationTimeoutException e) {
+            timeouts.inc();
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
         }
+        long batchMs = PhaseTimer.elapsedMillis(start);
+        validationLatency.observeMillis(batchMs);
+        // Uma única chamada valida o lote inteiro: cada teste recebe a sua fração do tempo
+        long validationMs = batchMs / Math.max(1, definitions.size());
+
+        Map<TestDefinition, TestResult> results = new LinkedHashMap<>();
+        for (TestDefinition definition : definitions) {
+            OperationOutcome outcome = outcomes.get(definition);
+            if (outcome != null) {
+                results.put(definition, processResult(definition, outcome, validationMs));
+            }
+        }
+        return results;
     }
 
-    private List<String> buildCommand(TestDefinition definition) throws FhirValidationException {
-        List<String> command = new ArrayList<>();
-        command.add("java");
-        command.add("-Dfile.encoding=UTF-8");
-        command.add("-jar");
-        command.add(VALIDATOR_JAR);
-        command.add("-version");
-        command.add(FHIR_VERSION);
-
-        // Adiciona parâmetros de contexto
-        if (definition.getContext() != null) {
-            TestContext context = definition.getContext();
-
-            if (context.getIgs() != null) {
-                for (String ig : context.getIgs()) {
-                    command.add("-ig");
-                    command.add(ig);
-                }
+    /**
+     * Executa a chamada em outra thread e desiste dela no tempo limite. A thread é
+     * interrompida, mas um mecanismo que ignore a interrupção continua até terminar;
+     * o teste, de qualquer forma, falha na hora e libera o runner.
+     */
+    private <T> T guarded(Callable<T> call, Duration timeout, String testId) throws FhirValidationException {
+        Future<T> future;
+        synchronized (this) {
+            if (guard == null) {
+                guard = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "fut-validation");
+                    thread.setDaemon(true);
+                    return thread;
+                });
             }
-
-            if (context.getProfiles() != null) {
-                for (String profile : context.getProfiles()) {
-                    command.add("-profile");
-                    command.add(profile);
-                }
+            future = guard.submit(call);
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ValidationTimeoutException(
+                    "Validação excedeu o tempo limite de " + timeout.toMillis() + " ms", timeout, testId);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new FhirValidationException("Validação interrompida", null, testId);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FhirValidationException) {
+                throw (FhirValidationException) e.getCause();
             }
+            throw new FhirValidationException("Erro inesperado: " + e.getCause().getMessage(), e.getCause());
         }
+    }
 
-        // Adiciona o arquivo de instância
-        File instanceFile = definition.getInstancePath();
+    /**
+     * Verifica se o arquivo de instância referenciado pela definição existe.
+     */
+    public void checkInstance(TestDefinition testDefinition) throws FhirValidationException {
+        File instanceFile = testDefinition.getInstancePath();
         if (instanceFile == null || !instanceFile.exists()) {
             throw new FhirValidationException(
                     "Arquivo de instância não encontrado: " +
                             (instanceFile != null ? instanceFile.getPath() : "null"),
                     "Verifique o caminho do arquivo no teste YAML",
-                    definition.getTestId()
+                    testDefinition.getTestId()
             );
         }
-        command.add(instanceFile.getAbsolutePath());
-
-        return command;
     }
 
-    private ProcessResult executeCommand(List<String> command, Map<String, String> env)
-            throws IOException, InterruptedException {
-
-        ProcessBuilder builder = new ProcessBuilder(command);
-        builder.environment().putAll(env);
-        builder.redirectErrorStream(true); // Redireciona stderr para stdout
-
-        Process process = builder.start();
-
-        // Lê a saída enquanto o processo está executando
-        String output = readOutput(process.getInputStream());
-
-        // Espera pelo término do processo
-        boolean finished = process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS);
-        if (!finished) {
-            process.destroyForcibly();
-            throw new IOException("Processo excedeu o tempo limite de " + TIMEOUT_SECONDS + " segundos");
-        }
-
-        return new ProcessResult(output, process.exitValue());
-    }
-
-    private String readOutput(InputStream inputStream) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-            return output.toString();
-        }
-    }
-
-    private TestResult processResult(TestDefinition definition, ProcessResult result)
+    private TestResult processResult(TestDefinition definition, OperationOutcome outcome, long validationMs)
             throws FhirValidationException {
 
-        if (result.getExitCode() != 0) {
-            throw new FhirValidationException(
-                    "Validador retornou código de erro: " + result.getExitCode(),
-                    result.getOutput(),
-                    definition.getTestId()
-            );
-        }
-
         try {
-            OperationOutcome outcome = (OperationOutcome) new JsonParser().parse(result.getOutput());
             TestResult testResult = new TestResult();
             testResult.setTestId(definition.getTestId());
             testResult.setOutcome(outcome);
+            testResult.addTiming("validation", validationMs);
+            instanceBytes.inc(definition.getInstancePath().length());
 
             if (definition.getExpectedResults() != null) {
+                long start = System.nanoTime();
                 boolean passed = compareResults(outcome, definition.getExpectedResults(), testResult);
+                testResult.addTiming("compare", PhaseTimer.elapsedMillis(start));
+
+                List<InvariantCheck> invariants = definition.getExpectedResults().getInvariants();
+                if (invariants != null && !invariants.isEmpty()) {
+                    start = System.nanoTime();
+                    List<ValidationDiff> invariantDiffs = invariantEvaluator.evaluate(
+                            invariants, LoadedInstance.load(definition.getInstancePath()));
+                    testResult.addTiming("invariants", PhaseTimer.elapsedMillis(start));
+                    testResult.getDifferences().addAll(invariantDiffs);
+                    passed = passed && invariantDiffs.isEmpty();
+                }
                 testResult.setPassed(passed);
             }
 
@@ -158,7 +215,8 @@ public class FhirValidator {
         } catch (Exception e) {
             throw new FhirValidationException(
                     "Erro ao processar saída do validador: " + e.getMessage(),
-                    result.getOutput(),
+                    e,
+                    null,
                     definition.getTestId()
             );
         }
@@ -166,8 +224,18 @@ public class FhirValidator {
 
     private boolean compareResults(OperationOutcome actual, ExpectedResults expected, TestResult result) {
         List<ValidationDiff> diffs = new ArrayList<>();
-        boolean hasErrors = actual.getIssue().stream()
-                .anyMatch(issue -> issue.getSeverity() == OperationOutcome.IssueSeverity.ERROR);
+
+        // Indexa as issues por severidade uma única vez
+        Map<OperationOutcome.IssueSeverity, List<OperationOutcome.OperationOutcomeIssueComponent>> bySeverity =
+                new EnumMap<>(OperationOutcome.IssueSeverity.class);
+        for (OperationOutcome.OperationOutcomeIssueComponent issue : actual.getIssue()) {
+            if (issue.getSeverity() != null) {
+                bySeverity.computeIfAbsent(issue.getSeverity(), k -> new ArrayList<>()).add(issue);
+            }
+        }
+        List<OperationOutcome.OperationOutcomeIssueComponent> errors =
+                bySeverity.getOrDefault(OperationOutcome.IssueSeverity.ERROR, List.of());
+        boolean hasErrors = !errors.isEmpty();
 
         // Verifica status geral
         boolean statusMatches = ("error".equalsIgnoreCase(expected.getStatus()) && hasErrors) ||
@@ -182,45 +250,69 @@ public class FhirValidator {
             diffs.add(diff);
         }
 
-        // Verifica mensagens de erro específicas
-        if (expected.getErrors() != null) {
-            expected.getErrors().forEach(expectedError -> {
-                boolean found = actual.getIssue().stream()
-                        .anyMatch(issue ->
-                                issue.getSeverity() == OperationOutcome.IssueSeverity.ERROR &&
-                                        issue.getDiagnostics() != null &&
-                                        issue.getDiagnostics().contains(expectedError));
-
-                if (!found) {
-                    ValidationDiff diff = new ValidationDiff();
-                    diff.setType("MISSING_ERROR");
-                    diff.setMessage("Erro esperado não encontrado: " + expectedError);
-                    diff.setSeverity("ERROR");
-                    diffs.add(diff);
-                }
-            });
-        }
+        // Erros: com strict_errors (ou status success), qualquer erro que não case com a
+        // lista declarada é inesperado; sem ele, a lista só diz quais erros precisam aparecer
+        boolean reportUnexpected = Boolean.TRUE.equals(expected.getStrictErrors())
+                || "success".equalsIgnoreCase(expected.getStatus());
+        List<ValidationDiff> unexpected = new ArrayList<>();
+        BitSet foundErrors = matchIssues(IssueMatcher.compile(expected.getErrors()), errors,
+                reportUnexpected ? unexpected : null);
+        addMissing(expected.getErrors(), foundErrors, "MISSING_ERROR", "Erro esperado não encontrado: ", "ERROR", diffs);
+        diffs.addAll(unexpected);
 
         // Verifica warnings esperados
-        if (expected.getWarnings() != null) {
-            expected.getWarnings().forEach(expectedWarning -> {
-                boolean found = actual.getIssue().stream()
-                        .anyMatch(issue ->
-                                issue.getSeverity() == OperationOutcome.IssueSeverity.WARNING &&
-                                        issue.getDiagnostics() != null &&
-                                        issue.getDiagnostics().contains(expectedWarning));
-
-                if (!found) {
-                    ValidationDiff diff = new ValidationDiff();
-                    diff.setType("MISSING_WARNING");
-                    diff.setMessage("Aviso esperado não encontrado: " + expectedWarning);
-                    diff.setSeverity("WARNING");
-                    diffs.add(diff);
-                }
-            });
-        }
+        BitSet foundWarnings = matchIssues(IssueMatcher.compile(expected.getWarnings()),
+                bySeverity.getOrDefault(OperationOutcome.IssueSeverity.WARNING, List.of()), null);
+        addMissing(expected.getWarnings(), foundWarnings, "MISSING_WARNING", "Aviso esperado não encontrado: ", "WARNING", diffs);
 
         result.setDifferences(diffs);
         return diffs.isEmpty() && statusMatches;
     }
-}
\ No newline at end of file
+
+    /**
+     * Casa cada issue com as expectativas uma única vez.
+     * @param unexpected se não for nulo, recebe um UNEXPECTED_ERROR para cada issue sem expectativa correspondente
+     * @return expectativas satisfeitas por alguma issue
+     */
+    private BitSet matchIssues(IssueMatcher matcher,
+                               List<OperationOutcome.OperationOutcomeIssueComponent> issues,
+                               List<ValidationDiff> unexpected) {
+        BitSet found = new BitSet();
+        if (matcher.isEmpty() && unexpected == null) {
+            return found;
+        }
+        for (OperationOutcome.OperationOutcomeIssueComponent issue : issues) {
+            BitSet matched = matcher.match(issue);
+            found.or(matched);
+            if (unexpected != null && matched.isEmpty()) {
+                ValidationDiff diff = new ValidationDiff();
+                diff.setType("UNEXPECTED_ERROR");
+                diff.setMessage("Erro não esperado: " + issue.getDiagnostics());
+                diff.setSeverity("ERROR");
+                if (!issue.getExpression().isEmpty()) {
+                    diff.setLocation(issue.getExpression().get(0).getValue());
+                } else if (!issue.getLocation().isEmpty()) {
+                    diff.setLocation(issue.getLocation().get(0).getValue());
+                }
+                unexpected.add(diff);
+            }
+        }
+        return found;
+    }
+
+    private void addMissing(List<String> expectations, BitSet found, String type, String prefix, String severity,
+                            List<ValidationDiff> diffs) {
+        if (expectations == null) {
+            return;
+        }
+        for (int i = 0; i < expectations.size(); i++) {
+            if (!found.get(i)) {
+                ValidationDiff diff = new ValidationDiff();
+                diff.setType(type);
+                diff.setMessage(prefix + expectations.get(i));
+                diff.setSeverity(severity);
+                diffs.add(diff);
+            }
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestContext;
+import fhirut.model.TestDefinition;
+import fhirut.packages.PackageCache;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+/**
+ * Validador residente: carrega a biblioteca de validação da HL7 (contida no
+ * validator_cli.jar) uma única vez dentro da JVM do fut e valida cada instância
+ * sem criar novos processos.
+ *
+ * <p>O jar é carregado em um class loader isolado para que as dependências do
+ * validador não conflitem com as do fut. A comunicação é feita por reflexão e o
+ * OperationOutcome (R5) é convertido para R4 via JSON.</p>
+ *
+ * <p>O pacote base (hl7.fhir.r4.core) é carregado uma vez; para cada conjunto
+ * distinto de IGs é criada uma cópia do motor base com os IGs adicionais, que é
+ * reaproveitada por todos os testes com o mesmo contexto. Como o motor da HL7
+ * não é seguro para uso concorrente, cada cópia atende um teste por vez.</p>
+ *
+ * <p>O total de cópias, somando todos os contextos, não passa de {@code maxInstances}
+ * (o paralelismo calculado pela memória disponível). Quando o limite é atingido, a
+ * cópia ociosa do contexto usado há mais tempo é descartada; o contexto que fica sem
+ * cópias é descartado junto com o seu modelo.</p>
+ */
+public class InProcessValidationEngine implements ValidationEngine {
+    private static final String FHIR_VERSION = "4.0.1";
+    private static final String CORE_PACKAGE = "hl7.fhir.r4.core#4.0.1";
+    public static final String DEFAULT_TX_SERVER = "http://tx.fhir.org";
+
+    private static final String ENGINE_CLASS = "org.hl7.fhir.validation.ValidationEngine";
+    private static final String BUILDER_CLASS = ENGINE_CLASS + "$ValidationEngineBuilder";
+    private static final String IG_LOADER_CLASS = "org.hl7.fhir.validation.IgLoader";
+    private static final String PCM_CLASS = "org.hl7.fhir.utilities.npm.FilesystemPackageCacheManager";
+    private static final String WORKER_CONTEXT_CLASS = "org.hl7.fhir.r5.context.SimpleWorkerContext";
+    private static final String PUBLICATION_CLASS = "org.hl7.fhir.utilities.FhirPublication";
+    private static final String FORMAT_CLASS = "org.hl7.fhir.r5.elementmodel.Manager$FhirFormat";
+    private static final String R5_JSON_PARSER_CLASS = "org.hl7.fhir.r5.formats.JsonParser";
+    private static final String R5_RESOURCE_CLASS = "org.hl7.fhir.r5.model.Resource";
+
+    private final URLClassLoader classLoader;
+    private final Object baseEngine;
+    private final int maxInstances;
+    private final PackageCache packageCache;
+    private final String fingerprint;
+    // Contextos do usado há mais tempo para o mais recente; protegido por enginesLock
+    private final LinkedHashMap<String, ContextEngines> contextEngines = new LinkedHashMap<>(16, 0.75f, true);
+    private final Object enginesLock = new Object();
+    private int engineCopies;
+    private final PhaseTimer timer = new PhaseTimer();
+    private final ConformanceResourceRegistry conformanceResources =
+            new ConformanceResourceRegistry(timer, this::discardContexts);
+
+    public InProcessValidationEngine(File validatorJar) throws FhirValidationException {
+        this(validatorJar, DEFAULT_TX_SERVER);
+    }
+
+    public InProcessValidationEngine(File validatorJar, String txServer) throws FhirValidationException {
+        this(validatorJar, txServer, 1);
+    }
+
+    /**
+     * @param validatorJar caminho do validator_cli.jar
+     * @param txServer servidor de terminologia, ou "n/a" para validar sem servidor
+     * @param maxInstances cópias do motor que podem existir ao mesmo tempo, somando todos os contextos
+     */
+    public InProcessValidationEngine(File validatorJar, String txServer, int maxInstances)
+            throws FhirValidationException {
+        this(validatorJar, txServer, maxInstances, null);
+    }
+
+    /**
+     * @param validatorJar caminho do validator_cli.jar
+     * @param txServer servidor de terminologia, ou "n/a" para validar sem servidor
+     * @param maxInstances cópias do motor que podem existir ao mesmo tempo, somando todos os contextos
+     * @param packageCache cache de pacotes usado para carregar IGs de tarballs locais (opcional)
+     */
+    public InProcessValidationEngine(File validatorJar, String txServer, int maxInstances,
+                                     PackageCache packageCache) throws FhirValidationException {
+        this.maxInstances = Math.max(1, maxInstances);
+        this.packageCache = packageCache;
+        this.fingerprint = ValidatorFingerprint.of(validatorJar) + "|tx=" + txServer;
+
+        if (!validatorJar.exists()) {
+            throw new FhirValidationException(
+                    "Validator_cli.jar não encontrado em: " + validatorJar.getAbsolutePath());
+        }
+
+        try {
+            this.classLoader = new URLClassLoader(
+                    new URL[]{validatorJar.toURI().toURL()},
+                    ClassLoader.getPlatformClassLoader());
+        } catch (IOException e) {
+            throw new FhirValidationException("Caminho inválido para o validador: " + validatorJar, e);
+        }
+
+        System.out.println("⏳ Carregando validador residente (" + CORE_PACKAGE + ")...");
+        try {
+            long start = System.nanoTime();
+            this.baseEngine = withEngineClassLoader(() -> buildBaseEngine(txServer));
+            timer.since("startup", start);
+        } catch (Exception e) {
+            close();
+            throw new FhirValidationException(
+                    "Não foi possível carregar o validador residente: " + rootMessage(e), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "inprocess";
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public Map<String, Long> getTimings() {
+        return timer.snapshot();
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition) throws FhirValidationException {
+        File instanceFile = definition.getInstancePath();
+
+        try {
+            List<String> profiles = profilesOf(definition.getContext());
+            // Mesmo conteúdo usado depois na avaliação das invariantes
+            byte[] content = LoadedInstance.load(instanceFile).getContent();
+
+            Lease lease = acquire(definition.getContext());
+            String outcomeJson;
+            try {
+                outcomeJson = withEngineClassLoader(() -> runValidation(lease.engine, instanceFile, content, profiles));
+            } finally {
+                release(lease);
+            }
+            long start = System.nanoTime();
+            OperationOutcome outcome = (OperationOutcome) new JsonParser().parse(outcomeJson);
+            timer.since("outcome_parse", start);
+            return outcome;
+
+        } catch (FhirValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FhirValidationException(
+                    "Erro no validador residente: " + rootMessage(e),
+                    e,
+                    null,
+                    definition.getTestId()
+            );
+        }
+    }
+
+    @Override
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("fut_validator_engines", "Resident validator engine copies alive, across all IG contexts",
+                () -> {
+                    synchronized (enginesLock) {
+                        return engineCopies;
+                    }
+                });
+        metrics.gauge("fut_validator_engines_idle", "Resident validator engine copies waiting for work",
+                () -> {
+                    synchronized (enginesLock) {
+                        return contextEngines.values().stream().mapToInt(engines -> engines.idle.size()).sum();
+                    }
+                });
+        metrics.gauge("fut_validator_contexts", "IG contexts loaded in the resident validator",
+                () -> {
+                    synchronized (enginesLock) {
+                        return contextEngines.size();
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        synchronized (enginesLock) {
+            contextEngines.clear();
+            engineCopies = 0;
+            enginesLock.notifyAll();
+        }
+        conformanceResources.close();
+        try {
+            if (classLoader != null) {
+                classLoader.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao liberar validador residente: " + e.getMessage());
+        }
+    }
+
+    private Object buildBaseEngine(String txServer) throws Exception {
+        Class<?> builderClass = classLoader.loadClass(BUILDER_CLASS);
+        Object builder = builderClass.getConstructor().newInstance();
+        builder = builderClass.getMethod("withVersion", String.class).invoke(builder, FHIR_VERSION);
+
+        if (txServer == null || "n/a".equalsIgnoreCase(txServer)) {
+            builder = builderClass.getMethod("withNoTerminologyServer").invoke(builder);
+        } else {
+            Class<?> publicationClass = classLoader.loadClass(PUBLICATION_CLASS);
+            builder = builderClass.getMethod("withTxServer", String.class, String.class, publicationClass, boolean.class)
+                    .invoke(builder, txServer, null, enumValue(publicationClass, "R4"), true);
+        }
+
+        return builderClass.getMethod("fromSource", String.class).invoke(builder, CORE_PACKAGE);
+    }
+
+    /**
+     * Obtém uma cópia do motor para os IGs do contexto, esperando enquanto o limite de
+     * cópias estiver atingido por cópias em uso. Os recursos locais do contexto entram
+     * como mais um IG, já deduplicados pelo registro.
+     */
+    private Lease acquire(TestContext context) throws Exception {
+        List<String> igs = conformanceResources.igsFor(context);
+        String key = String.join("|", new TreeSet<>(igs));
+        ContextEngines engines;
+        synchronized (enginesLock) {
+            while (true) {
+                // A consulta também marca o contexto como o usado mais recentemente
+                engines = contextEngines.computeIfAbsent(key, k -> new ContextEngines(igs));
+                Object engine = engines.idle.poll();
+                if (engine != null) {
+                    return new Lease(engines, engine);
+                }
+                if (engineCopies < maxInstances || evictIdle(engines)) {
+                    // Reserva a vaga; a cópia é feita fora da trava
+                    engineCopies++;
+                    engines.created++;
+                    break;
+                }
+                enginesLock.wait();
+            }
+        }
+        try {
+            return new Lease(engines, engines.newCopy());
+        } catch (Exception e) {
+            synchronized (enginesLock) {
+                engineCopies--;
+                engines.created--;
+                if (engines.created == 0) {
+                    contextEngines.remove(key, engines);
+                }
+                enginesLock.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(Lease lease) {
+        synchronized (enginesLock) {
+            if (lease.engines.discarded) {
+                engineCopies--;
+                lease.engines.created--;
+            } else {
+                lease.engines.idle.offer(lease.engine);
+            }
+            enginesLock.notifyAll();
+        }
+    }
+
+    /**
+     * Descarta os contextos que carregaram o diretório de recursos locais, substituído
+     * por uma versão nova dos arquivos. Cópias em uso são descartadas ao serem devolvidas.
+     */
+    private void discardContexts(File directory) {
+        String ig = directory.getAbsolutePath();
+        synchronized (enginesLock) {
+            Iterator<ContextEngines> iterator = contextEngines.values().iterator();
+            while (iterator.hasNext()) {
+                ContextEngines engines = iterator.next();
+                if (engines.igs.contains(ig)) {
+                    iterator.remove();
+                    engines.discarded = true;
+                    engineCopies -= engines.idle.size();
+                    engines.created -= engines.idle.size();
+                    engines.idle.clear();
+                }
+            }
+            enginesLock.notifyAll();
+        }
+    }
+
+    /**
+     * Descarta uma cópia ociosa do contexto usado há mais tempo (exceto o informado).
+     * Chamado com {@code enginesLock}.
+     * @return true se uma vaga foi liberada
+     */
+    private boolean evictIdle(ContextEngines except) {
+        Iterator<ContextEngines> iterator = contextEngines.values().iterator();
+        while (iterator.hasNext()) {
+            ContextEngines engines = iterator.next();
+            if (engines == except || engines.idle.poll() == null) {
+                continue;
+            }
+            engineCopies--;
+            engines.created--;
+            if (engines.created == 0) {
+                iterator.remove();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Object copyOf(Object template) throws Exception {
+        Class<?> engineClass = classLoader.loadClass(ENGINE_CLASS);
+        synchronized (template) {
+            return engineClass.getConstructor(engineClass).newInstance(template);
+        }
+    }
+
+    private Object copyWithIgs(List<String> igs) throws Exception {
+        Class<?> engineClass = classLoader.loadClass(ENGINE_CLASS);
+        Object engine = copyOf(baseEngine);
+        if (igs.isEmpty()) {
+            return engine;
+        }
+
+        // A cópia compartilha o IgLoader do motor base; cria um novo apontando para o contexto copiado
+        Class<?> pcmClass = classLoader.loadClass(PCM_CLASS);
+        Class<?> workerContextClass = classLoader.loadClass(WORKER_CONTEXT_CLASS);
+        Class<?> igLoaderClass = classLoader.loadClass(IG_LOADER_CLASS);
+        Object igLoader = igLoaderClass.getConstructor(pcmClass, workerContextClass, String.class)
+                .newInstance(
+                        engineClass.getMethod("getPcm").invoke(engine),
+                        engineClass.getMethod("getContext").invoke(engine),
+                        engineClass.getMethod("getVersion").invoke(engine));
+        engineClass.getMethod("setIgLoader", igLoaderClass).invoke(engine, igLoader);
+
+        Object engineIgs = engineClass.getMethod("getIgs").invoke(engine);
+        Object binaries = engineClass.getMethod("getBinaries").invoke(engine);
+        for (String ig : igs) {
+            igLoaderClass.getMethod("loadIg", List.class, Map.class, String.class, boolean.class)
+                    .invoke(igLoader, engineIgs, binaries, packageCache != null ? packageCache.resolveIg(ig) : ig, false);
+        }
+        return engine;
+    }
+
+    private String runValidation(Object engine, File instanceFile, byte[] content, List<String> profiles)
+            throws Exception {
+        Class<?> engineClass = classLoader.loadClass(ENGINE_CLASS);
+        Class<?> formatClass = classLoader.loadClass(FORMAT_CLASS);
+        Object format = enumValue(formatClass, instanceFile.getName().endsWith(".xml") ? "XML" : "JSON");
+
+        Object outcome;
+        try (InputStream stream = new ByteArrayInputStream(content)) {
+            outcome = engineClass.getMethod("validate", formatClass, InputStream.class, List.class)
+                    .invoke(engine, format, stream, profiles);
+        }
+
+        Class<?> parserClass = classLoader.loadClass(R5_JSON_PARSER_CLASS);
+        Object parser = parserClass.getConstructor().newInstance();
+        return (String) parserClass.getMethod("composeString", classLoader.loadClass(R5_RESOURCE_CLASS))
+                .invoke(parser, outcome);
+    }
+
+    /**
+     * Cópias do motor para um mesmo conjunto de IGs. Os IGs são carregados uma
+     * única vez em um modelo; as instâncias que validam são cópias dele. As cópias
+     * ociosas e o contador são protegidos por {@code enginesLock}.
+     */
+    private final class ContextEngines {
+        private final List<String> igs;
+        private final Deque<Object> idle = new ArrayDeque<>();
+        private Object template;
+        private int created;
+        private boolean discarded;
+
+        private ContextEngines(List<String> igs) {
+            this.igs = igs;
+        }
+
+        Object newCopy() throws Exception {
+            Object source;
+            synchronized (this) {
+                if (template == null) {
+                    if (!igs.isEmpty()) {
+                        System.out.println("⏳ Carregando IGs no validador residente: " + igs);
+                    }
+                    long start = System.nanoTime();
+                    template = withEngineClassLoader(() -> copyWithIgs(igs));
+                    timer.since("ig_load", start);
+                }
+                source = template;
+            }
+            return withEngineClassLoader(() -> copyOf(source));
+        }
+    }
+
+    private static final class Lease {
+        private final ContextEngines engines;
+        private final Object engine;
+
+        private Lease(ContextEngines engines, Object engine) {
+            this.engines = engines;
+            this.engine = engine;
+        }
+    }
+
+    private List<String> profilesOf(TestContext context) {
+        if (context == null || context.getProfiles() == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(context.getProfiles());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> enumClass, String name) {
+        return Enum.valueOf((Class<? extends Enum>) enumClass, name);
+    }
+
+    /**
+     * Executa a ação com o class loader do validador como context class loader,
+     * já que a biblioteca da HL7 carrega recursos (mensagens, pacotes) por ele.
+     */
+    private <T> T withEngineClassLoader(Callable<T> action) throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return action.call();
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getClass().getSimpleName() + ": " + root.getMessage();
+    }
+}
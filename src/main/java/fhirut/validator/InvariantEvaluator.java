@@ -0,0 +1,115 @@
+package fhirut.validator;
+
+import fhirut.model.InvariantCheck;
+import fhirut.model.ValidationDiff;
+import org.hl7.fhir.r4.context.SimpleWorkerContext;
+import org.hl7.fhir.r4.fhirpath.ExpressionNode;
+import org.hl7.fhir.r4.fhirpath.FHIRPathEngine;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Avalia as invariantes FHIRPath de {@code expected_results.invariants} sobre a instância.
+ *
+ * <p>Cada expressão é compilada uma única vez e reaproveitada por todos os testes
+ * do processo; como o {@link FHIRPathEngine} não é thread-safe, cada thread usa o
+ * seu, todos sobre o mesmo contexto vazio (as invariantes só navegam a instância).</p>
+ */
+class InvariantEvaluator {
+    private static final Map<String, Compiled> EXPRESSIONS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<FHIRPathEngine> ENGINES = ThreadLocal.withInitial(InvariantEvaluator::newEngine);
+    private static volatile SimpleWorkerContext workerContext;
+
+    /**
+     * @return uma diferença para cada invariante que não teve o resultado esperado ou não pôde ser avaliada
+     */
+    List<ValidationDiff> evaluate(List<InvariantCheck> invariants, LoadedInstance instance) {
+        List<ValidationDiff> diffs = new ArrayList<>();
+        Resource resource;
+        try {
+            resource = instance.getResource();
+        } catch (IOException e) {
+            diffs.add(diff("INVARIANT_ERROR", e.getMessage(), null));
+            return diffs;
+        }
+
+        for (InvariantCheck invariant : invariants) {
+            String expression = invariant.getExpression();
+            if (expression == null || expression.isBlank()) {
+                diffs.add(diff("INVARIANT_ERROR", "Invariante sem expressão", null));
+                continue;
+            }
+
+            Compiled compiled = EXPRESSIONS.computeIfAbsent(expression, InvariantEvaluator::compile);
+            if (compiled.error != null) {
+                diffs.add(diff("INVARIANT_ERROR", "Expressão FHIRPath inválida: " + compiled.error, expression));
+                continue;
+            }
+
+            try {
+                boolean actual = ENGINES.get().evaluateToBoolean(null, resource, resource, resource, compiled.node);
+                if (actual != invariant.isExpected()) {
+                    diffs.add(diff("INVARIANT_FAILED",
+                            "Invariante retornou " + actual + ", esperado " + invariant.isExpected(), expression));
+                }
+            } catch (Exception e) {
+                diffs.add(diff("INVARIANT_ERROR", "Erro ao avaliar invariante: " + e.getMessage(), expression));
+            }
+        }
+        return diffs;
+    }
+
+    private static Compiled compile(String expression) {
+        try {
+            return new Compiled(ENGINES.get().parse(expression), null);
+        } catch (Exception e) {
+            return new Compiled(null, e.getMessage());
+        }
+    }
+
+    private static FHIRPathEngine newEngine() {
+        return new FHIRPathEngine(workerContext());
+    }
+
+    private static SimpleWorkerContext workerContext() {
+        if (workerContext == null) {
+            synchronized (InvariantEvaluator.class) {
+                if (workerContext == null) {
+                    try {
+                        workerContext = SimpleWorkerContext.fromNothing();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Não foi possível criar o contexto FHIRPath: " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        return workerContext;
+    }
+
+    private static ValidationDiff diff(String type, String message, String expression) {
+        ValidationDiff diff = new ValidationDiff();
+        diff.setType(type);
+        diff.setMessage(message);
+        diff.setSeverity("ERROR");
+        diff.setLocation(expression);
+        return diff;
+    }
+
+    /**
+     * Expressão compilada, ou o erro de parse (também guardado, para não reparsear).
+     */
+    private static class Compiled {
+        private final ExpressionNode node;
+        private final String error;
+
+        private Compiled(ExpressionNode node, String error) {
+            this.node = node;
+            this.error = error;
+        }
+    }
+}
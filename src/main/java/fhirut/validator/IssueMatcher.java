@@ -0,0 +1,121 @@
+package fhirut.validator;
+
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.StringType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Casa as mensagens esperadas de um teste com as issues de uma severidade.
+ *
+ * <p>Cada expectativa é compilada uma vez, conforme o prefixo:</p>
+ * <ul>
+ *     <li>{@code exact:texto} — diagnostics igual ao texto (consulta em mapa);</li>
+ *     <li>{@code regex:expr} — expressão regular procurada no diagnostics;</li>
+ *     <li>{@code code:tipo} — código da issue (ex.: {@code code:invariant});</li>
+ *     <li>{@code location:caminho} — expression ou location da issue igual ao caminho;</li>
+ *     <li>sem prefixo — trecho contido no diagnostics, como sempre foi.</li>
+ * </ul>
+ * <p>Todos os trechos são buscados juntos com um autômato de Aho-Corasick, então
+ * cada issue é lida uma única vez, qualquer que seja o número de expectativas.</p>
+ */
+final class IssueMatcher {
+    private static final String EXACT = "exact:";
+    private static final String REGEX = "regex:";
+    private static final String CODE = "code:";
+    private static final String LOCATION = "location:";
+
+    private final int size;
+    private final AhoCorasick substrings;
+    private final int[] substringIndexes;
+    private final Map<String, List<Integer>> exact = new HashMap<>();
+    private final Map<String, List<Integer>> codes = new HashMap<>();
+    private final Map<String, List<Integer>> locations = new HashMap<>();
+    private final List<Pattern> regexes = new ArrayList<>();
+    private final List<Integer> regexIndexes = new ArrayList<>();
+
+    private IssueMatcher(List<String> expectations) {
+        this.size = expectations.size();
+        List<String> substringPatterns = new ArrayList<>();
+        List<Integer> substringOwners = new ArrayList<>();
+
+        for (int i = 0; i < expectations.size(); i++) {
+            String expectation = expectations.get(i) != null ? expectations.get(i) : "";
+            if (expectation.startsWith(EXACT)) {
+                exact.computeIfAbsent(expectation.substring(EXACT.length()), k -> new ArrayList<>()).add(i);
+            } else if (expectation.startsWith(CODE)) {
+                codes.computeIfAbsent(expectation.substring(CODE.length()).trim().toLowerCase(), k -> new ArrayList<>()).add(i);
+            } else if (expectation.startsWith(LOCATION)) {
+                locations.computeIfAbsent(expectation.substring(LOCATION.length()).trim(), k -> new ArrayList<>()).add(i);
+            } else if (expectation.startsWith(REGEX)) {
+                regexes.add(compileRegex(expectation.substring(REGEX.length())));
+                regexIndexes.add(i);
+            } else {
+                substringPatterns.add(expectation);
+                substringOwners.add(i);
+            }
+        }
+
+        this.substrings = substringPatterns.isEmpty() ? null : new AhoCorasick(substringPatterns);
+        this.substringIndexes = substringOwners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static IssueMatcher compile(List<String> expectations) {
+        return new IssueMatcher(expectations != null ? expectations : List.of());
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return índices das expectativas satisfeitas pela issue
+     */
+    BitSet match(OperationOutcome.OperationOutcomeIssueComponent issue) {
+        BitSet matched = new BitSet(size);
+        if (size == 0) {
+            return matched;
+        }
+
+        String diagnostics = issue.getDiagnostics();
+        if (diagnostics != null) {
+            if (substrings != null) {
+                substrings.search(diagnostics, pattern -> matched.set(substringIndexes[pattern]));
+            }
+            exact.getOrDefault(diagnostics, List.of()).forEach(matched::set);
+            for (int i = 0; i < regexes.size(); i++) {
+                if (regexes.get(i).matcher(diagnostics).find()) {
+                    matched.set(regexIndexes.get(i));
+                }
+            }
+        }
+
+        if (!codes.isEmpty() && issue.getCode() != null) {
+            codes.getOrDefault(issue.getCode().toCode(), List.of()).forEach(matched::set);
+        }
+        if (!locations.isEmpty()) {
+            for (StringType expression : issue.getExpression()) {
+                locations.getOrDefault(expression.getValue(), List.of()).forEach(matched::set);
+            }
+            for (StringType location : issue.getLocation()) {
+                locations.getOrDefault(location.getValue(), List.of()).forEach(matched::set);
+            }
+        }
+        return matched;
+    }
+
+    private static Pattern compileRegex(String expression) {
+        try {
+            return Pattern.compile(expression);
+        } catch (PatternSyntaxException e) {
+            // Expressão inválida é tratada como texto literal, para o teste falhar com mensagem clara
+            return Pattern.compile(Pattern.quote(expression));
+        }
+    }
+}
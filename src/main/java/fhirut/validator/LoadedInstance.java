@@ -0,0 +1,120 @@
+package fhirut.validator;
+
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.formats.XmlParser;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Conteúdo de um arquivo de instância lido uma única vez e compartilhado entre o
+ * validador residente e a avaliação das invariantes, com o recurso parseado sob demanda.
+ *
+ * <p>Vários testes costumam apontar para a mesma instância, então as últimas
+ * instâncias lidas ficam num cache por caminho, limitado pelo total de bytes. O
+ * recurso parseado entra no limite por uma estimativa ({@link #PARSED_OVERHEAD} vezes
+ * o tamanho do arquivo), já que o grafo de objetos é bem maior que o arquivo. Um
+ * arquivo alterado (tamanho ou data diferentes) é relido e substitui a versão anterior.</p>
+ */
+final class LoadedInstance {
+    private static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
+    // Memória estimada do recurso parseado em relação ao tamanho do arquivo
+    static final int PARSED_OVERHEAD = 8;
+    private static final Map<String, LoadedInstance> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes;
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private final byte[] content;
+    private Resource resource;
+    // Bytes contabilizados no cache; protegido pelo CACHE
+    private long weight;
+
+    private LoadedInstance(File file, long length, long lastModified, byte[] content) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.content = content;
+        this.weight = content.length;
+    }
+
+    static LoadedInstance load(File file) throws IOException {
+        File absolute = file.getAbsoluteFile();
+        String key = absolute.getPath();
+        long length = absolute.length();
+        long lastModified = absolute.lastModified();
+        synchronized (CACHE) {
+            LoadedInstance cached = CACHE.get(key);
+            if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+                return cached;
+            }
+        }
+
+        LoadedInstance loaded = new LoadedInstance(absolute, length, lastModified, Files.readAllBytes(absolute.toPath()));
+        synchronized (CACHE) {
+            LoadedInstance previous = CACHE.get(key);
+            if (previous != null && previous.length == length && previous.lastModified == lastModified) {
+                return previous;
+            }
+            // A versão anterior do arquivo sai do cache
+            if (previous != null) {
+                cachedBytes -= previous.weight;
+            }
+            CACHE.put(key, loaded);
+            cachedBytes += loaded.weight;
+            evict();
+        }
+        return loaded;
+    }
+
+    private static void evict() {
+        Iterator<LoadedInstance> eldest = CACHE.values().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && CACHE.size() > 1 && eldest.hasNext()) {
+            cachedBytes -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * @return a instância parseada como recurso R4; o parse acontece só na primeira chamada
+     */
+    synchronized Resource getResource() throws IOException {
+        if (resource == null) {
+            try {
+                resource = isXml()
+                        ? new XmlParser().parse(content)
+                        : new JsonParser().parse(content);
+            } catch (Exception e) {
+                throw new IOException("Não foi possível ler a instância " + file.getName() + ": " + e.getMessage(), e);
+            }
+            synchronized (CACHE) {
+                long parsed = (long) content.length * PARSED_OVERHEAD;
+                weight += parsed;
+                // Fora do cache (substituída ou descartada), a instância não conta no total
+                if (CACHE.get(file.getPath()) == this) {
+                    cachedBytes += parsed;
+                    evict();
+                }
+            }
+        }
+        return resource;
+    }
+
+    boolean isXml() {
+        return file.getName().toLowerCase().endsWith(".xml");
+    }
+}
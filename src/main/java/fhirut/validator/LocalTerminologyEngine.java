@@ -0,0 +1,146 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.model.TestContext;
+import fhirut.model.TestDefinition;
+import fhirut.terminology.TerminologyIndex;
+import fhirut.terminology.TerminologyLoader;
+import fhirut.terminology.TerminologyServer;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mecanismo que valida com um servidor de terminologia local ({@code --tx local}):
+ * antes de cada validação, registra no índice do servidor os CodeSystems e ValueSets
+ * dos IGs e recursos do contexto do teste, aguarda a vez do escopo do contexto no
+ * índice e então delega ao mecanismo real, configurado para consultar o servidor local.
+ */
+public class LocalTerminologyEngine implements ValidationEngine {
+    public static final String LOCAL = "local";
+
+    private final ValidationEngine delegate;
+    private final TerminologyServer server;
+    private final TerminologyLoader loader;
+    private final TerminologyIndex index;
+    private final String fingerprint;
+
+    public LocalTerminologyEngine(ValidationEngine delegate, TerminologyServer server, TerminologyLoader loader,
+                                  TerminologyIndex index) {
+        this.delegate = delegate;
+        this.index = index;
+        this.server = server;
+        this.loader = loader;
+        // A porta muda a cada execução e não pode invalidar o cache de resultados
+        this.fingerprint = delegate.getFingerprint().replace(server.getUrl(), LOCAL);
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition) throws FhirValidationException {
+        enter(definition.getContext());
+        try {
+            return delegate.validate(definition);
+        } finally {
+            index.leave();
+        }
+    }
+
+    @Override
+    public Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions)
+            throws FhirValidationException {
+        if (definitions.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        // Definições de um lote compartilham o contexto
+        enter(definitions.get(0).getContext());
+        try {
+            return delegate.validateBatch(definitions);
+        } finally {
+            index.leave();
+        }
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition, Duration timeout) throws FhirValidationException {
+        enter(definition.getContext());
+        try {
+            return delegate.validate(definition, timeout);
+        } finally {
+            index.leave();
+        }
+    }
+
+    @Override
+    public Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions, Duration timeout)
+            throws FhirValidationException {
+        if (definitions.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        enter(definitions.get(0).getContext());
+        try {
+            return delegate.validateBatch(definitions, timeout);
+        } finally {
+            index.leave();
+        }
+    }
+
+    /**
+     * Registra as terminologias do contexto e espera o índice responder pelo seu escopo.
+     */
+    private void enter(TestContext context) throws FhirValidationException {
+        TerminologyIndex.Scope scope = loader.load(context);
+        try {
+            index.enter(scope);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FhirValidationException("Validação interrompida aguardando o servidor de terminologia local", e);
+        }
+    }
+
+    @Override
+    public boolean supportsTimeout() {
+        return delegate.supportsTimeout();
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return delegate.supportsBatch();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public Map<String, Long> getTimings() {
+        return delegate.getTimings();
+    }
+
+    @Override
+    public void registerMetrics(MetricsRegistry metrics) {
+        delegate.registerMetrics(metrics);
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            if (server.getRequestCount() > 0) {
+                System.out.println("🧩 Terminologia local: " + server.getRequestCount() + " consulta(s), "
+                        + server.getUnknownCount() + " com sistema desconhecido");
+            }
+            server.close();
+        }
+    }
+}
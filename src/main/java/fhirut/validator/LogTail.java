@@ -0,0 +1,85 @@
+package fhirut.validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Guarda apenas as últimas linhas do log de um processo do validador.
+ *
+ * <p>O resultado da validação chega por arquivo próprio; o log só serve para
+ * diagnosticar falhas, então não há motivo para acumulá-lo inteiro em memória.</p>
+ */
+class LogTail {
+    static final int DEFAULT_MAX_LINES = 200;
+    private static final int MAX_LINE_LENGTH = 2000;
+
+    private final int maxLines;
+    private final Deque<String> lines = new ArrayDeque<>();
+    private long discarded;
+
+    LogTail() {
+        this(DEFAULT_MAX_LINES);
+    }
+
+    LogTail(int maxLines) {
+        this.maxLines = Math.max(1, maxLines);
+    }
+
+    /**
+     * Consome o stream até o fim, mantendo só as últimas linhas.
+     */
+    void drain(InputStream inputStream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                add(line);
+            }
+        }
+    }
+
+    /**
+     * Consome o stream em uma thread própria, para quem espera o processo poder
+     * aplicar o tempo limite mesmo que o log nunca termine.
+     */
+    Thread drainAsync(InputStream inputStream) {
+        Thread thread = new Thread(() -> {
+            try {
+                drain(inputStream);
+            } catch (IOException e) {
+                // Stream fechado ao encerrar o processo
+            }
+        }, "fut-validator-log");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    synchronized void add(String line) {
+        if (line.length() > MAX_LINE_LENGTH) {
+            line = line.substring(0, MAX_LINE_LENGTH) + "…";
+        }
+        lines.addLast(line);
+        if (lines.size() > maxLines) {
+            lines.removeFirst();
+            discarded++;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder();
+        if (discarded > 0) {
+            text.append("[... ").append(discarded).append(" linha(s) anteriores omitidas ...]\n");
+        }
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+}
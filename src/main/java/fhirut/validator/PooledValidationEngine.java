@@ -0,0 +1,134 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.exceptions.ValidationTimeoutException;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.metrics.PhaseTimer;
+import fhirut.model.TestContext;
+import fhirut.model.TestDefinition;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envia cada validação para um processo do {@link ValidatorWorkerPool}, evitando
+ * o custo de inicializar uma JVM e recarregar os IGs a cada teste.
+ */
+public class PooledValidationEngine implements ValidationEngine {
+    // Mesmo limite do validator_cli.jar: um worker travado não pode prender o teste para sempre
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ValidatorWorkerPool pool;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final PhaseTimer timer = new PhaseTimer();
+    // Indexados aqui, uma vez; os workers recebem só o diretório, como mais um IG
+    private final ConformanceResourceRegistry conformanceResources = new ConformanceResourceRegistry(timer);
+
+    public PooledValidationEngine(ValidatorWorkerPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return "pool";
+    }
+
+    @Override
+    public String getFingerprint() {
+        return pool.getFingerprint();
+    }
+
+    @Override
+    public boolean supportsTimeout() {
+        return true;
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition) throws FhirValidationException {
+        return validate(definition, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition, Duration timeout) throws FhirValidationException {
+        if (timeout == null) {
+            timeout = DEFAULT_TIMEOUT;
+        }
+        WorkerMessage request = new WorkerMessage(WorkerMessage.VALIDATE);
+        request.setId(nextRequestId.incrementAndGet());
+        request.setTestId(definition.getTestId());
+        request.setInstance(definition.getInstancePath().getAbsolutePath());
+
+        TestContext context = definition.getContext();
+        if (context != null) {
+            request.setIgs(conformanceResources.igsFor(context));
+            request.setProfiles(context.getProfiles());
+        }
+
+        WorkerMessage response;
+        try {
+            long start = System.nanoTime();
+            response = pool.execute(request, timeout);
+            timer.since("worker", start);
+        } catch (TimeoutException e) {
+            throw new ValidationTimeoutException(e.getMessage(), timeout, definition.getTestId());
+        } catch (IOException e) {
+            throw new FhirValidationException(
+                    "Erro na comunicação com o worker do validador: " + e.getMessage(),
+                    "Verifique os logs em " + System.getProperty("java.io.tmpdir") + "/fut-workers",
+                    definition.getTestId()
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FhirValidationException(
+                    "Validação interrompida",
+                    null,
+                    definition.getTestId()
+            );
+        }
+
+        if (!WorkerMessage.RESULT.equals(response.getType())) {
+            throw new FhirValidationException(
+                    "Worker do validador retornou erro: " + response.getError(),
+                    null,
+                    definition.getTestId()
+            );
+        }
+
+        try {
+            long start = System.nanoTime();
+            OperationOutcome outcome = (OperationOutcome) new JsonParser().parse(response.getOutcome());
+            timer.since("outcome_parse", start);
+            return outcome;
+        } catch (Exception e) {
+            throw new FhirValidationException(
+                    "Erro ao processar saída do validador: " + e.getMessage(),
+                    response.getOutcome(),
+                    definition.getTestId()
+            );
+        }
+    }
+
+    @Override
+    public Map<String, Long> getTimings() {
+        return timer.snapshot();
+    }
+
+    @Override
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("fut_validator_pool_workers", "Validator worker processes in the pool",
+                pool::getSize);
+        metrics.gauge("fut_validator_pool_busy", "Validator workers currently validating",
+                pool::getBusy);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        conformanceResources.close();
+    }
+}
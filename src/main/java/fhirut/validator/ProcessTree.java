@@ -0,0 +1,43 @@
+package fhirut.validator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Encerra um processo do validador junto com todos os processos que ele criou.
+ *
+ * <p>Matar só o processo principal deixaria filhos órfãos ainda rodando (e com o pipe
+ * de log aberto). Primeiro pede o encerramento normal; quem não sair dentro do prazo
+ * é terminado à força.</p>
+ */
+final class ProcessTree {
+    private static final long GRACE_MILLIS = 2000;
+
+    private ProcessTree() {
+    }
+
+    static void destroy(Process process) {
+        // Os descendentes são capturados antes: depois que o pai morre eles viram órfãos
+        List<ProcessHandle> tree = process.descendants().collect(Collectors.toList());
+        tree.add(process.toHandle());
+        tree.forEach(ProcessHandle::destroy);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GRACE_MILLIS);
+        for (ProcessHandle handle : tree) {
+            long remaining = deadline - System.nanoTime();
+            try {
+                if (remaining > 0) {
+                    handle.onExit().get(remaining, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Não saiu a tempo: será terminado à força abaixo
+            }
+            if (handle.isAlive()) {
+                handle.destroyForcibly();
+            }
+        }
+    }
+}
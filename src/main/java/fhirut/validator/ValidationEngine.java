@@ -0,0 +1,113 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.metrics.MetricsRegistry;
+import fhirut.model.TestDefinition;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Abstração do mecanismo que efetivamente valida uma instância FHIR.
+ * Permite alternar entre o validador residente (carregado no próprio processo)
+ * e a execução do validator_cli.jar em um processo separado.
+ */
+public interface ValidationEngine extends AutoCloseable {
+
+    /**
+     * Valida a instância referenciada pela definição de teste.
+     * @param definition definição do teste (contexto e caminho da instância)
+     * @return OperationOutcome produzido pelo validador
+     * @throws FhirValidationException se o validador não puder ser executado
+     */
+    OperationOutcome validate(TestDefinition definition) throws FhirValidationException;
+
+    /**
+     * Valida várias instâncias que compartilham o mesmo contexto (IGs e perfis).
+     * Mecanismos que pagam um custo fixo por chamada, como o CLI, carregam o
+     * contexto uma única vez para o lote inteiro.
+     * @param definitions definições com contexto idêntico
+     * @return OperationOutcome de cada definição; definições sem resultado ficam de fora do mapa
+     * @throws FhirValidationException se o lote inteiro não puder ser validado
+     */
+    default Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions)
+            throws FhirValidationException {
+        Map<TestDefinition, OperationOutcome> outcomes = new LinkedHashMap<>();
+        for (TestDefinition definition : definitions) {
+            outcomes.put(definition, validate(definition));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Valida a instância, abortando a validação se ela passar do tempo limite.
+     * Só é chamado se {@link #supportsTimeout()} for true; para os demais mecanismos
+     * o tempo limite é aplicado por quem chama.
+     * @throws FhirValidationException também quando o tempo limite é excedido
+     */
+    default OperationOutcome validate(TestDefinition definition, Duration timeout) throws FhirValidationException {
+        return validate(definition);
+    }
+
+    /**
+     * Valida o lote, abortando a chamada se ela passar do tempo limite (do lote inteiro).
+     * Só é chamado se {@link #supportsTimeout()} for true.
+     */
+    default Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions, Duration timeout)
+            throws FhirValidationException {
+        return validateBatch(definitions);
+    }
+
+    /**
+     * @return true se o mecanismo sabe interromper uma validação no tempo limite,
+     *         encerrando o processo que a executa
+     */
+    default boolean supportsTimeout() {
+        return false;
+    }
+
+    /**
+     * @return true se {@link #validateBatch(List)} for mais eficiente que validar uma instância por vez
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * @return nome curto do mecanismo, usado em logs
+     */
+    String getName();
+
+    /**
+     * Identifica a versão do validador usado, para invalidar resultados em cache
+     * quando o validador muda.
+     */
+    default String getFingerprint() {
+        return getName();
+    }
+
+    /**
+     * Tempo acumulado em cada fase interna do mecanismo que não pertence a um único
+     * teste (carga do validador, carga de IGs, execução do processo, parse da saída).
+     * @return milissegundos por fase; vazio se o mecanismo não for instrumentado
+     */
+    default Map<String, Long> getTimings() {
+        return Map.of();
+    }
+
+    /**
+     * Registra as métricas próprias do mecanismo (ex.: ocupação dos workers).
+     */
+    default void registerMetrics(MetricsRegistry metrics) {
+    }
+
+    /**
+     * Libera os recursos mantidos pelo mecanismo (processos, class loaders, caches).
+     */
+    @Override
+    default void close() {
+    }
+}
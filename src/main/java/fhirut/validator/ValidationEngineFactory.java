@@ -0,0 +1,76 @@
+package fhirut.validator;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.terminology.TerminologyIndex;
+import fhirut.terminology.TerminologyLoader;
+import fhirut.terminology.TerminologyServer;
+
+import java.io.IOException;
+
+/**
+ * Cria o {@link ValidationEngine} correspondente ao modo escolhido pelo usuário.
+ */
+public final class ValidationEngineFactory {
+    public static final String DEFAULT_VALIDATOR_JAR = "lib/validator_cli.jar";
+
+    private ValidationEngineFactory() {
+    }
+
+    public static ValidationEngine create(EngineType type) throws FhirValidationException {
+        EngineSettings settings = new EngineSettings();
+        settings.setType(type);
+        return create(settings);
+    }
+
+    public static ValidationEngine create(EngineSettings settings) throws FhirValidationException {
+        if (LocalTerminologyEngine.LOCAL.equalsIgnoreCase(settings.getTxServer())) {
+            return createWithLocalTerminology(settings);
+        }
+        switch (settings.getType()) {
+            case CLI:
+                return new CliValidationEngine(settings.getValidatorJar(), settings.getPackageCache(), settings.getTxServer());
+            case INPROCESS:
+                return new InProcessValidationEngine(
+                        settings.getValidatorJar(), settings.getTxServer(), settings.getParallelism(),
+                        settings.getPackageCache());
+            case POOL:
+                return new PooledValidationEngine(new ValidatorWorkerPool(settings));
+            case AUTO:
+            default:
+                try {
+                    return new InProcessValidationEngine(
+                        settings.getValidatorJar(), settings.getTxServer(), settings.getParallelism(),
+                        settings.getPackageCache());
+                } catch (FhirValidationException e) {
+                    System.err.println("⚠️ Validador residente indisponível, usando validator_cli.jar por teste: "
+                            + e.getMessage());
+                    return new CliValidationEngine(settings.getValidatorJar(), settings.getPackageCache(), settings.getTxServer());
+                }
+        }
+    }
+
+    /**
+     * Sobe o servidor de terminologia local e monta o mecanismo apontando para ele.
+     */
+    private static ValidationEngine createWithLocalTerminology(EngineSettings settings) throws FhirValidationException {
+        TerminologyIndex index = new TerminologyIndex();
+        TerminologyLoader loader = new TerminologyLoader(index, settings.getPackageCache());
+        loader.loadCore();
+        TerminologyServer server;
+        try {
+            server = new TerminologyServer(index, 0);
+        } catch (IOException e) {
+            throw new FhirValidationException("Não foi possível iniciar o servidor de terminologia local: " + e.getMessage(), e);
+        }
+        System.out.println("🧩 Servidor de terminologia local em " + server.getUrl());
+
+        EngineSettings delegateSettings = settings.copy();
+        delegateSettings.setTxServer(server.getUrl());
+        try {
+            return new LocalTerminologyEngine(create(delegateSettings), server, loader, index);
+        } catch (FhirValidationException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+    }
+}
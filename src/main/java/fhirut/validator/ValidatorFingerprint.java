@@ -0,0 +1,44 @@
+package fhirut.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identifica a versão exata do validator_cli.jar pelo SHA-256 do conteúdo.
+ * O hash é calculado uma vez por execução para cada jar.
+ */
+final class ValidatorFingerprint {
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private ValidatorFingerprint() {
+    }
+
+    static String of(File validatorJar) {
+        File jar = validatorJar.getAbsoluteFile();
+        String cacheKey = jar.getPath() + "|" + jar.length() + "|" + jar.lastModified();
+        return CACHE.computeIfAbsent(cacheKey, k -> hash(jar));
+    }
+
+    private static String hash(File jar) {
+        if (!jar.isFile()) {
+            return "missing:" + jar.getName();
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(jar.toPath()), MessageDigest.getInstance("SHA-256"))) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // Apenas consome o stream para alimentar o digest
+            }
+            return HexFormat.of().formatHex(((DigestInputStream) in).getMessageDigest().digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return "unreadable:" + jar.getName() + ":" + jar.length() + ":" + jar.lastModified();
+        }
+    }
+}
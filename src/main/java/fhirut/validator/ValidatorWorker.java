@@ -0,0 +1,185 @@
+package fhirut.validator;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Um processo validador de longa duração controlado pelo {@link ValidatorWorkerPool}.
+ * Não é seguro para uso concorrente: o pool garante que cada worker atende um pedido por vez.
+ */
+class ValidatorWorker implements AutoCloseable {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    // Encerra workers que passam do tempo limite de um pedido; compartilhado por todos
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fut-worker-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Prazo para o worker carregar o validador e anunciar que está pronto
+    static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(5);
+
+    private final int id;
+    private final Process process;
+    private final BufferedWriter writer;
+    private final BufferedReader reader;
+    private final ScheduledFuture<?> startup;
+    private final AtomicBoolean startupExpired = new AtomicBoolean();
+    private volatile boolean ready;
+    private int jobs;
+    private long heapUsed;
+    private long heapMax;
+
+    private ValidatorWorker(int id, Process process) {
+        this.id = id;
+        this.process = process;
+        this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        // Um worker que nunca fica pronto é encerrado, em vez de travar quem espera por ele
+        this.startup = WATCHDOG.schedule(() -> {
+            if (!ready) {
+                startupExpired.set(true);
+                ProcessTree.destroy(process);
+            }
+        }, STARTUP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    static ValidatorWorker start(int id, List<String> command, File logFile) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.appendTo(logFile));
+        return new ValidatorWorker(id, builder.start());
+    }
+
+    /**
+     * Envia um pedido e aguarda a resposta. Na primeira chamada espera o worker
+     * terminar de carregar o validador; essa espera não conta para o tempo limite.
+     * @param timeout tempo limite do pedido; ao ser excedido o worker é encerrado (null para nenhum)
+     * @throws TimeoutException se o worker foi encerrado por exceder o tempo limite
+     */
+    WorkerMessage send(WorkerMessage request, Duration timeout) throws IOException, TimeoutException {
+        awaitReady();
+
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = timeout == null ? null : WATCHDOG.schedule(() -> {
+            expired.set(true);
+            ProcessTree.destroy(process);
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        WorkerMessage response;
+        try {
+            writer.write(MAPPER.writeValueAsString(request));
+            writer.newLine();
+            writer.flush();
+            response = readMessage();
+        } catch (IOException e) {
+            if (expired.get()) {
+                throw new TimeoutException("Worker " + id + " excedeu o tempo limite de " + timeout.toMillis()
+                        + " ms e foi encerrado");
+            }
+            throw e;
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+        jobs++;
+        if (response.getHeapUsed() != null) {
+            heapUsed = response.getHeapUsed();
+        }
+        if (response.getHeapMax() != null) {
+            heapMax = response.getHeapMax();
+        }
+        return response;
+    }
+
+    private void awaitReady() throws IOException {
+        if (ready) {
+            return;
+        }
+        WorkerMessage message;
+        try {
+            message = readMessage();
+        } catch (IOException e) {
+            if (startupExpired.get()) {
+                throw new IOException("Worker " + id + " não ficou pronto em " + STARTUP_TIMEOUT.toSeconds()
+                        + " s e foi encerrado");
+            }
+            throw e;
+        }
+        if (!WorkerMessage.READY.equals(message.getType())) {
+            throw new IOException("Worker " + id + " não iniciou: " + message.getError());
+        }
+        ready = true;
+        startup.cancel(false);
+    }
+
+    private WorkerMessage readMessage() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new IOException("Worker " + id + " encerrou inesperadamente");
+        }
+        return MAPPER.readValue(line, WorkerMessage.class);
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    int getId() {
+        return id;
+    }
+
+    int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * @return fração do heap máximo em uso após o último pedido
+     */
+    double getHeapRatio() {
+        return heapMax > 0 ? (double) heapUsed / heapMax : 0;
+    }
+
+    /**
+     * Encerra o processo imediatamente, sem esperar o pedido em andamento.
+     */
+    void kill() {
+        startup.cancel(false);
+        ProcessTree.destroy(process);
+    }
+
+    @Override
+    public void close() {
+        startup.cancel(false);
+        try {
+            if (process.isAlive()) {
+                writer.write(MAPPER.writeValueAsString(new WorkerMessage(WorkerMessage.SHUTDOWN)));
+                writer.newLine();
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // O processo já pode ter fechado o stdin
+        }
+
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
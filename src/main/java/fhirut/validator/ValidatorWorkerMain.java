@@ -0,0 +1,97 @@
+package fhirut.validator;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fhirut.exceptions.FhirValidationException;
+import fhirut.model.TestContext;
+import fhirut.model.TestDefinition;
+import fhirut.packages.PackageCache;
+import org.hl7.fhir.r4.formats.JsonParser;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Ponto de entrada dos processos do {@link ValidatorWorkerPool}.
+ *
+ * <p>Carrega o {@link InProcessValidationEngine} uma vez e atende pedidos de
+ * validação lidos do stdin, uma mensagem JSON por linha, respondendo no stdout.
+ * Toda a saída de log (inclusive a do validador da HL7) é desviada para o stderr
+ * para não corromper o protocolo.</p>
+ *
+ * <p>Uso: {@code ValidatorWorkerMain <validator_cli.jar> [servidor de terminologia] [cache de pacotes]}</p>
+ */
+public class ValidatorWorkerMain {
+
+    public static void main(String[] args) throws IOException {
+        PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        File validatorJar = new File(args.length > 0 ? args[0] : ValidationEngineFactory.DEFAULT_VALIDATOR_JAR);
+        String txServer = args.length > 1 ? args[1] : InProcessValidationEngine.DEFAULT_TX_SERVER;
+        PackageCache packageCache = args.length > 2 ? new PackageCache(Paths.get(args[2]), null) : null;
+
+        InProcessValidationEngine engine;
+        try {
+            engine = new InProcessValidationEngine(validatorJar, txServer, 1, packageCache);
+        } catch (FhirValidationException e) {
+            WorkerMessage fatal = new WorkerMessage(WorkerMessage.FATAL);
+            fatal.setError(e.getMessage());
+            protocol.println(mapper.writeValueAsString(fatal));
+            System.exit(1);
+            return;
+        }
+        protocol.println(mapper.writeValueAsString(new WorkerMessage(WorkerMessage.READY)));
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                WorkerMessage request = mapper.readValue(line, WorkerMessage.class);
+                if (WorkerMessage.SHUTDOWN.equals(request.getType())) {
+                    break;
+                }
+                protocol.println(mapper.writeValueAsString(handle(engine, request)));
+            }
+        } finally {
+            engine.close();
+        }
+    }
+
+    private static WorkerMessage handle(ValidationEngine engine, WorkerMessage request) {
+        WorkerMessage response;
+        try {
+            OperationOutcome outcome = engine.validate(toDefinition(request));
+            response = new WorkerMessage(WorkerMessage.RESULT);
+            response.setOutcome(new JsonParser().composeString(outcome));
+        } catch (Exception e) {
+            response = new WorkerMessage(WorkerMessage.ERROR);
+            response.setError(e.getMessage());
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        response.setId(request.getId());
+        response.setHeapUsed(runtime.totalMemory() - runtime.freeMemory());
+        response.setHeapMax(runtime.maxMemory());
+        return response;
+    }
+
+    private static TestDefinition toDefinition(WorkerMessage request) {
+        TestContext context = new TestContext();
+        context.setIgs(request.getIgs());
+        context.setProfiles(request.getProfiles());
+
+        TestDefinition definition = new TestDefinition();
+        definition.setTestId(request.getTestId());
+        definition.setContext(context);
+        definition.setInstancePath(new File(request.getInstance()));
+        return definition;
+    }
+}
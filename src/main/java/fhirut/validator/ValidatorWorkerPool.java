@@ -0,0 +1,183 @@
+package fhirut.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de processos validadores de longa duração ({@link ValidatorWorkerMain}).
+ *
+ * <p>Os workers são iniciados já na criação do pool para que o carregamento do
+ * validador aconteça em paralelo. Cada worker é reciclado depois de atender
+ * {@link EngineSettings#getWorkerMaxJobs()} pedidos ou quando o heap em uso
+ * ultrapassa {@link EngineSettings#getWorkerMaxHeapRatio()} do heap máximo.
+ * Workers que morrem são substituídos no próximo pedido.</p>
+ */
+public class ValidatorWorkerPool implements AutoCloseable {
+    private final EngineSettings settings;
+    private final BlockingQueue<ValidatorWorker> idle = new LinkedBlockingQueue<>();
+    // Workers atendendo um pedido, encerrados à força se o pool fechar no meio
+    private final Set<ValidatorWorker> busy = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Path logDir;
+    private volatile boolean closed;
+
+    public ValidatorWorkerPool(EngineSettings settings) {
+        this.settings = settings;
+        this.permits = new Semaphore(Math.max(1, settings.getWorkers()));
+        this.logDir = Paths.get(System.getProperty("java.io.tmpdir"), "fut-workers");
+
+        for (int i = 0; i < Math.max(1, settings.getWorkers()); i++) {
+            try {
+                idle.offer(startWorker());
+            } catch (IOException e) {
+                System.err.println("⚠️ Falha ao iniciar worker do validador: " + e.getMessage());
+            }
+        }
+        System.out.println("🔧 Pool de validação com " + idle.size() + " worker(s), logs em " + logDir);
+    }
+
+    /**
+     * Envia o pedido ao próximo worker livre, bloqueando enquanto todos estiverem ocupados.
+     */
+    public WorkerMessage execute(WorkerMessage request) throws IOException, InterruptedException, TimeoutException {
+        return execute(request, null);
+    }
+
+    /**
+     * @param timeout tempo limite do pedido, contado depois de obter um worker livre;
+     *                o worker que o exceder é encerrado e substituído (null para nenhum)
+     */
+    public WorkerMessage execute(WorkerMessage request, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        if (closed) {
+            throw new IOException("Pool de validação já foi encerrado");
+        }
+
+        permits.acquire();
+        ValidatorWorker worker = null;
+        try {
+            if (closed) {
+                throw new IOException("Pool de validação já foi encerrado");
+            }
+            worker = idle.poll();
+            if (worker == null || !worker.isAlive()) {
+                if (worker != null) {
+                    worker.close();
+                }
+                worker = startWorker();
+            }
+            busy.add(worker);
+
+            WorkerMessage response = worker.send(request, timeout);
+            if (shouldRecycle(worker)) {
+                System.out.println("♻️ Reciclando worker " + worker.getId() + " após " + worker.getJobs() + " pedidos");
+                busy.remove(worker);
+                worker.close();
+                worker = null;
+            }
+            return response;
+
+        } catch (IOException | TimeoutException e) {
+            // Worker em estado desconhecido: descarta e deixa o próximo pedido criar outro
+            if (worker != null) {
+                busy.remove(worker);
+                worker.close();
+                worker = null;
+            }
+            throw e;
+        } finally {
+            if (worker != null) {
+                release(worker);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Devolve o worker à fila de livres; depois do encerramento do pool, encerra-o.
+     */
+    private void release(ValidatorWorker worker) {
+        busy.remove(worker);
+        if (closed) {
+            worker.close();
+            return;
+        }
+        idle.offer(worker);
+        // O pool pode ter fechado entre a verificação e a devolução
+        if (closed && idle.remove(worker)) {
+            worker.close();
+        }
+    }
+
+    /**
+     * @return identificação do validador executado pelos workers
+     */
+    public String getFingerprint() {
+        return ValidatorFingerprint.of(settings.getValidatorJar()) + "|tx=" + settings.getTxServer();
+    }
+
+    public int getSize() {
+        return Math.max(1, settings.getWorkers());
+    }
+
+    /**
+     * @return quantos workers estão atendendo um pedido neste momento
+     */
+    public int getBusy() {
+        return getSize() - permits.availablePermits();
+    }
+
+    private boolean shouldRecycle(ValidatorWorker worker) {
+        return worker.getJobs() >= settings.getWorkerMaxJobs()
+                || worker.getHeapRatio() >= settings.getWorkerMaxHeapRatio();
+    }
+
+    private ValidatorWorker startWorker() throws IOException {
+        int id = nextId.incrementAndGet();
+        Files.createDirectories(logDir);
+        return ValidatorWorker.start(id, buildCommand(), logDir.resolve("worker-" + id + ".log").toFile());
+    }
+
+    private List<String> buildCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (settings.getWorkerHeap() != null) {
+            command.add("-Xmx" + settings.getWorkerHeap());
+        }
+        command.add("-Dfile.encoding=UTF-8");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ValidatorWorkerMain.class.getName());
+        command.add(new File(settings.getValidatorJar().getPath()).getAbsolutePath());
+        command.add(settings.getTxServer() != null ? settings.getTxServer() : "n/a");
+        if (settings.getPackageCache() != null) {
+            command.add(settings.getPackageCache().getRoot().toString());
+        }
+        return command;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ValidatorWorker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.close();
+        }
+        // Pedidos em andamento terminam com erro em vez de manter o processo vivo
+        busy.forEach(ValidatorWorker::kill);
+    }
+}
@@ -0,0 +1,123 @@
+package fhirut.validator;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Mensagem trocada entre o fut e os processos do {@link ValidatorWorkerPool}.
+ * Cada mensagem ocupa exatamente uma linha JSON no stdin/stdout do worker.
+ *
+ * <p>Tipos: {@code ready} e {@code fatal} (inicialização do worker),
+ * {@code validate} e {@code shutdown} (pedidos do fut), {@code result} e
+ * {@code error} (respostas do worker).</p>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkerMessage {
+    public static final String READY = "ready";
+    public static final String FATAL = "fatal";
+    public static final String VALIDATE = "validate";
+    public static final String SHUTDOWN = "shutdown";
+    public static final String RESULT = "result";
+    public static final String ERROR = "error";
+
+    private String type;
+    private Long id;
+    private String testId;
+    private String instance;
+    private List<String> igs;
+    private List<String> profiles;
+    private String outcome;
+    private String error;
+    private Long heapUsed;
+    private Long heapMax;
+
+    public WorkerMessage() {
+    }
+
+    public WorkerMessage(String type) {
+        this.type = type;
+    }
+
+    // Getters e Setters
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTestId() {
+        return testId;
+    }
+
+    public void setTestId(String testId) {
+        this.testId = testId;
+    }
+
+    public String getInstance() {
+        return instance;
+    }
+
+    public void setInstance(String instance) {
+        this.instance = instance;
+    }
+
+    public List<String> getIgs() {
+        return igs;
+    }
+
+    public void setIgs(List<String> igs) {
+        this.igs = igs;
+    }
+
+    public List<String> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(List<String> profiles) {
+        this.profiles = profiles;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getHeapUsed() {
+        return heapUsed;
+    }
+
+    public void setHeapUsed(Long heapUsed) {
+        this.heapUsed = heapUsed;
+    }
+
+    public Long getHeapMax() {
+        return heapMax;
+    }
+
+    public void setHeapMax(Long heapMax) {
+        this.heapMax = heapMax;
+    }
+}
@@ -0,0 +1,217 @@
+package fhirut.core;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.model.TestDefinition;
+import fhirut.model.TestResult;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FhirutRunnerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void urgentTestRunsAheadOfQueuedBatches() throws Exception {
+        // As duas threads ficam presas em T-1 e T-2 até T-8 ser lido; a essa altura
+        // T-3..T-6 já esperam na fila, e T-7 (falhou recentemente) entrou depois deles
+        CountDownLatch queued = new CountDownLatch(1);
+        StubValidationEngine engine = new StubValidationEngine(definition -> {
+            if (!queued.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("T-8 não foi lido");
+            }
+            if (!definition.getTestId().equals("T-7")) {
+                Thread.sleep(50);
+            }
+            return StubValidationEngine.SUCCESS.validate(definition);
+        }, false);
+        File suite = suite("suite.yaml", "T-1", "T-2", "T-3", "T-4", "T-5", "T-6", "T-7", "T-8");
+
+        try (FhirutRunner runner = new FhirutRunner(engine)) {
+            runner.setParallelism(2);
+            runner.setPriority(Comparator.comparing(TestDefinition::getTestId), definition -> {
+                if (definition.getTestId().equals("T-8")) {
+                    queued.countDown();
+                }
+                return definition.getTestId().equals("T-7");
+            });
+            List<TestResult> results = runner.runTests(List.of(suite));
+
+            // T-7 é o primeiro a sair da fila; T-4 só começa depois de T-3 ou T-7 terminar
+            List<String> started = engine.getStarted();
+            assertTrue(started.indexOf("T-7") < started.indexOf("T-4"), started.toString());
+            // A ordem dos resultados continua a de descoberta
+            assertEquals(List.of("T-1", "T-2", "T-3", "T-4", "T-5", "T-6", "T-7", "T-8"), ids(results));
+            assertTrue(results.stream().allMatch(TestResult::isPassed));
+        }
+    }
+
+    @Test
+    void listenersReceiveResultsInDiscoveryOrder() throws Exception {
+        // Durações aleatórias: os testes terminam fora de ordem
+        StubValidationEngine engine = new StubValidationEngine(definition -> {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(30));
+            return StubValidationEngine.SUCCESS.validate(definition);
+        }, false);
+        List<File> files = List.of(
+                suite("a.yaml", "A-1", "A-2", "A-3", "A-4"),
+                suite("b.yaml", "B-1", "B-2", "B-3", "B-4"),
+                suite("c.yaml", "C-1", "C-2", "C-3", "C-4"));
+        List<String> expected = List.of("A-1", "A-2", "A-3", "A-4", "B-1", "B-2", "B-3", "B-4",
+                "C-1", "C-2", "C-3", "C-4");
+
+        try (FhirutRunner runner = new FhirutRunner(engine)) {
+            runner.setParallelism(4);
+            List<String> delivered = new ArrayList<>();
+            runner.addListener(result -> delivered.add(result.getTestId()));
+            runner.streamTests(files);
+
+            assertEquals(expected, delivered);
+            assertEquals(expected, ids(runner.runTests(files)));
+        }
+    }
+
+    @Test
+    void failedBatchGivesOneResultPerTest() throws Exception {
+        StubValidationEngine engine = new StubValidationEngine(definition -> {
+            throw new FhirValidationException("Validador indisponível", null, definition.getTestId());
+        }, true);
+        File suite = suite("suite.yaml", "T-1", "T-2", "T-3", "T-4", "T-5");
+
+        try (FhirutRunner runner = new FhirutRunner(engine)) {
+            runner.setParallelism(4);
+            List<TestResult> delivered = new ArrayList<>();
+            runner.addListener(delivered::add);
+            runner.streamTests(List.of(suite));
+
+            assertEquals(List.of("T-1,T-2,T-3,T-4,T-5"), engine.getBatches());
+            assertEquals(List.of("T-1", "T-2", "T-3", "T-4", "T-5"), ids(delivered));
+            for (TestResult result : delivered) {
+                assertFalse(result.isPassed());
+                assertTrue(result.getDifferences().get(0).getMessage().startsWith("Validador indisponível"));
+            }
+        }
+    }
+
+    @Test
+    void nothingIsPublishedAfterFailFastCancels() throws Exception {
+        // T-1 falha na hora; os demais só terminariam depois de 10 s, se não fossem interrompidos
+        StubValidationEngine engine = new StubValidationEngine(definition -> {
+            if (definition.getTestId().equals("T-1")) {
+                OperationOutcome outcome = new OperationOutcome();
+                outcome.addIssue()
+                        .setSeverity(OperationOutcome.IssueSeverity.ERROR)
+                        .setCode(OperationOutcome.IssueType.STRUCTURE)
+                        .setDiagnostics("Perfil não atendido");
+                return outcome;
+            }
+            Thread.sleep(10_000);
+            return StubValidationEngine.SUCCESS.validate(definition);
+        }, false);
+        File suite = suite("suite.yaml", "T-1", "T-2", "T-3", "T-4", "T-5", "T-6");
+
+        try (FhirutRunner runner = new FhirutRunner(engine)) {
+            runner.setParallelism(2);
+            runner.setFailFast(1);
+            List<String> ordered = new ArrayList<>();
+            List<String> live = new ArrayList<>();
+            runner.addListener(result -> ordered.add(result.getTestId()));
+            runner.addListener(new TestResultListener() {
+                @Override
+                public void onResult(TestResult result) {
+                    live.add(result.getTestId());
+                }
+
+                @Override
+                public boolean ordered() {
+                    return false;
+                }
+            });
+            long start = System.nanoTime();
+            runner.streamTests(List.of(suite));
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(List.of("T-1"), ordered);
+            assertEquals(List.of("T-1"), live);
+            // Só T-1 e, no máximo, o teste que já estava na outra thread chegaram ao validador
+            assertTrue(engine.getStarted().size() <= 2, engine.getStarted().toString());
+            assertTrue(elapsedMs < 5_000, "validação em andamento não foi interrompida: " + elapsedMs + " ms");
+        }
+    }
+
+    @Test
+    void timedOutBatchFallsBackToSingleValidations() throws Exception {
+        // Só SLOW trava; o lote inteiro estoura e cada teste é revalidado sozinho
+        StubValidationEngine engine = new StubValidationEngine(definition -> {
+            if (definition.getTestId().equals("SLOW")) {
+                Thread.sleep(10_000);
+            }
+            return StubValidationEngine.SUCCESS.validate(definition);
+        }, true);
+        File suite = suite("suite.yaml", "F-1", "SLOW", "F-2");
+
+        try (FhirutRunner runner = new FhirutRunner(engine)) {
+            TestTimeouts timeouts = new TestTimeouts();
+            timeouts.setDefaultTimeout(Duration.ofMillis(300));
+            runner.setTimeouts(timeouts);
+            List<TestResult> results = runner.runTests(List.of(suite));
+
+            // Uma chamada em lote (abortada em SLOW) e depois uma validação por teste
+            assertEquals(List.of("F-1,SLOW,F-2"), engine.getBatches());
+            assertEquals(List.of("F-1", "SLOW", "F-1", "SLOW", "F-2"), engine.getStarted());
+            assertEquals(List.of("F-1", "SLOW", "F-2"), ids(results));
+            assertTrue(results.get(0).isPassed());
+            assertFalse(results.get(1).isPassed());
+            assertTrue(results.get(1).getDifferences().get(0).getMessage()
+                    .startsWith("Validação excedeu o tempo limite de 300 ms"));
+            assertTrue(results.get(2).isPassed());
+        }
+    }
+
+    /**
+     * Grava um arquivo de suíte com um teste por id, todos com o mesmo contexto e a
+     * mesma instância.
+     */
+    private File suite(String name, String... testIds) throws IOException {
+        Path instance = dir.resolve("patient.json");
+        if (!Files.exists(instance)) {
+            Files.writeString(instance, "{\"resourceType\": \"Patient\"}");
+        }
+        StringBuilder yaml = new StringBuilder();
+        for (String testId : testIds) {
+            if (yaml.length() > 0) {
+                yaml.append("---\n");
+            }
+            yaml.append("test_id: ").append(testId).append('\n')
+                    .append("context:\n  igs: [br.go.ses.core#0.0.1]\n")
+                    .append("instance_path: ").append(instance.toAbsolutePath()).append('\n')
+                    .append("expected_results:\n  status: success\n");
+        }
+        Path file = dir.resolve(name);
+        Files.writeString(file, yaml);
+        return file.toFile();
+    }
+
+    private static List<String> ids(List<TestResult> results) {
+        List<String> ids = new ArrayList<>();
+        results.forEach(result -> ids.add(result.getTestId()));
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+package fhirut.core;
+
+import fhirut.exceptions.FhirValidationException;
+import fhirut.model.TestDefinition;
+import fhirut.validator.ValidationEngine;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mecanismo de validação dos testes do runner: cada definição responde conforme o
+ * comportamento informado, sem validador nem rede, e as chamadas ficam registradas.
+ */
+class StubValidationEngine implements ValidationEngine {
+
+    /**
+     * Resposta do mecanismo para uma definição. Pode bloquear ou dormir para simular
+     * validações lentas; a interrupção vira falha de validação, como nos mecanismos reais.
+     */
+    interface Behavior {
+        OperationOutcome validate(TestDefinition definition) throws FhirValidationException, InterruptedException;
+    }
+
+    // Validação sem issues: passa nos testes que esperam status success
+    static final Behavior SUCCESS = definition -> new OperationOutcome();
+
+    private final Behavior behavior;
+    private final boolean batch;
+    private final List<String> started = new CopyOnWriteArrayList<>();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    StubValidationEngine(Behavior behavior, boolean batch) {
+        this.behavior = behavior;
+        this.batch = batch;
+    }
+
+    @Override
+    public OperationOutcome validate(TestDefinition definition) throws FhirValidationException {
+        started.add(definition.getTestId());
+        try {
+            return behavior.validate(definition);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FhirValidationException("Validação interrompida", null, definition.getTestId());
+        }
+    }
+
+    @Override
+    public Map<TestDefinition, OperationOutcome> validateBatch(List<TestDefinition> definitions)
+            throws FhirValidationException {
+        List<String> ids = new ArrayList<>();
+        definitions.forEach(definition -> ids.add(definition.getTestId()));
+        batches.add(ids);
+        Map<TestDefinition, OperationOutcome> outcomes = new LinkedHashMap<>();
+        for (TestDefinition definition : definitions) {
+            outcomes.put(definition, validate(definition));
+        }
+        return outcomes;
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return batch;
+    }
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    /**
+     * @return ids dos testes na ordem em que a validação de cada um começou
+     */
+    List<String> getStarted() {
+        return started;
+    }
+
+    /**
+     * @return ids dos testes de cada chamada a {@link #validateBatch(List)}
+     */
+    List<String> getBatches() {
+        return batches.stream().map(ids -> String.join(",", ids)).toList();
+    }
+}
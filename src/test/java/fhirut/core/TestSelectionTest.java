@@ -0,0 +1,66 @@
+package fhirut.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestSelectionTest {
+
+    @Test
+    void requiresTestIdLine() {
+        TestSelection selection = new TestSelection();
+        assertTrue(selection.mayMatch("test_id: Patient-001\ninstance_path: a.json\n"));
+        assertFalse(selection.mayMatch("name: fhir-package\nversion: 1.0.0\n"));
+        // "test_id" fora do início da linha não conta
+        assertFalse(selection.mayMatch("description: sem test_id: aqui\n"));
+    }
+
+    @Test
+    void readsQuotedCommentedAndListedIds() {
+        TestSelection selection = new TestSelection().id("Patient-00?");
+        assertTrue(selection.mayMatch("test_id: \"Patient-001\"\n"));
+        assertTrue(selection.mayMatch("test_id: 'Patient-002'  # comentário\n"));
+        assertTrue(selection.mayMatch("tests:\n  - test_id: Patient-003\n"));
+        assertFalse(selection.mayMatch("test_id: Patient-010\n"));
+    }
+
+    @Test
+    void idGlobsMatchWholeId() {
+        TestSelection selection = new TestSelection().id("Obs*");
+        assertTrue(selection.mayMatch("test_id: Observation-1\n"));
+        assertFalse(selection.mayMatch("test_id: MyObservation-1\n"));
+        // Caracteres de regex no id são literais
+        assertFalse(new TestSelection().id("a.c").mayMatch("test_id: abc\n"));
+    }
+
+    @Test
+    void parameterizedDefinitionsAreNotDiscardedById() {
+        TestSelection selection = new TestSelection().id("Patient-999");
+        assertTrue(selection.mayMatch("test_id: Patient-${n}\nparameters:\n  n: [1, 2]\n"));
+        assertTrue(selection.mayMatch("test_id: Patient\ninstance_path: instances/*.json\n"));
+        assertTrue(selection.mayMatch("test_id: Patient\ninstance_path: [a.json, b.json]\n"));
+        assertFalse(selection.mayMatch("test_id: Patient\ninstance_path: instances/a.json\n"));
+    }
+
+    @Test
+    void tagsMustAppearInText() {
+        TestSelection selection = new TestSelection().tag("smoke");
+        assertTrue(selection.mayMatch("test_id: A\ntags: [smoke]\n"));
+        assertFalse(selection.mayMatch("test_id: A\ntags: [slow]\n"));
+    }
+
+    @Test
+    void shardKeepsOnlyFilesWithOwnedTests() {
+        TestShard first = new TestShard(1, 2);
+        TestShard second = new TestShard(2, 2);
+        String id = "Patient-001";
+        TestSelection byFirst = new TestSelection().shard(first);
+        TestSelection bySecond = new TestSelection().shard(second);
+        String yaml = "test_id: " + id + "\n";
+        assertEquals(first.owns(id), byFirst.mayMatch(yaml));
+        assertEquals(second.owns(id), bySecond.mayMatch(yaml));
+        assertTrue(byFirst.mayMatch(yaml) != bySecond.mayMatch(yaml));
+    }
+}
@@ -0,0 +1,105 @@
+package fhirut.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestShardTest {
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("Patient-" + i);
+        }
+        return ids;
+    }
+
+    private static List<String> owned(TestShard shard, List<String> ids) {
+        return ids.stream().filter(shard::owns).toList();
+    }
+
+    @Test
+    void everyTestBelongsToExactlyOneShard() {
+        List<String> ids = ids(200);
+        for (String id : ids) {
+            int owners = 0;
+            for (int index = 1; index <= 3; index++) {
+                owners += new TestShard(index, 3).owns(id) ? 1 : 0;
+            }
+            assertEquals(1, owners, id);
+        }
+    }
+
+    @Test
+    void hashSplitIsStableAcrossInstances() {
+        List<String> ids = ids(100);
+        assertEquals(owned(new TestShard(2, 4), ids), owned(TestShard.parse("2/4"), ids));
+        assertEquals(TestShard.SPLIT_BY_ID, new TestShard(2, 4).getSplit());
+        // Erros sem id ficam com o primeiro shard
+        assertTrue(new TestShard(1, 4).owns(null));
+    }
+
+    @Test
+    void historySplitDoesNotDependOnInsertionOrder() {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            durations.put("Patient-" + i, (long) (i % 7) * 100);
+        }
+        List<String> keys = new ArrayList<>(durations.keySet());
+        Collections.reverse(keys);
+        Map<String, Long> reversed = new LinkedHashMap<>();
+        keys.forEach(id -> reversed.put(id, durations.get(id)));
+
+        for (int index = 1; index <= 3; index++) {
+            TestShard first = new TestShard(index, 3).withHistory(durations);
+            TestShard second = new TestShard(index, 3).withHistory(reversed);
+            assertEquals(owned(first, ids(60)), owned(second, ids(60)));
+            assertEquals(first.getSplit(), second.getSplit());
+            assertArrayEquals(first.getLoads(), second.getLoads());
+        }
+    }
+
+    @Test
+    void historySplitBalancesDurationsAndCoversEveryTest() {
+        Map<String, Long> durations = new HashMap<>();
+        durations.put("slow", 1000L);
+        durations.put("a", 400L);
+        durations.put("b", 300L);
+        durations.put("c", 300L);
+
+        TestShard first = new TestShard(1, 2).withHistory(durations);
+        TestShard second = new TestShard(2, 2).withHistory(durations);
+        assertEquals(List.of("slow"), owned(first, List.of("slow", "a", "b", "c")));
+        assertEquals(List.of("a", "b", "c"), owned(second, List.of("slow", "a", "b", "c")));
+        assertArrayEquals(new long[]{1000, 1000}, first.getLoads());
+    }
+
+    @Test
+    void splitIdentifiesTheHistory() {
+        TestShard shard = new TestShard(1, 2);
+        String a = shard.withHistory(Map.of("x", 10L, "y", 20L)).getSplit();
+        String b = new TestShard(1, 2).withHistory(Map.of("x", 10L, "y", 21L)).getSplit();
+        assertTrue(a.startsWith("duration:"));
+        assertNotEquals(a, b);
+        assertEquals(TestShard.SPLIT_BY_ID, new TestShard(1, 2).withHistory(Map.of()).getSplit());
+    }
+
+    @Test
+    void rejectsInvalidSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> TestShard.parse("0/2"));
+        assertThrows(IllegalArgumentException.class, () -> TestShard.parse("3/2"));
+        assertThrows(IllegalArgumentException.class, () -> TestShard.parse("1-2"));
+        assertThrows(IllegalArgumentException.class, () -> TestShard.parse("a/b"));
+    }
+}
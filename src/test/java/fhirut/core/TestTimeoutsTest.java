@@ -0,0 +1,94 @@
+package fhirut.core;
+
+import fhirut.model.TestDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestTimeoutsTest {
+
+    @Test
+    void parsesUnitsDecimalsAndIso() {
+        // Número sem unidade é em segundos
+        assertEquals(Duration.ofSeconds(90), TestTimeouts.parse("90"));
+        assertEquals(Duration.ofMillis(500), TestTimeouts.parse("500ms"));
+        assertEquals(Duration.ofSeconds(45), TestTimeouts.parse("45s"));
+        assertEquals(Duration.ofMinutes(2), TestTimeouts.parse("2m"));
+        assertEquals(Duration.ofHours(1), TestTimeouts.parse("1h"));
+        assertEquals(Duration.ofMillis(1500), TestTimeouts.parse("1.5s"));
+        assertEquals(Duration.ofSeconds(90), TestTimeouts.parse("1.5m"));
+        assertEquals(Duration.ofSeconds(30), TestTimeouts.parse(" 30 S "));
+        assertEquals(Duration.ofSeconds(90), TestTimeouts.parse("PT1M30S"));
+        assertEquals(Duration.ofSeconds(5), TestTimeouts.parse("pt5s"));
+    }
+
+    @Test
+    void rejectsZeroNegativeAndGarbage() {
+        for (String text : List.of("0", "0s", "0.0001s", "PT0S", "-5", "PT-5S", "", "abc", "5x", "1.2.3s")) {
+            assertThrows(IllegalArgumentException.class, () -> TestTimeouts.parse(text), text);
+        }
+    }
+
+    @Test
+    void batchBudgetIsLongestPlusAllowanceCappedBySum() {
+        Duration allowance = TestTimeouts.BATCH_ALLOWANCE_PER_TEST;
+        // Maior tempo mais a folga de cada teste adicional
+        assertEquals(Duration.ofSeconds(30).plus(allowance.multipliedBy(2)), TestTimeouts.batchBudget(
+                List.of(Duration.ofSeconds(30), Duration.ofSeconds(30), Duration.ofSeconds(10))));
+        // Testes curtos: a soma é menor que o maior mais a folga
+        assertEquals(Duration.ofMillis(900), TestTimeouts.batchBudget(
+                List.of(Duration.ofMillis(300), Duration.ofMillis(300), Duration.ofMillis(300))));
+        assertEquals(Duration.ofSeconds(7), TestTimeouts.batchBudget(List.of(Duration.ofSeconds(7))));
+        assertEquals(Duration.ZERO, TestTimeouts.batchBudget(List.of()));
+    }
+
+    @Test
+    void timeoutComesFromYamlThenHistoryThenDefault() {
+        TestTimeouts timeouts = new TestTimeouts().withHistory(Map.of("rapido", 200L, "lento", 8_000L));
+        assertEquals(Duration.ofSeconds(5), timeouts.timeoutFor(definition("rapido", "5s")));
+        // Histórico curto fica no mínimo do ajuste; longo é multiplicado pela folga
+        assertEquals(TestTimeouts.MINIMUM_ADAPTIVE, timeouts.timeoutFor(definition("rapido", null)));
+        assertEquals(Duration.ofSeconds(24), timeouts.timeoutFor(definition("lento", null)));
+        assertEquals(TestTimeouts.DEFAULT_TIMEOUT, timeouts.timeoutFor(definition("novo", null)));
+
+        timeouts.setFactor(0);
+        assertEquals(TestTimeouts.DEFAULT_TIMEOUT, timeouts.timeoutFor(definition("lento", null)));
+    }
+
+    @Test
+    void globalDeadlineClampsTimeouts() throws InterruptedException {
+        TestTimeouts timeouts = new TestTimeouts();
+        assertEquals(Duration.ofHours(1), timeouts.limit(Duration.ofHours(1)));
+        assertFalse(timeouts.expired());
+
+        timeouts.setGlobalTimeout(Duration.ofMillis(200));
+        timeouts.start();
+        Duration limited = timeouts.limit(Duration.ofHours(1));
+        assertTrue(limited.compareTo(Duration.ofMillis(200)) <= 0, limited.toString());
+        assertEquals(Duration.ofMillis(50), timeouts.limit(Duration.ofMillis(50)));
+        assertTrue(timeouts.timeoutFor(definition("novo", null)).compareTo(Duration.ofMillis(200)) <= 0);
+        assertFalse(timeouts.expired());
+
+        Thread.sleep(250);
+        assertTrue(timeouts.expired());
+        assertEquals(Duration.ZERO, timeouts.limit(Duration.ofHours(1)));
+
+        // Cada execução recomeça o prazo
+        timeouts.start();
+        assertFalse(timeouts.expired());
+    }
+
+    private static TestDefinition definition(String testId, String timeout) {
+        TestDefinition definition = new TestDefinition();
+        definition.setTestId(testId);
+        definition.setTimeout(timeout);
+        return definition;
+    }
+}
@@ -0,0 +1,54 @@
+package fhirut.packages;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackageSpecTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void parsesIdAndVersion() {
+        PackageSpec spec = PackageSpec.parse(" br.go.ses.core#0.0.1 ");
+        assertEquals("br.go.ses.core", spec.getId());
+        assertEquals("0.0.1", spec.getVersion());
+        assertEquals("4.0.1-ballot+build.7", PackageSpec.parse("hl7.fhir.r4.core#4.0.1-ballot+build.7").getVersion());
+        assertNull(PackageSpec.parse("br.go.ses.core#").getVersion());
+        assertNull(PackageSpec.parse("igs/local"));
+    }
+
+    @Test
+    void rejectsTraversalVersions() {
+        for (String version : List.of("1.0/../../../x", "..", "../x", "1.0\\..\\x", "/etc", ".hidden", "1.0 x")) {
+            assertNull(PackageSpec.parse("br.go.ses.core#" + version), version);
+            assertThrows(IllegalArgumentException.class, () -> new PackageSpec("br.go.ses.core", version), version);
+        }
+    }
+
+    @Test
+    void cacheDoesNotResolveTraversalVersions() throws Exception {
+        Path root = temp.resolve("cache");
+        Path outside = temp.resolve("x");
+        // Uma referência plantada fora de refs/ não pode ser alcançada pela versão
+        Files.createDirectories(root.resolve("refs"));
+        Files.writeString(outside, "deadbeef");
+        PackageCache cache = new PackageCache(root, temp.resolve("fhir"), List.of());
+
+        String spec = "br.go.ses.core#1.0/../../../x";
+        assertTrue(cache.find(spec).isEmpty());
+        assertTrue(cache.getIndex(spec).isEmpty());
+        assertEquals(spec, cache.resolveIg(spec));
+        assertTrue(cache.prefetch(List.of(spec)).isEmpty());
+        assertEquals("deadbeef", Files.readString(outside));
+    }
+}
@@ -0,0 +1,128 @@
+package fhirut.packages;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TarGzExtractorTest {
+
+    @TempDir
+    Path temp;
+
+    /**
+     * Monta um .tgz mínimo em formato ustar com as entradas informadas.
+     */
+    private static final class Archive {
+        private final ByteArrayOutputStream tar = new ByteArrayOutputStream();
+
+        Archive file(String name, String content) throws IOException {
+            return entry(name, '0', content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Archive entry(String name, char type, byte[] data) throws IOException {
+            byte[] header = new byte[512];
+            put(header, 0, name);
+            put(header, 100, "0000644");
+            put(header, 124, String.format("%011o", data.length));
+            put(header, 136, String.format("%011o", 0));
+            header[156] = (byte) type;
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            // Checksum calculado com o próprio campo preenchido por espaços
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xff;
+            }
+            put(header, 148, String.format("%06o", checksum));
+            tar.write(header);
+            tar.write(data);
+            tar.write(new byte[(512 - data.length % 512) % 512]);
+            return this;
+        }
+
+        Path write(Path file) throws IOException {
+            tar.write(new byte[1024]);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                out.write(tar.toByteArray());
+            }
+            return file;
+        }
+
+        private static void put(byte[] header, int offset, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, bytes.length);
+        }
+    }
+
+    @Test
+    void extractsRegularEntries() throws IOException {
+        Path archive = new Archive()
+                .entry("package/", '5', new byte[0])
+                .file("package/package.json", "{\"name\":\"x\"}")
+                .file("package/other/ValueSet-a.json", "{}")
+                .write(temp.resolve("ok.tgz"));
+        Path target = temp.resolve("out");
+
+        TarGzExtractor.extract(archive, target);
+
+        assertEquals("{\"name\":\"x\"}", Files.readString(target.resolve("package/package.json")));
+        assertEquals("{}", Files.readString(target.resolve("package/other/ValueSet-a.json")));
+    }
+
+    @Test
+    void rejectsParentTraversal() throws IOException {
+        Path archive = new Archive().file("package/../../evil.txt", "x").write(temp.resolve("evil.tgz"));
+        Path target = temp.resolve("a/out");
+
+        assertThrows(IOException.class, () -> TarGzExtractor.extract(archive, target));
+        assertFalse(Files.exists(temp.resolve("evil.txt")));
+    }
+
+    @Test
+    void rejectsAbsolutePaths() throws IOException {
+        Path outside = temp.resolve("absolute.txt");
+        Path archive = new Archive().file(outside.toString(), "x").write(temp.resolve("absolute.tgz"));
+
+        assertThrows(IOException.class, () -> TarGzExtractor.extract(archive, temp.resolve("out")));
+        assertFalse(Files.exists(outside));
+    }
+
+    @Test
+    void rejectsTraversalInLongNames() throws IOException {
+        Path archive = new Archive()
+                .entry("././@LongLink", 'L', "../gnu.txt\0".getBytes(StandardCharsets.UTF_8))
+                .file("placeholder", "x")
+                .write(temp.resolve("gnu.tgz"));
+
+        assertThrows(IOException.class, () -> TarGzExtractor.extract(archive, temp.resolve("out")));
+        assertFalse(Files.exists(temp.resolve("gnu.txt")));
+    }
+
+    @Test
+    void rejectsTraversalInPaxPath() throws IOException {
+        String record = "path=../pax.txt\n";
+        // O tamanho do registro inclui os próprios dígitos e o espaço
+        String pax = (record.length() + 3) + " " + record;
+        Path archive = new Archive()
+                .entry("PaxHeader/placeholder", 'x', pax.getBytes(StandardCharsets.UTF_8))
+                .file("placeholder", "x")
+                .write(temp.resolve("pax.tgz"));
+
+        assertThrows(IOException.class, () -> TarGzExtractor.extract(archive, temp.resolve("out")));
+        assertFalse(Files.exists(temp.resolve("pax.txt")));
+    }
+}
@@ -0,0 +1,122 @@
+package fhirut.parser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import fhirut.exceptions.FhirutParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestExpanderTest {
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    @TempDir
+    Path baseDir;
+
+    private static ObjectNode yaml(String text) throws Exception {
+        return (ObjectNode) YAML.readTree(text);
+    }
+
+    private static List<Map<String, String>> combinations(TestExpander expander) {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        expander.combinations().forEach(combinations::add);
+        return combinations;
+    }
+
+    @Test
+    void detectsParameterizedDefinitions() throws Exception {
+        assertTrue(TestExpander.isParameterized(yaml("test_id: A\nparameters: {n: [1]}\n")));
+        assertTrue(TestExpander.isParameterized(yaml("test_id: A\ninstance_path: [a.json, b.json]\n")));
+        assertTrue(TestExpander.isParameterized(yaml("test_id: A\ninstance_path: 'instances/*.json'\n")));
+        assertFalse(TestExpander.isParameterized(yaml("test_id: A\ninstance_path: instances/a.json\n")));
+    }
+
+    @Test
+    void matrixGeneratesEveryCombinationWithLastParameterFastest() throws Exception {
+        TestExpander expander = new TestExpander(yaml(
+                "test_id: A\ninstance_path: a.json\nparameters:\n  x: [1, 2]\n  y: [a, b, c]\n"), baseDir);
+        List<Map<String, String>> combinations = combinations(expander);
+        assertEquals(6, combinations.size());
+        assertEquals(Map.of("x", "1", "y", "a"), combinations.get(0));
+        assertEquals(Map.of("x", "1", "y", "b"), combinations.get(1));
+        assertEquals(Map.of("x", "2", "y", "c"), combinations.get(5));
+    }
+
+    @Test
+    void rowsAreUsedAsDeclared() throws Exception {
+        TestExpander expander = new TestExpander(yaml(
+                "test_id: A\ninstance_path: a.json\nparameters:\n  - {x: 1, y: a}\n  - {x: 2, y: b}\n"), baseDir);
+        assertEquals(List.of(Map.of("x", "1", "y", "a"), Map.of("x", "2", "y", "b")), combinations(expander));
+    }
+
+    @Test
+    void withoutParametersThereIsOneEmptyCombination() throws Exception {
+        TestExpander expander = new TestExpander(yaml("test_id: A\ninstance_path: [a.json, b.json]\n"), baseDir);
+        assertEquals(List.of(Map.of()), combinations(expander));
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(FhirutParseException.class, () -> new TestExpander(yaml(
+                "test_id: A\nparameters:\n  x: []\n"), baseDir));
+        assertThrows(FhirutParseException.class, () -> new TestExpander(yaml(
+                "test_id: A\nparameters:\n  - 1\n"), baseDir));
+        assertThrows(FhirutParseException.class, () -> new TestExpander(yaml(
+                "test_id: A\nparameters: texto\n"), baseDir));
+    }
+
+    @Test
+    void bindSubstitutesPlaceholders() throws Exception {
+        TestExpander expander = new TestExpander(yaml(
+                "test_id: Patient-${profile}-${instance}\ninstance_path: a.json\n"
+                        + "context:\n  profiles: ['http://exemplo.org/${profile}']\n"
+                        + "parameters:\n  profile: [individuo]\n"), baseDir);
+        ObjectNode bound = expander.bind(Map.of("profile", "individuo"), "instances/p1.json", false);
+        assertEquals("Patient-individuo-p1", bound.get("test_id").asText());
+        assertEquals("http://exemplo.org/individuo", bound.at("/context/profiles/0").asText());
+        assertEquals("instances/p1.json", bound.get("instance_path").asText());
+        assertFalse(bound.has(TestExpander.PARAMETERS_FIELD));
+    }
+
+    @Test
+    void bindSuffixesIdWithoutPlaceholders() throws Exception {
+        TestExpander expander = new TestExpander(yaml(
+                "test_id: Patient-001\ninstance_path: a.json\nparameters:\n  profile: [individuo]\n"), baseDir);
+        ObjectNode bound = expander.bind(Map.of("profile", "individuo"), "instances/patient_2.json", true);
+        assertEquals("Patient-001[profile=individuo, patient_2]", bound.get("test_id").asText());
+    }
+
+    @Test
+    void globIsExpandedInSortedOrder() throws Exception {
+        Files.createDirectories(baseDir.resolve("instances/sub"));
+        Files.writeString(baseDir.resolve("instances/b.json"), "{}");
+        Files.writeString(baseDir.resolve("instances/a.json"), "{}");
+        Files.writeString(baseDir.resolve("instances/notes.txt"), "");
+        Files.writeString(baseDir.resolve("instances/sub/c.json"), "{}");
+
+        TestExpander expander = new TestExpander(yaml("test_id: A\ninstance_path: 'instances/*.json'\n"), baseDir);
+        assertEquals(List.of("instances/a.json", "instances/b.json"), expander.instances(Map.of()));
+
+        TestExpander recursive = new TestExpander(yaml(
+                "test_id: A\ninstance_path: ['src/test/resources/instances/**.json', fixed.json]\n"), baseDir);
+        assertEquals(List.of("instances/a.json", "instances/b.json", "instances/sub/c.json", "fixed.json"),
+                recursive.instances(Map.of()));
+    }
+
+    @Test
+    void globWithoutMatchesFails() throws Exception {
+        TestExpander expander = new TestExpander(yaml("test_id: A\ninstance_path: 'missing/*.json'\n"), baseDir);
+        assertThrows(FhirutParseException.class, () -> expander.instances(Map.of()));
+    }
+}
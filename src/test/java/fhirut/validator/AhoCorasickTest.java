@@ -0,0 +1,40 @@
+package fhirut.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AhoCorasickTest {
+
+    private static Set<Integer> search(List<String> patterns, String text) {
+        Set<Integer> found = new TreeSet<>();
+        new AhoCorasick(patterns).search(text, found::add);
+        return found;
+    }
+
+    @Test
+    void findsOverlappingPatterns() {
+        assertEquals(Set.of(0, 1, 2, 3), search(List.of("he", "she", "his", "hers"), "ushers his"));
+    }
+
+    @Test
+    void findsPatternsThatAreSuffixesOfOthers() {
+        // "abcd" falha em "abce" e precisa cair em "bc" e "c" pelos sufixos
+        assertEquals(Set.of(1, 2), search(List.of("abcd", "bc", "c"), "xabce"));
+    }
+
+    @Test
+    void emptyPatternMatchesAnyText() {
+        assertEquals(Set.of(0), search(List.of("", "zzz"), "abc"));
+        assertEquals(Set.of(0), search(List.of(""), ""));
+    }
+
+    @Test
+    void reportsNothingWhenNoPatternOccurs() {
+        assertEquals(Set.of(), search(List.of("dom-6", "ele-1"), "Constraint failed: dom-3"));
+    }
+}
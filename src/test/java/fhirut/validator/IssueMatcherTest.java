@@ -0,0 +1,74 @@
+package fhirut.validator;
+
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IssueMatcherTest {
+
+    private static OperationOutcome.OperationOutcomeIssueComponent issue(String diagnostics) {
+        return new OperationOutcome.OperationOutcomeIssueComponent()
+                .setSeverity(OperationOutcome.IssueSeverity.ERROR)
+                .setCode(OperationOutcome.IssueType.INVARIANT)
+                .setDiagnostics(diagnostics);
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    @Test
+    void unprefixedExpectationMatchesSubstring() {
+        IssueMatcher matcher = IssueMatcher.compile(List.of("dom-6", "ele-1"));
+        assertEquals(bits(0), matcher.match(issue("Constraint failed: dom-6: A resource should have narrative")));
+    }
+
+    @Test
+    void exactRequiresWholeDiagnostics() {
+        IssueMatcher matcher = IssueMatcher.compile(List.of("exact:dom-6", "exact:Constraint failed: dom-6"));
+        assertEquals(bits(1), matcher.match(issue("Constraint failed: dom-6")));
+    }
+
+    @Test
+    void regexIsSearchedInDiagnostics() {
+        IssueMatcher matcher = IssueMatcher.compile(List.of("regex:dom-[0-9]+", "regex:^ele-"));
+        assertEquals(bits(0), matcher.match(issue("Constraint failed: dom-6")));
+    }
+
+    @Test
+    void invalidRegexIsTreatedAsLiteral() {
+        IssueMatcher matcher = IssueMatcher.compile(List.of("regex:value[", "regex:other["));
+        assertEquals(bits(0), matcher.match(issue("Bad value[ here")));
+    }
+
+    @Test
+    void codeMatchesIssueTypeIgnoringCase() {
+        IssueMatcher matcher = IssueMatcher.compile(List.of("code:Invariant", "code:required"));
+        assertEquals(bits(0), matcher.match(issue("qualquer mensagem")));
+    }
+
+    @Test
+    void locationMatchesExpressionOrLocation() {
+        IssueMatcher matcher = IssueMatcher.compile(List.of("location:Patient.name", "location:Patient.birthDate"));
+        OperationOutcome.OperationOutcomeIssueComponent issue = issue("mensagem");
+        issue.addExpression("Patient.name");
+        issue.addLocation("Patient.birthDate");
+        assertEquals(bits(0, 1), matcher.match(issue));
+    }
+
+    @Test
+    void emptyExpectationsMatchNothing() {
+        IssueMatcher matcher = IssueMatcher.compile(null);
+        assertTrue(matcher.isEmpty());
+        assertTrue(matcher.match(issue("dom-6")).isEmpty());
+    }
+}